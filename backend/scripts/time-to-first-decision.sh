@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Time from launching the service to its first successful limit check, see
+# "Time to First Decision" in TESTING_GUIDE.md. The command must end with the
+# jar, the port is appended as --server.port.
+#
+# usage: scripts/time-to-first-decision.sh [-n runs] [-p port] [-t timeout-seconds] java ... -jar app.jar
+set -euo pipefail
+
+runs=5
+port=18080
+timeout=120
+
+usage() {
+    echo "usage: $0 [-n runs] [-p port] [-t timeout-seconds] java ... -jar app.jar" >&2
+    exit 2
+}
+
+while getopts "n:p:t:" opt; do
+    case $opt in
+        n) runs=$OPTARG ;;
+        p) port=$OPTARG ;;
+        t) timeout=$OPTARG ;;
+        *) usage ;;
+    esac
+done
+shift $((OPTIND - 1))
+[ $# -gt 0 ] || usage
+
+log=$(mktemp)
+trap 'rm -f "$log"' EXIT
+times=()
+for run in $(seq 1 "$runs"); do
+    start=$(date +%s%N)
+    "$@" --server.port="$port" > "$log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null -X POST "http://localhost:$port/api/limits/check" \
+            -H "Content-Type: application/json" -d '[["ttfd-client",null,1]]'; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "run $run: the service exited, its output:" >&2
+            cat "$log" >&2
+            exit 1
+        fi
+        if [ $(( ($(date +%s%N) - start) / 1000000000 )) -ge "$timeout" ]; then
+            echo "run $run: no decision after $timeout s" >&2
+            kill "$pid"
+            exit 1
+        fi
+        sleep 0.05
+    done
+    elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+    times+=("$elapsed")
+    echo "run $run: $elapsed ms"
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+done
+
+sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+echo "median: ${sorted[$(( runs / 2 ))]} ms, min: ${sorted[0]} ms, max: ${sorted[$(( runs - 1 ))]} ms"
@@ -0,0 +1,25 @@
+package com.corporation.ratelimiter.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * rate-limiter.ip.* settings, for callers identified by their address.
+ * Bound as properties rather than @Value fields because the trusted proxies
+ * are a list.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limiter.ip")
+public class IpProperties {
+    
+    // networks of the proxies whose X-Forwarded-For is believed, none by default
+    private List<String> trustedProxies = new ArrayList<>();
+    // callers in the same subnet of this size share one budget, the full length for one per address
+    private int ipv4Prefix = 32;
+    private int ipv6Prefix = 64;
+}
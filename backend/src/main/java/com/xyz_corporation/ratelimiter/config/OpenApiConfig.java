@@ -68,7 +68,7 @@ public class OpenApiConfig {
                 .version("1.0.0")
                 .description("Rate limiting service for notification API with support for time window, monthly, and global rate limits")
                 .contact(new Contact()
-                    .name("Corporation X,Y,Z")
+                    .name("Corporation X,Y,Z"))
                 .license(new License()
                     .name("Apache 2.0")
                     .url("https://www.apache.org/licenses/LICENSE-2.0.html")))
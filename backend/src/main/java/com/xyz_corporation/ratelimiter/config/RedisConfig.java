@@ -13,6 +13,7 @@ import redis.clients.jedis.JedisPoolConfig;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 
 @Configuration
 @Slf4j
@@ -30,6 +31,21 @@ public class RedisConfig {
     @Value("${spring.data.redis.password:}")
     private String redisPassword;
     
+    // with virtual threads there is no request thread pool in front of redis,
+    // the connection pool is what caps the concurrent limit checks
+    @Value("${spring.data.redis.jedis.pool.max-active:20}")
+    private int poolMaxActive;
+    
+    @Value("${spring.data.redis.jedis.pool.max-idle:10}")
+    private int poolMaxIdle;
+    
+    @Value("${spring.data.redis.jedis.pool.min-idle:5}")
+    private int poolMinIdle;
+    
+    // how long a request waits for a free connection, negative waits forever
+    @Value("${spring.data.redis.jedis.pool.max-wait:-1ms}")
+    private Duration poolMaxWait;
+    
     @Bean
     public JedisConnectionFactory jedisConnectionFactory() {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
@@ -91,9 +107,10 @@ public class RedisConfig {
         }
         
         JedisPoolConfig poolConfig = new JedisPoolConfig();
-        poolConfig.setMaxTotal(20);
-        poolConfig.setMaxIdle(10);
-        poolConfig.setMinIdle(5);
+        poolConfig.setMaxTotal(poolMaxActive);
+        poolConfig.setMaxIdle(poolMaxIdle);
+        poolConfig.setMinIdle(poolMinIdle);
+        poolConfig.setMaxWait(poolMaxWait);
         poolConfig.setTestOnBorrow(true);
         poolConfig.setTestOnReturn(true);
         poolConfig.setTestWhileIdle(true);
@@ -0,0 +1,67 @@
+package com.corporation.ratelimiter.config;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the beans listed in rate-limiter.startup.lazy-beans (class or
+ * package name prefixes) on first use instead of at startup: admin endpoints,
+ * OpenAPI docs and the like, which nothing on the limit decision path needs.
+ * Unlike spring.main.lazy-initialization it leaves the @Scheduled flushers
+ * and refreshes alone, which only run once their bean exists.
+ */
+@Component
+public class StartupLazyBeans implements BeanFactoryPostProcessor, EnvironmentAware {
+    
+    private List<String> prefixes = List.of();
+    
+    @Override
+    public void setEnvironment(Environment environment) {
+        // a post processor is created before @Value works
+        prefixes = Binder.get(environment).bind("rate-limiter.startup.lazy-beans", Bindable.listOf(String.class)).orElse(List.of());
+    }
+    
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        if (prefixes.isEmpty()) {
+            return;
+        }
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (matches(definition.getBeanClassName()) || matches(factoryClassName(definition))) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+    
+    // @Bean methods have no bean class, the configuration declaring them decides
+    private static String factoryClassName(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated) {
+            MethodMetadata factoryMethod = annotated.getFactoryMethodMetadata();
+            return factoryMethod != null ? factoryMethod.getDeclaringClassName() : null;
+        }
+        return null;
+    }
+    
+    private boolean matches(String className) {
+        if (className == null) {
+            return false;
+        }
+        for (String prefix : prefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+package com.corporation.ratelimiter.config;
+
+import com.corporation.ratelimiter.util.ThreadFactories;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs at startup which threads requests are served on. Spring ignores
+ * spring.threads.virtual.enabled on a JDK without virtual threads, so the
+ * virtual-threads profile on a Java 17 runtime would otherwise quietly run
+ * on the platform pool.
+ */
+@Component
+@Slf4j
+public class VirtualThreadsCheck {
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean enabled;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        if (!enabled) {
+            log.info("Serving requests on platform threads");
+        } else if (ThreadFactories.virtualThreadsAvailable()) {
+            log.info("Serving requests and scheduled tasks on virtual threads");
+        } else {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads, serving requests on platform threads",
+                Runtime.version().feature());
+        }
+    }
+}
@@ -25,6 +25,11 @@ public class WebConfig implements WebMvcConfigurer {
                 "/api/rate-limits/**", 
                 "/api/system/**", 
                 "/api/clients/**",
+                "/api/tenants/**",
+                "/api/ip-rules/**",
+                "/api/usage/**",
+                "/api/limits/**",
+                "/api/notifications/status/**",
                 "/swagger-ui/**",
                 "/swagger-ui.html",
                 "/swagger-ui/index.html",
@@ -52,10 +57,16 @@ public class WebConfig implements WebMvcConfigurer {
             .allowedOriginPatterns("*") // Allow all origins - Swagger UI needs this
             .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")
             .allowedHeaders("*")
-            .exposedHeaders("X-RateLimit-TimeWindow-Limit", "X-RateLimit-TimeWindow-Remaining",
+            .exposedHeaders("X-RateLimit-TimeWindow-Limit", "X-RateLimit-TimeWindow-Remaining", "X-RateLimit-TimeWindow-Reset",
                            "X-RateLimit-Monthly-Limit", "X-RateLimit-Monthly-Remaining",
                            "X-RateLimit-Global-Limit", "X-RateLimit-Global-Remaining",
-                           "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset", "X-RateLimit-Warning")
+                           "X-RateLimit-Channel-Limit", "X-RateLimit-Channel-Remaining",
+                           "X-RateLimit-Route-Limit", "X-RateLimit-Route-Remaining",
+                           "X-RateLimit-Tenant-TimeWindow-Limit", "X-RateLimit-Tenant-TimeWindow-Remaining",
+                           "X-RateLimit-Tenant-Monthly-Limit", "X-RateLimit-Tenant-Monthly-Remaining",
+                           "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset", "X-RateLimit-Warning",
+                           "X-RateLimit-Cost", "X-RateLimit-Concurrency-Limit", "X-RateLimit-Delay-Ms",
+                           "Idempotent-Replayed")
             .allowCredentials(false) // set to false when using wildcard
             .maxAge(3600); // cache preflight requests for 1 hour
         
@@ -3,6 +3,7 @@ package com.corporation.ratelimiter.controller;
 import com.corporation.ratelimiter.dto.ClientDTO;
 import com.corporation.ratelimiter.model.Client;
 import com.corporation.ratelimiter.service.ClientService;
+import com.corporation.ratelimiter.service.TenantService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -19,9 +20,11 @@ import java.util.stream.Collectors;
 public class ClientController {
     
     private final ClientService clientService;
+    private final TenantService tenantService;
     
     @PostMapping
     public ResponseEntity<?> createClient(@Valid @RequestBody ClientDTO dto) {
+        validateTenant(dto);
         try {
             Client client = clientService.createClient(dto.toEntity());
             return ResponseEntity.status(HttpStatus.CREATED).body(ClientDTO.fromEntity(client));
@@ -50,6 +53,7 @@ public class ClientController {
     public ResponseEntity<?> updateClient(
             @PathVariable String clientId,
             @Valid @RequestBody ClientDTO dto) {
+        validateTenant(dto);
         try {
             Client client = clientService.updateClient(clientId, dto.toEntity());
             return ResponseEntity.ok(ClientDTO.fromEntity(client));
@@ -64,5 +68,11 @@ public class ClientController {
         clientService.deleteClient(clientId);
         return ResponseEntity.noContent().build();
     }
+    
+    private void validateTenant(ClientDTO dto) {
+        if (dto.getTenantId() != null && !dto.getTenantId().isBlank() && !tenantService.exists(dto.getTenantId().trim())) {
+            throw new IllegalArgumentException("Tenant not found: " + dto.getTenantId());
+        }
+    }
 }
 
@@ -1,5 +1,6 @@
 package com.corporation.ratelimiter.controller;
 
+import com.corporation.ratelimiter.service.WarmUp;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.health.HealthComponent;
 import org.springframework.boot.actuate.health.HealthEndpoint;
@@ -17,6 +18,9 @@ public class HealthController {
     @Autowired(required = false)
     private HealthEndpoint healthEndpoint;
     
+    @Autowired
+    private WarmUp warmUp;
+    
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> health() {
         try {
@@ -33,12 +37,14 @@ public class HealthController {
                     Map<String, Object> response = new HashMap<>();
                     response.put("status", status.getCode());
                     response.put("details", health.getDetails());
+                    response.put("warmUp", warmUp.getReport());
                     return ResponseEntity.ok(response);
                 } else {
                     // If it's just a Status
                     Status status = healthComponent.getStatus();
                     Map<String, Object> response = new HashMap<>();
                     response.put("status", status.getCode());
+                    response.put("warmUp", warmUp.getReport());
                     return ResponseEntity.ok(response);
                 }
             } else {
@@ -46,6 +52,7 @@ public class HealthController {
                 Map<String, Object> response = new HashMap<>();
                 response.put("status", "UP");
                 response.put("message", "Service is running");
+                response.put("warmUp", warmUp.getReport());
                 return ResponseEntity.ok(response);
             }
         } catch (Exception e) {
@@ -0,0 +1,56 @@
+package com.corporation.ratelimiter.controller;
+
+import com.corporation.ratelimiter.dto.IpRuleDTO;
+import com.corporation.ratelimiter.model.IpRule;
+import com.corporation.ratelimiter.service.IpRuleService;
+import com.corporation.ratelimiter.util.Cidr;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/ip-rules")
+@RequiredArgsConstructor
+public class IpRuleController {
+    
+    private final IpRuleService ipRuleService;
+    
+    @PostMapping
+    public ResponseEntity<?> createRule(@Valid @RequestBody IpRuleDTO dto) {
+        // a malformed cidr is a 400, not a conflict
+        Cidr.parse(dto.getCidr());
+        try {
+            IpRule rule = ipRuleService.createRule(dto.toEntity());
+            return ResponseEntity.status(HttpStatus.CREATED).body(IpRuleDTO.fromEntity(rule));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("message", e.getMessage(), "status", HttpStatus.CONFLICT.value()));
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<IpRuleDTO>> getAllRules() {
+        List<IpRuleDTO> rules = ipRuleService.getAllRules().stream()
+            .map(IpRuleDTO::fromEntity)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(rules);
+    }
+    
+    @PutMapping("/{id}")
+    public ResponseEntity<IpRuleDTO> updateRule(@PathVariable Long id, @Valid @RequestBody IpRuleDTO dto) {
+        IpRule rule = ipRuleService.updateRule(id, dto.toEntity());
+        return ResponseEntity.ok(IpRuleDTO.fromEntity(rule));
+    }
+    
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteRule(@PathVariable Long id) {
+        ipRuleService.deleteRule(id);
+        return ResponseEntity.noContent().build();
+    }
+}
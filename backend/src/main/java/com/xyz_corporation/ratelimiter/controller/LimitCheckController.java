@@ -0,0 +1,139 @@
+package com.corporation.ratelimiter.controller;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.dto.LeaseRequest;
+import com.corporation.ratelimiter.dto.LeaseResponse;
+import com.corporation.ratelimiter.dto.LimitCheckRequest;
+import com.corporation.ratelimiter.dto.LimitCheckResult;
+import com.corporation.ratelimiter.interceptor.RateLimitRouteRegistry;
+import com.corporation.ratelimiter.interceptor.RequestCostResolver;
+import com.corporation.ratelimiter.service.LeaseLedger;
+import com.corporation.ratelimiter.service.LimitCheck;
+import com.corporation.ratelimiter.service.RateLimitRoute;
+import com.corporation.ratelimiter.service.RateLimitService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limit decisions for services that do not route their traffic through this
+ * one. Each item is charged like a request of its client would be; the whole
+ * batch is one pipelined redis round trip. Leases hand out a slice of the
+ * quota up front, for client libraries that decide in process.
+ */
+@RestController
+@RequestMapping("/api/limits")
+@RequiredArgsConstructor
+public class LimitCheckController {
+    
+    private final RateLimitService rateLimitService;
+    private final RateLimitRouteRegistry routeRegistry;
+    private final RequestCostResolver costResolver;
+    private final LeaseLedger leaseLedger;
+    
+    @Value("${rate-limiter.limits-check.max-items:1000}")
+    private int maxItems;
+    
+    @Value("${rate-limiter.leases.max-units:1000}")
+    private int maxLeaseUnits;
+    
+    @Value("${rate-limiter.leases.max-ttl-ms:10000}")
+    private long maxLeaseTtlMs;
+    
+    @PostMapping("/check")
+    public ResponseEntity<List<LimitCheckResult>> check(@RequestBody List<LimitCheckRequest> items) {
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " checks per call, got " + items.size());
+        }
+        List<LimitCheck> checks = new ArrayList<>(items.size());
+        for (LimitCheckRequest item : items) {
+            requireClientId(item.getClientId());
+            int cost = costResolver.checkCost(item.getCost() != null ? item.getCost() : 1);
+            checks.add(new LimitCheck(item.getClientId(), cost, routeRegistry.resolve(item.getResource())));
+        }
+        
+        List<RateLimitDecision> decisions = rateLimitService.checkLimits(checks);
+        List<LimitCheckResult> results = new ArrayList<>(decisions.size());
+        for (RateLimitDecision decision : decisions) {
+            results.add(toResult(decision));
+        }
+        return ResponseEntity.ok(results);
+    }
+    
+    /**
+     * Charges up to the requested units now, as many as every hard limit has
+     * room for. They are only valid until the first of those counters resets,
+     * so units are never spent in a later window than they were charged to.
+     */
+    @PostMapping("/lease")
+    public ResponseEntity<LeaseResponse> lease(@RequestBody LeaseRequest request) {
+        String clientId = requireClientId(request.getClientId());
+        int units = request.getUnits() != null ? request.getUnits() : 1;
+        if (units < 1 || units > maxLeaseUnits) {
+            throw new IllegalArgumentException("Lease units must be between 1 and " + maxLeaseUnits + ", got " + units);
+        }
+        RateLimitRoute route = routeRegistry.resolve(request.getResource());
+        RateLimitDecision decision = rateLimitService.consume(clientId, units, true, route);
+        
+        long ttlMs = decision.getGranted() > 0 ? maxLeaseTtlMs : 0;
+        // units can be given back until the first counter a refund goes to resets, the global ones get none
+        long refundableMs = ttlMs;
+        for (RateLimitResult result : decision.getResults()) {
+            ttlMs = Math.min(ttlMs, result.getResetSeconds() * 1000);
+            if (!RateLimitDimension.GLOBAL.equals(result.getDimension())
+                    && !RateLimitDimension.FAIR_SHARE.equals(result.getDimension())) {
+                refundableMs = Math.min(refundableMs, result.getResetSeconds() * 1000);
+            }
+        }
+        String leaseId = refundableMs > 0
+            ? leaseLedger.open(clientId, request.getResource(), decision.getGranted(), refundableMs, request.getLeaseId())
+            : null;
+        RateLimitResult reported = decision.getReportedResult();
+        return ResponseEntity.ok(new LeaseResponse(decision.getGranted(),
+            reported != null ? reported.getRemainingRequests() : -1,
+            reported != null ? reported.getResetSeconds() : -1,
+            Math.max(0, ttlMs),
+            leaseId));
+    }
+    
+    // units of a lease that were not spent before it was given up, at most what is left on it
+    @PostMapping("/lease/return")
+    public ResponseEntity<Void> returnLease(@RequestBody LeaseRequest request) {
+        String clientId = requireClientId(request.getClientId());
+        if (request.getLeaseId() == null || request.getLeaseId().isBlank()) {
+            throw new IllegalArgumentException("Lease id is required");
+        }
+        int units = request.getUnits() != null ? request.getUnits() : 0;
+        if (units < 0) {
+            throw new IllegalArgumentException("Returned units must not be negative, got " + units);
+        }
+        long returned = leaseLedger.take(clientId, request.getResource(), request.getLeaseId(), units);
+        rateLimitService.refund(clientId, routeRegistry.resolve(request.getResource()), returned);
+        return ResponseEntity.noContent().build();
+    }
+    
+    private static String requireClientId(String clientId) {
+        if (clientId == null || clientId.isBlank()) {
+            throw new IllegalArgumentException("Client id is required");
+        }
+        return clientId;
+    }
+    
+    private static LimitCheckResult toResult(RateLimitDecision decision) {
+        RateLimitResult reported = decision.getReportedResult();
+        if (reported == null) {
+            // nothing was checked, e.g. the limits could not be loaded
+            return new LimitCheckResult(decision.isAllowed(), -1, -1);
+        }
+        return new LimitCheckResult(decision.isAllowed(), reported.getRemainingRequests(), reported.getResetSeconds());
+    }
+}
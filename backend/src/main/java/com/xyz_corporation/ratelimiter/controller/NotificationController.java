@@ -1,13 +1,31 @@
 package com.corporation.ratelimiter.controller;
 
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.dispatch.DispatchesTo;
+import com.corporation.ratelimiter.dispatch.NotificationChannel;
+import com.corporation.ratelimiter.dispatch.NotificationDispatcher;
+import com.corporation.ratelimiter.dispatch.NotificationTracker;
+import com.corporation.ratelimiter.dto.BatchNotificationRequest;
 import com.corporation.ratelimiter.dto.NotificationRequest;
+import com.corporation.ratelimiter.interceptor.BatchRateLimited;
+import com.corporation.ratelimiter.interceptor.RateLimitHeaders;
+import com.corporation.ratelimiter.interceptor.RateLimitInterceptor;
+import com.corporation.ratelimiter.service.RateLimitRoute;
+import com.corporation.ratelimiter.service.RateLimitService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,26 +34,144 @@ import java.util.Map;
 @Slf4j
 public class NotificationController {
     
+    private final RateLimitService rateLimitService;
+    private final NotificationDispatcher dispatcher;
+    private final NotificationTracker tracker;
+    
+    @Value("${rate-limiter.batch.max-recipients:1000}")
+    private int maxBatchRecipients;
+    
     @PostMapping("/sms")
-    public ResponseEntity<Map<String, String>> sendSMS(@Valid @RequestBody NotificationRequest request) {
-        Map<String, String> response = new HashMap<>();
-        response.put("status", "sent");
-        response.put("type", "SMS");
-        response.put("recipient", request.getRecipient());
-        response.put("message", "SMS sent successfully");
-        
-        return ResponseEntity.ok(response);
+    @DispatchesTo(NotificationChannel.SMS)
+    public ResponseEntity<Map<String, String>> sendSMS(@Valid @RequestBody NotificationRequest request,
+                                                       HttpServletRequest servletRequest) {
+        return send(NotificationChannel.SMS, "SMS", request, servletRequest);
     }
     
     @PostMapping("/email")
-    public ResponseEntity<Map<String, String>> sendEmail(@Valid @RequestBody NotificationRequest request) {
+    @DispatchesTo(NotificationChannel.EMAIL)
+    public ResponseEntity<Map<String, String>> sendEmail(@Valid @RequestBody NotificationRequest request,
+                                                         HttpServletRequest servletRequest) {
+        return send(NotificationChannel.EMAIL, "Email", request, servletRequest);
+    }
+    
+    @PostMapping("/sms/batch")
+    @BatchRateLimited
+    @DispatchesTo(NotificationChannel.SMS)
+    public ResponseEntity<Map<String, Object>> sendSMSBatch(
+            @Valid @RequestBody BatchNotificationRequest request,
+            @RequestAttribute(RateLimitInterceptor.CLIENT_ID_ATTRIBUTE) String clientId,
+            @RequestAttribute(value = RateLimitInterceptor.ROUTE_ATTRIBUTE, required = false) RateLimitRoute route,
+            HttpServletResponse servletResponse) {
+        return sendBatch(NotificationChannel.SMS, request, clientId, route, servletResponse);
+    }
+    
+    @PostMapping("/email/batch")
+    @BatchRateLimited
+    @DispatchesTo(NotificationChannel.EMAIL)
+    public ResponseEntity<Map<String, Object>> sendEmailBatch(
+            @Valid @RequestBody BatchNotificationRequest request,
+            @RequestAttribute(RateLimitInterceptor.CLIENT_ID_ATTRIBUTE) String clientId,
+            @RequestAttribute(value = RateLimitInterceptor.ROUTE_ATTRIBUTE, required = false) RateLimitRoute route,
+            HttpServletResponse servletResponse) {
+        return sendBatch(NotificationChannel.EMAIL, request, clientId, route, servletResponse);
+    }
+    
+    @GetMapping("/status/{trackingId}")
+    public ResponseEntity<Map<String, String>> getStatus(@PathVariable String trackingId) {
+        return tracker.getStatus(trackingId)
+            .map(status -> ResponseEntity.ok(Map.of("trackingId", trackingId, "status", status.name())))
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    // the quota was charged by the interceptor, only queueing is left
+    private ResponseEntity<Map<String, String>> send(NotificationChannel channel,
+                                                     String label,
+                                                     NotificationRequest request,
+                                                     HttpServletRequest servletRequest) {
+        String clientId = (String) servletRequest.getAttribute(RateLimitInterceptor.CLIENT_ID_ATTRIBUTE);
+        List<String> trackingIds = dispatcher.enqueue(clientId, channel, List.of(request.getRecipient()), request.getMessage());
         Map<String, String> response = new HashMap<>();
-        response.put("status", "sent");
-        response.put("type", "EMAIL");
+        
+        if (trackingIds.isEmpty()) {
+            // the queue filled up after the interceptor looked, give the quota back
+            RateLimitDecision decision = (RateLimitDecision) servletRequest.getAttribute(RateLimitInterceptor.DECISION_ATTRIBUTE);
+            if (decision != null) {
+                RateLimitRoute route = (RateLimitRoute) servletRequest.getAttribute(RateLimitInterceptor.ROUTE_ATTRIBUTE);
+                rateLimitService.refund(clientId, route, decision.getGranted());
+            }
+            response.put("status", "rejected");
+            response.put("message", label + " queue is full, retry later");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(response);
+        }
+        
+        response.put("status", "queued");
+        response.put("type", channel.name());
         response.put("recipient", request.getRecipient());
-        response.put("message", "Email sent successfully");
+        response.put("trackingId", trackingIds.get(0));
+        response.put("message", label + " queued for delivery");
+        
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    // one recipient is one unit, the whole batch is charged in a single round trip
+    private ResponseEntity<Map<String, Object>> sendBatch(NotificationChannel channel,
+                                                          BatchNotificationRequest request,
+                                                          String clientId,
+                                                          RateLimitRoute route,
+                                                          HttpServletResponse servletResponse) {
+        List<String> recipients = request.getRecipients();
+        if (recipients.size() > maxBatchRecipients) {
+            throw new IllegalArgumentException("A batch can hold at most " + maxBatchRecipients + " recipients");
+        }
+        Map<String, Object> response = new HashMap<>();
+        
+        // only ask for as much quota as the queue can take right now
+        int requested = recipients.size();
+        int capacity = dispatcher.remainingCapacity(channel);
+        if (capacity < requested) {
+            if (!request.isAllowPartial() || capacity == 0) {
+                response.put("status", "rejected");
+                response.put("message", channel + " queue is full, retry later");
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(response);
+            }
+            requested = capacity;
+        }
         
-        return ResponseEntity.ok(response);
+        RateLimitDecision decision = rateLimitService.consume(clientId, requested, request.isAllowPartial(), route);
+        
+        if (!decision.isAllowed()) {
+            RateLimitResult blocking = decision.getBlockingResult();
+            if (blocking != null) {
+                RateLimitHeaders.addExceededHeaders(servletResponse, blocking);
+            }
+            response.put("status", "rejected");
+            response.put("message", RateLimitHeaders.exceededMessage(blocking));
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+        }
+        
+        RateLimitResult exceeded = decision.getFirstExceeded();
+        if (exceeded != null) {
+            RateLimitHeaders.addWarningHeaders(servletResponse, exceeded);
+        }
+        RateLimitHeaders.addLimitHeaders(servletResponse, decision);
+        
+        int granted = (int) decision.getGranted();
+        List<String> trackingIds = dispatcher.enqueue(clientId, channel, recipients.subList(0, granted), request.getMessage());
+        int accepted = trackingIds.size();
+        if (accepted < granted) {
+            rateLimitService.refund(clientId, route, granted - accepted);
+        }
+        
+        response.put("status", accepted == recipients.size() ? "queued" : "partial");
+        response.put("type", channel.name());
+        response.put("accepted", accepted);
+        response.put("rejected", recipients.size() - accepted);
+        response.put("trackingIds", trackingIds);
+        response.put("acceptedRecipients", recipients.subList(0, accepted));
+        response.put("rejectedRecipients", recipients.subList(accepted, recipients.size()));
+        response.put("message", accepted + " of " + recipients.size() + " " + channel + " notifications queued");
+        
+        return ResponseEntity.accepted().body(response);
     }
 }
-
@@ -0,0 +1,77 @@
+package com.corporation.ratelimiter.controller;
+
+import com.corporation.ratelimiter.dto.RateLimitPolicyDTO;
+import com.corporation.ratelimiter.interceptor.RateLimitRouteRegistry;
+import com.corporation.ratelimiter.model.RateLimitPolicy;
+import com.corporation.ratelimiter.service.RateLimitPolicyService;
+import com.corporation.ratelimiter.service.RateLimitRoute;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/rate-limits/{clientId}/policies")
+@RequiredArgsConstructor
+public class RateLimitPolicyController {
+    
+    private final RateLimitPolicyService policyService;
+    private final RateLimitRouteRegistry routeRegistry;
+    
+    @PostMapping
+    public ResponseEntity<?> createPolicy(@PathVariable String clientId, @Valid @RequestBody RateLimitPolicyDTO dto) {
+        RateLimitPolicy policy = dto.toEntity();
+        validateRoute(policy);
+        try {
+            RateLimitPolicy created = policyService.createPolicy(clientId, policy);
+            return ResponseEntity.status(HttpStatus.CREATED).body(RateLimitPolicyDTO.fromEntity(created));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("message", e.getMessage(), "status", HttpStatus.CONFLICT.value()));
+        }
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<RateLimitPolicyDTO>> getPolicies(@PathVariable String clientId) {
+        List<RateLimitPolicyDTO> policies = policyService.getPolicies(clientId).stream()
+            .map(RateLimitPolicyDTO::fromEntity)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(policies);
+    }
+    
+    @PutMapping("/{id}")
+    public ResponseEntity<RateLimitPolicyDTO> updatePolicy(
+            @PathVariable String clientId,
+            @PathVariable Long id,
+            @Valid @RequestBody RateLimitPolicyDTO dto) {
+        RateLimitPolicy policy = policyService.updatePolicy(clientId, id, dto.toEntity());
+        return ResponseEntity.ok(RateLimitPolicyDTO.fromEntity(policy));
+    }
+    
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletePolicy(@PathVariable String clientId, @PathVariable Long id) {
+        policyService.deletePolicy(clientId, id);
+        return ResponseEntity.noContent().build();
+    }
+    
+    // a route policy has to name a route that exists on its channel
+    private void validateRoute(RateLimitPolicy policy) {
+        if (policy.getRoute() == null) {
+            return;
+        }
+        List<String> routes = routeRegistry.getRoutes().stream()
+            .filter(route -> route.getChannel() == policy.getChannel())
+            .map(RateLimitRoute::getName)
+            .sorted()
+            .collect(Collectors.toList());
+        if (!routes.contains(policy.getRoute())) {
+            throw new IllegalArgumentException("Unknown route for " + policy.getChannel() + ": " + policy.getRoute()
+                + ", expected one of " + routes);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.corporation.ratelimiter.controller;
 
 import com.corporation.ratelimiter.dto.SystemLimitConfigDTO;
+import com.corporation.ratelimiter.model.SystemLimitConfig;
+import com.corporation.ratelimiter.service.AdaptiveGlobalLimit;
 import com.corporation.ratelimiter.service.SystemLimitConfigService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -13,20 +15,24 @@ import org.springframework.web.bind.annotation.*;
 public class SystemLimitConfigController {
     
     private final SystemLimitConfigService systemLimitConfigService;
+    private final AdaptiveGlobalLimit adaptiveGlobalLimit;
     
     @GetMapping("/limits")
     public ResponseEntity<SystemLimitConfigDTO> getSystemLimits() {
-        return ResponseEntity.ok(
-            SystemLimitConfigDTO.fromEntity(systemLimitConfigService.getConfigOrDefault())
-        );
+        return ResponseEntity.ok(toDTO(systemLimitConfigService.getConfigOrDefault()));
     }
     
     @PutMapping("/limits")
     public ResponseEntity<SystemLimitConfigDTO> updateSystemLimits(
             @Valid @RequestBody SystemLimitConfigDTO dto) {
-        return ResponseEntity.ok(
-            SystemLimitConfigDTO.fromEntity(systemLimitConfigService.updateConfig(dto.toEntity()))
-        );
+        return ResponseEntity.ok(toDTO(systemLimitConfigService.updateConfig(dto.toEntity())));
+    }
+    
+    private SystemLimitConfigDTO toDTO(SystemLimitConfig config) {
+        SystemLimitConfigDTO dto = SystemLimitConfigDTO.fromEntity(config);
+        dto.setEffectiveGlobalRequestsPerSecond(systemLimitConfigService.getEffectiveGlobalRequestsPerSecond(config));
+        dto.setAdaptive(adaptiveGlobalLimit.isEnabled());
+        return dto;
     }
 }
 
@@ -0,0 +1,71 @@
+package com.corporation.ratelimiter.controller;
+
+import com.corporation.ratelimiter.dto.ClientDTO;
+import com.corporation.ratelimiter.dto.TenantDTO;
+import com.corporation.ratelimiter.model.Tenant;
+import com.corporation.ratelimiter.service.TenantService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/tenants")
+@RequiredArgsConstructor
+public class TenantController {
+    
+    private final TenantService tenantService;
+    
+    @PostMapping
+    public ResponseEntity<?> createTenant(@Valid @RequestBody TenantDTO dto) {
+        try {
+            Tenant tenant = tenantService.createTenant(dto.toEntity());
+            return ResponseEntity.status(HttpStatus.CREATED).body(TenantDTO.fromEntity(tenant));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("message", e.getMessage(), "status", HttpStatus.CONFLICT.value()));
+        }
+    }
+    
+    @GetMapping("/{tenantId}")
+    public ResponseEntity<TenantDTO> getTenant(@PathVariable String tenantId) {
+        return tenantService.getTenant(tenantId)
+            .map(tenant -> ResponseEntity.ok(TenantDTO.fromEntity(tenant)))
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping
+    public ResponseEntity<List<TenantDTO>> getAllTenants() {
+        List<TenantDTO> tenants = tenantService.getAllTenants().stream()
+            .map(TenantDTO::fromEntity)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(tenants);
+    }
+    
+    @GetMapping("/{tenantId}/clients")
+    public ResponseEntity<List<ClientDTO>> getClients(@PathVariable String tenantId) {
+        List<ClientDTO> clients = tenantService.getClients(tenantId).stream()
+            .map(ClientDTO::fromEntity)
+            .collect(Collectors.toList());
+        return ResponseEntity.ok(clients);
+    }
+    
+    @PutMapping("/{tenantId}")
+    public ResponseEntity<TenantDTO> updateTenant(
+            @PathVariable String tenantId,
+            @Valid @RequestBody TenantDTO dto) {
+        Tenant tenant = tenantService.updateTenant(tenantId, dto.toEntity());
+        return ResponseEntity.ok(TenantDTO.fromEntity(tenant));
+    }
+    
+    @DeleteMapping("/{tenantId}")
+    public ResponseEntity<Void> deleteTenant(@PathVariable String tenantId) {
+        tenantService.deleteTenant(tenantId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.corporation.ratelimiter.controller;
+
+import com.corporation.ratelimiter.dto.ClientUsageDTO;
+import com.corporation.ratelimiter.dto.UsageCounterDTO;
+import com.corporation.ratelimiter.service.UsageService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@RestController
+@RequestMapping("/api/usage")
+@RequiredArgsConstructor
+public class UsageController {
+    
+    private final UsageService usageService;
+    private final ObjectMapper objectMapper;
+    
+    @GetMapping("/{clientId}")
+    public ResponseEntity<ClientUsageDTO> getClientUsage(@PathVariable String clientId) {
+        return ResponseEntity.ok(usageService.getClientUsage(clientId));
+    }
+    
+    // written straight to the response as each SCAN batch comes back, never held as one list
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getAllUsage() {
+        UsageCounterDTO global = usageService.getGlobalUsage();
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeObjectField("global", global);
+                generator.writeArrayFieldStart("clients");
+                usageService.forEachClientUsage(usage -> {
+                    try {
+                        generator.writeObject(usage);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
@@ -0,0 +1,61 @@
+package com.corporation.ratelimiter.decision;
+
+import com.corporation.ratelimiter.service.ConcurrencyPermit;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one client connection of the decision server. The selector thread
+ * owns the channel and the read buffer; requests go to the workers through
+ * the inbox, one drain at a time so they are answered in order, and encoded
+ * replies come back through the outbox. Both are bounded by the server, which
+ * stops reading from a connection while either is full.
+ */
+@RequiredArgsConstructor
+class DecisionConnection {
+    
+    @Getter
+    private final SocketChannel channel;
+    // selector thread only
+    ByteBuffer readBuffer;
+    
+    final Queue<DecisionRequest> inbox = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean draining = new AtomicBoolean();
+    final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+    // sizes of the two queues, the server stops reading while either is too long
+    final AtomicInteger queuedRequests = new AtomicInteger();
+    final AtomicInteger queuedReplies = new AtomicInteger();
+    volatile boolean closed;
+    
+    // concurrency slots granted on this connection, freed by RELEASE or when it closes
+    private final Map<Long, ConcurrencyPermit> permits = new ConcurrentHashMap<>();
+    private final AtomicLong nextPermitId = new AtomicLong();
+    
+    long hold(ConcurrencyPermit permit) {
+        long id = nextPermitId.incrementAndGet();
+        permits.put(id, permit);
+        return id;
+    }
+    
+    ConcurrencyPermit take(long permitId) {
+        return permits.remove(permitId);
+    }
+    
+    List<ConcurrencyPermit> takeAll() {
+        List<ConcurrencyPermit> held = new ArrayList<>(permits.values());
+        permits.clear();
+        return held;
+    }
+}
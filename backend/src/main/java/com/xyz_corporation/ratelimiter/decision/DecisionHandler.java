@@ -0,0 +1,143 @@
+package com.corporation.ratelimiter.decision;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.interceptor.RateLimitRouteRegistry;
+import com.corporation.ratelimiter.interceptor.RequestCostResolver;
+import com.corporation.ratelimiter.service.ConcurrencyLimiter;
+import com.corporation.ratelimiter.service.ConcurrencyPermit;
+import com.corporation.ratelimiter.service.LimitCheck;
+import com.corporation.ratelimiter.service.LoadShedder;
+import com.corporation.ratelimiter.service.RateLimitConfigService;
+import com.corporation.ratelimiter.service.RateLimitRoute;
+import com.corporation.ratelimiter.service.RateLimitService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers decision protocol requests with the same engine as the API: load
+ * shedding, the client's concurrency slots, then its limits. The checks of
+ * every request drained from a connection at once, pipelined ones included,
+ * go to redis as a single batch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DecisionHandler {
+    
+    private final RateLimitService rateLimitService;
+    private final RateLimitConfigService configService;
+    private final RateLimitRouteRegistry routeRegistry;
+    private final RequestCostResolver costResolver;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final LoadShedder loadShedder;
+    
+    @Value("${rate-limiter.limits-check.max-items:1000}")
+    private int maxItems;
+    
+    List<DecisionReply> handle(List<DecisionRequest> requests, DecisionConnection connection) {
+        DecisionReply.Outcome[][] outcomes = new DecisionReply.Outcome[requests.size()][];
+        String[] errors = new String[requests.size()];
+        List<LimitCheck> checks = new ArrayList<>();
+        List<Pending> pending = new ArrayList<>();
+        
+        for (int i = 0; i < requests.size(); i++) {
+            DecisionRequest request = requests.get(i);
+            if (request.getOp() == DecisionProtocol.RELEASE) {
+                ConcurrencyPermit permit = connection.take(request.getPermitId());
+                if (permit != null) {
+                    concurrencyLimiter.release(permit);
+                }
+                outcomes[i] = new DecisionReply.Outcome[0];
+                continue;
+            }
+            List<LimitCheck> resolved;
+            try {
+                resolved = resolve(request.getItems());
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+                continue;
+            }
+            outcomes[i] = new DecisionReply.Outcome[resolved.size()];
+            for (int j = 0; j < resolved.size(); j++) {
+                LimitCheck check = resolved.get(j);
+                String clientId = check.getClientId();
+                // lower tiers make room for higher ones while the global budget runs low
+                if (loadShedder.shouldShed(configService.getPriority(clientId))) {
+                    outcomes[i][j] = new DecisionReply.Outcome(DecisionProtocol.SHED, 0, 1, 0);
+                    continue;
+                }
+                int maxConcurrent = configService.getMaxConcurrentRequests(clientId);
+                ConcurrencyPermit permit = concurrencyLimiter.tryAcquire(clientId, maxConcurrent);
+                if (permit == null) {
+                    outcomes[i][j] = new DecisionReply.Outcome(DecisionProtocol.CONCURRENCY_LIMITED, 0, 1, 0);
+                    continue;
+                }
+                checks.add(check);
+                pending.add(new Pending(i, j, permit));
+            }
+        }
+        
+        List<RateLimitDecision> decisions = checks.isEmpty() ? List.of() : rateLimitService.checkLimits(checks);
+        for (int k = 0; k < decisions.size(); k++) {
+            RateLimitDecision decision = decisions.get(k);
+            Pending slot = pending.get(k);
+            long permitId = 0;
+            if (!decision.isAllowed()) {
+                concurrencyLimiter.release(slot.permit);
+            } else if (slot.permit.getLimit() > 0) {
+                permitId = connection.hold(slot.permit);
+            }
+            RateLimitResult reported = decision.getReportedResult();
+            outcomes[slot.request][slot.item] = new DecisionReply.Outcome(
+                decision.isAllowed() ? DecisionProtocol.ALLOWED : DecisionProtocol.DENIED,
+                reported != null ? reported.getRemainingRequests() : -1,
+                reported != null ? reported.getResetSeconds() : -1,
+                permitId);
+        }
+        
+        List<DecisionReply> replies = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            DecisionRequest request = requests.get(i);
+            replies.add(errors[i] != null
+                ? new DecisionReply(request.getOp(), request.getId(), errors[i], List.of())
+                : new DecisionReply(request.getOp(), request.getId(), null, Arrays.asList(outcomes[i])));
+        }
+        return replies;
+    }
+    
+    // slots still held by a connection that went away
+    void releaseAll(DecisionConnection connection) {
+        for (ConcurrencyPermit permit : connection.takeAll()) {
+            concurrencyLimiter.release(permit);
+        }
+    }
+    
+    private List<LimitCheck> resolve(List<DecisionRequest.Item> items) {
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " checks per request, got " + items.size());
+        }
+        List<LimitCheck> checks = new ArrayList<>(items.size());
+        for (DecisionRequest.Item item : items) {
+            if (item.getClientId() == null || item.getClientId().isBlank()) {
+                throw new IllegalArgumentException("Client id is required");
+            }
+            RateLimitRoute route = routeRegistry.resolve(item.getResource());
+            checks.add(new LimitCheck(item.getClientId(), costResolver.checkCost(item.getCost()), route));
+        }
+        return checks;
+    }
+    
+    @RequiredArgsConstructor
+    private static class Pending {
+        private final int request;
+        private final int item;
+        private final ConcurrencyPermit permit;
+    }
+}
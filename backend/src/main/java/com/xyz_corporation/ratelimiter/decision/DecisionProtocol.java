@@ -0,0 +1,170 @@
+package com.corporation.ratelimiter.decision;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format of the binary decision protocol, big-endian throughout. Every
+ * message is a frame: a 4 byte length of the rest, the op and the request id,
+ * which the reply repeats so a client can pipeline any number of requests on
+ * one connection. Strings are a 2 byte length followed by UTF-8.
+ *
+ * <pre>
+ * CHECK        [op][id:i32][item]
+ * CHECK_BATCH  [op][id:i32][count:u16][item]*count
+ * RELEASE      [op][id:i32][permitId:i64]
+ *   item       [clientId:str][resource:str, empty for none][cost:i32]
+ * reply        [op][id:i32][status] then
+ *   OK         [count:u16][decision:u8][remaining:i64][resetSeconds:i64][permitId:i64]*count
+ *   ERROR      [message:str]
+ * </pre>
+ */
+public final class DecisionProtocol {
+    
+    public static final byte CHECK = 1;
+    public static final byte CHECK_BATCH = 2;
+    public static final byte RELEASE = 3;
+    
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    
+    public static final byte DENIED = 0;
+    public static final byte ALLOWED = 1;
+    public static final byte CONCURRENCY_LIMITED = 2;
+    public static final byte SHED = 3;
+    
+    public static final int LENGTH_BYTES = 4;
+    private static final int HEADER_BYTES = 1 + 4;
+    private static final int OUTCOME_BYTES = 1 + 8 + 8 + 8;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    
+    private DecisionProtocol() {
+    }
+    
+    // frame body, without the length
+    public static DecisionRequest readRequest(ByteBuffer frame) {
+        byte op = frame.get();
+        int id = frame.getInt();
+        switch (op) {
+            case CHECK:
+                return DecisionRequest.check(id, readItem(frame));
+            case CHECK_BATCH:
+                int count = Short.toUnsignedInt(frame.getShort());
+                List<DecisionRequest.Item> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(readItem(frame));
+                }
+                return DecisionRequest.checkBatch(id, items);
+            case RELEASE:
+                return DecisionRequest.release(id, frame.getLong());
+            default:
+                throw new IllegalArgumentException("Unknown op " + op);
+        }
+    }
+    
+    // whole frame, with the length
+    public static int requestSize(DecisionRequest request) {
+        int size = LENGTH_BYTES + HEADER_BYTES;
+        if (request.getOp() == RELEASE) {
+            return size + 8;
+        }
+        if (request.getOp() == CHECK_BATCH) {
+            if (request.getItems().size() > 0xFFFF) {
+                throw new IllegalArgumentException("At most 65535 items per batch");
+            }
+            size += 2;
+        }
+        for (DecisionRequest.Item item : request.getItems()) {
+            size += stringSize(item.getClientId()) + stringSize(item.getResource()) + 4;
+        }
+        return size;
+    }
+    
+    public static void writeRequest(ByteBuffer out, DecisionRequest request) {
+        out.putInt(requestSize(request) - LENGTH_BYTES);
+        out.put(request.getOp());
+        out.putInt(request.getId());
+        if (request.getOp() == RELEASE) {
+            out.putLong(request.getPermitId());
+            return;
+        }
+        if (request.getOp() == CHECK_BATCH) {
+            out.putShort((short) request.getItems().size());
+        }
+        for (DecisionRequest.Item item : request.getItems()) {
+            writeString(out, item.getClientId());
+            writeString(out, item.getResource());
+            out.putInt(item.getCost());
+        }
+    }
+    
+    public static DecisionReply readReply(ByteBuffer frame) {
+        byte op = frame.get();
+        int id = frame.getInt();
+        if (frame.get() == STATUS_ERROR) {
+            return new DecisionReply(op, id, readString(frame), List.of());
+        }
+        int count = Short.toUnsignedInt(frame.getShort());
+        List<DecisionReply.Outcome> outcomes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            outcomes.add(new DecisionReply.Outcome(frame.get(), frame.getLong(), frame.getLong(), frame.getLong()));
+        }
+        return new DecisionReply(op, id, null, outcomes);
+    }
+    
+    public static int replySize(DecisionReply reply) {
+        int size = LENGTH_BYTES + HEADER_BYTES + 1;
+        if (reply.isError()) {
+            return size + stringSize(reply.getError());
+        }
+        return size + 2 + reply.getOutcomes().size() * OUTCOME_BYTES;
+    }
+    
+    public static void writeReply(ByteBuffer out, DecisionReply reply) {
+        out.putInt(replySize(reply) - LENGTH_BYTES);
+        out.put(reply.getOp());
+        out.putInt(reply.getId());
+        if (reply.isError()) {
+            out.put(STATUS_ERROR);
+            writeString(out, reply.getError());
+            return;
+        }
+        out.put(STATUS_OK);
+        out.putShort((short) reply.getOutcomes().size());
+        for (DecisionReply.Outcome outcome : reply.getOutcomes()) {
+            out.put(outcome.getDecision());
+            out.putLong(outcome.getRemaining());
+            out.putLong(outcome.getResetSeconds());
+            out.putLong(outcome.getPermitId());
+        }
+    }
+    
+    private static DecisionRequest.Item readItem(ByteBuffer frame) {
+        String clientId = readString(frame);
+        String resource = readString(frame);
+        return new DecisionRequest.Item(clientId, resource.isEmpty() ? null : resource, frame.getInt());
+    }
+    
+    private static String readString(ByteBuffer frame) {
+        int length = Short.toUnsignedInt(frame.getShort());
+        byte[] bytes = new byte[length];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void writeString(ByteBuffer out, String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+    
+    private static int stringSize(String value) {
+        int length = value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0;
+        if (length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String of " + length + " bytes does not fit the protocol");
+        }
+        return 2 + length;
+    }
+}
@@ -0,0 +1,35 @@
+package com.corporation.ratelimiter.decision;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Reply to the {@link DecisionRequest} with the same id: an outcome per item,
+ * none for RELEASE, or the error that request failed with.
+ */
+@Value
+public class DecisionReply {
+    byte op;
+    int id;
+    String error;
+    List<Outcome> outcomes;
+    
+    public boolean isError() {
+        return error != null;
+    }
+    
+    @Value
+    public static class Outcome {
+        // DecisionProtocol.ALLOWED, DENIED, CONCURRENCY_LIMITED or SHED
+        byte decision;
+        long remaining;
+        long resetSeconds;
+        // what RELEASE frees once the call is done, 0 when the client has no concurrency limit
+        long permitId;
+        
+        public boolean isAllowed() {
+            return decision == DecisionProtocol.ALLOWED;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.corporation.ratelimiter.decision;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * A request of the binary decision protocol, see {@link DecisionProtocol}.
+ * CHECK has one item, CHECK_BATCH any number, RELEASE only the permit id.
+ */
+@Value
+public class DecisionRequest {
+    byte op;
+    int id;
+    List<Item> items;
+    long permitId;
+    
+    public static DecisionRequest check(int id, Item item) {
+        return new DecisionRequest(DecisionProtocol.CHECK, id, List.of(item), 0);
+    }
+    
+    public static DecisionRequest checkBatch(int id, List<Item> items) {
+        return new DecisionRequest(DecisionProtocol.CHECK_BATCH, id, items, 0);
+    }
+    
+    public static DecisionRequest release(int id, long permitId) {
+        return new DecisionRequest(DecisionProtocol.RELEASE, id, List.of(), permitId);
+    }
+    
+    @Value
+    public static class Item {
+        String clientId;
+        // a route name or channel whose policies apply too, null for none
+        String resource;
+        int cost;
+    }
+}
@@ -0,0 +1,351 @@
+package com.corporation.ratelimiter.decision;
+
+import com.corporation.ratelimiter.util.DirectBufferPool;
+import com.corporation.ratelimiter.util.ThreadFactories;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * NIO server for the binary decision protocol ({@link DecisionProtocol}), for
+ * sidecars that find HTTP and JSON too heavy per call. Listens on a local TCP
+ * port or, with rate-limiter.decision-server.unix-socket, on a Unix domain
+ * socket. One selector thread does all socket I/O with pooled direct buffers
+ * and decodes the frames; the requests are answered on worker threads, since
+ * the limit checks block on redis.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rate-limiter.decision-server", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class DecisionServer {
+    
+    private final DecisionHandler handler;
+    
+    @Value("${rate-limiter.decision-server.bind-address:127.0.0.1}")
+    private String bindAddress;
+    
+    @Value("${rate-limiter.decision-server.port:8091}")
+    private int port;
+    
+    @Value("${rate-limiter.decision-server.unix-socket:}")
+    private String unixSocket;
+    
+    @Value("${rate-limiter.decision-server.workers:8}")
+    private int workers;
+    
+    // per connection read buffer and pooled reply buffer size
+    @Value("${rate-limiter.decision-server.buffer-bytes:65536}")
+    private int bufferBytes;
+    
+    @Value("${rate-limiter.decision-server.max-frame-bytes:1048576}")
+    private int maxFrameBytes;
+    
+    // decoded requests waiting for a worker, past this the connection is not read from
+    @Value("${rate-limiter.decision-server.max-queued-requests:10000}")
+    private int maxQueuedRequests;
+    
+    // reply buffers the client has not read yet, past this the connection is not read from
+    @Value("${rate-limiter.decision-server.max-queued-replies:16}")
+    private int maxQueuedReplies;
+    
+    private DirectBufferPool buffers;
+    private ServerSocketChannel server;
+    private Selector selector;
+    private ExecutorService executor;
+    private Thread selectorThread;
+    private volatile boolean running = true;
+    // connections with replies waiting to be written, handed over by the workers
+    private final Queue<DecisionConnection> writable = new ConcurrentLinkedQueue<>();
+    
+    @PostConstruct
+    public void start() throws IOException {
+        buffers = new DirectBufferPool(bufferBytes, 1024);
+        executor = Executors.newFixedThreadPool(workers, ThreadFactories.named("decision", true));
+        selector = Selector.open();
+        if (unixSocket != null && !unixSocket.isBlank()) {
+            Path path = Path.of(unixSocket);
+            // left over from an instance that did not shut down cleanly
+            Files.deleteIfExists(path);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(path));
+            log.info("Decision server listening on unix socket {}", path);
+        } else {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(bindAddress, port));
+            log.info("Decision server listening on {}:{}", bindAddress, getPort());
+        }
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        selectorThread = ThreadFactories.named("decision-selector", false).newThread(this::run);
+        selectorThread.start();
+    }
+    
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+        if (unixSocket != null && !unixSocket.isBlank()) {
+            Files.deleteIfExists(Path.of(unixSocket));
+        }
+    }
+    
+    // the bound TCP port, differs from the configured one when that is 0
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+    
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                DecisionConnection ready;
+                while ((ready = writable.poll()) != null) {
+                    flush(ready);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        DecisionConnection connection = (DecisionConnection) key.attachment();
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("Decision server stopped: {}", e.getMessage(), e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof DecisionConnection connection) {
+                    close(connection);
+                }
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Error closing decision server: {}", e.getMessage());
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        if (channel.getRemoteAddress() instanceof InetSocketAddress) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        DecisionConnection connection = new DecisionConnection(channel);
+        connection.readBuffer = buffers.acquire(bufferBytes);
+        channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+    
+    private void read(DecisionConnection connection) {
+        ByteBuffer buffer = connection.readBuffer;
+        boolean received = false;
+        try {
+            if (connection.getChannel().read(buffer) < 0) {
+                close(connection);
+                return;
+            }
+            buffer.flip();
+            // every complete frame in the buffer, a pipelining client may have sent many
+            while (buffer.remaining() >= DecisionProtocol.LENGTH_BYTES) {
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > maxFrameBytes) {
+                    throw new IllegalArgumentException("Frame of " + length + " bytes");
+                }
+                if (buffer.remaining() < DecisionProtocol.LENGTH_BYTES + length) {
+                    break;
+                }
+                int start = buffer.position() + DecisionProtocol.LENGTH_BYTES;
+                connection.inbox.add(DecisionProtocol.readRequest(buffer.slice(start, length)));
+                connection.queuedRequests.incrementAndGet();
+                buffer.position(start + length);
+                received = true;
+            }
+            buffer.compact();
+            growForNextFrame(connection);
+        } catch (IOException | RuntimeException e) {
+            // a frame that cannot be parsed leaves the stream out of sync
+            log.warn("Closing decision connection: {}", e.getMessage());
+            close(connection);
+            return;
+        }
+        if (received && connection.draining.compareAndSet(false, true)) {
+            executor.execute(() -> drain(connection));
+        }
+        if (isBehind(connection)) {
+            // read again once flush() finds the queues short enough
+            SelectionKey key = connection.getChannel().keyFor(selector);
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+    
+    // a client that sends faster than it is answered, or than it reads its replies
+    private boolean isBehind(DecisionConnection connection) {
+        return connection.queuedRequests.get() >= maxQueuedRequests
+            || connection.queuedReplies.get() >= maxQueuedReplies;
+    }
+    
+    // a frame bigger than the read buffer gets a buffer of its own size
+    private void growForNextFrame(DecisionConnection connection) {
+        ByteBuffer buffer = connection.readBuffer;
+        if (buffer.position() < DecisionProtocol.LENGTH_BYTES) {
+            return;
+        }
+        int needed = DecisionProtocol.LENGTH_BYTES + buffer.getInt(0);
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(needed);
+        buffer.flip();
+        larger.put(buffer);
+        buffers.release(buffer);
+        connection.readBuffer = larger;
+    }
+    
+    // runs on a worker, one at a time per connection so replies keep the request order
+    private void drain(DecisionConnection connection) {
+        do {
+            List<DecisionRequest> requests = new ArrayList<>();
+            DecisionRequest request;
+            while ((request = connection.inbox.poll()) != null) {
+                requests.add(request);
+                connection.queuedRequests.decrementAndGet();
+            }
+            if (!requests.isEmpty() && !connection.closed) {
+                send(connection, answer(requests, connection));
+                if (connection.closed) {
+                    // closed while these were answered, their slots would never be released
+                    handler.releaseAll(connection);
+                }
+            }
+            connection.draining.set(false);
+        } while (!connection.inbox.isEmpty() && connection.draining.compareAndSet(false, true));
+    }
+    
+    private List<DecisionReply> answer(List<DecisionRequest> requests, DecisionConnection connection) {
+        try {
+            return handler.handle(requests, connection);
+        } catch (RuntimeException e) {
+            log.error("Error answering {} decision requests: {}", requests.size(), e.getMessage(), e);
+            List<DecisionReply> replies = new ArrayList<>(requests.size());
+            for (DecisionRequest request : requests) {
+                replies.add(new DecisionReply(request.getOp(), request.getId(), "Internal error", List.of()));
+            }
+            return replies;
+        }
+    }
+    
+    private void send(DecisionConnection connection, List<DecisionReply> replies) {
+        int size = 0;
+        for (DecisionReply reply : replies) {
+            size += DecisionProtocol.replySize(reply);
+        }
+        ByteBuffer out = buffers.acquire(size);
+        for (DecisionReply reply : replies) {
+            DecisionProtocol.writeReply(out, reply);
+        }
+        out.flip();
+        connection.outbox.add(out);
+        connection.queuedReplies.incrementAndGet();
+        writable.add(connection);
+        selector.wakeup();
+    }
+    
+    // selector thread only
+    private void flush(DecisionConnection connection) {
+        SelectionKey key = connection.getChannel().keyFor(selector);
+        if (connection.closed || key == null || !key.isValid()) {
+            return;
+        }
+        try {
+            ByteBuffer out;
+            while ((out = connection.outbox.peek()) != null) {
+                connection.getChannel().write(out);
+                if (out.hasRemaining()) {
+                    // the socket is full, carry on once it drains
+                    key.interestOps(readInterest(connection) | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.outbox.poll();
+                connection.queuedReplies.decrementAndGet();
+                buffers.release(out);
+            }
+            key.interestOps(readInterest(connection));
+        } catch (IOException e) {
+            log.warn("Closing decision connection: {}", e.getMessage());
+            close(connection);
+        }
+    }
+    
+    // reading resumes here, after a drain or a write made room
+    private int readInterest(DecisionConnection connection) {
+        return isBehind(connection) ? 0 : SelectionKey.OP_READ;
+    }
+    
+    private void close(DecisionConnection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        try {
+            connection.getChannel().close();
+        } catch (IOException e) {
+            log.debug("Error closing decision connection: {}", e.getMessage());
+        }
+        buffers.release(connection.readBuffer);
+        ByteBuffer out;
+        while ((out = connection.outbox.poll()) != null) {
+            buffers.release(out);
+        }
+        // releasing may be a redis call, keep it off the selector
+        executor.execute(() -> handler.releaseAll(connection));
+    }
+}
@@ -0,0 +1,7 @@
+package com.corporation.ratelimiter.dispatch;
+
+public enum DispatchStatus {
+    QUEUED,
+    SENT,
+    FAILED
+}
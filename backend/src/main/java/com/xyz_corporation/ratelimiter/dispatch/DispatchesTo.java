@@ -0,0 +1,19 @@
+package com.corporation.ratelimiter.dispatch;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler that enqueues into the given channel. The rate limit
+ * interceptor turns such requests away with 503 while the channel's queue is
+ * saturated, before any quota is charged.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DispatchesTo {
+    NotificationChannel value();
+}
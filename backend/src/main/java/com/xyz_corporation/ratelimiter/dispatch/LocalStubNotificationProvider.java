@@ -0,0 +1,35 @@
+package com.corporation.ratelimiter.dispatch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Stand-in provider for every channel that only logs, optionally pretending to
+ * take some time per batch. Ranked last so any real provider wins.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@Slf4j
+public class LocalStubNotificationProvider implements NotificationProvider {
+    
+    @Value("${rate-limiter.dispatch.stub.latency-ms:0}")
+    private long latencyMs;
+    
+    @Override
+    public boolean supports(NotificationChannel channel) {
+        return true;
+    }
+    
+    @Override
+    public void send(NotificationChannel channel, List<Notification> batch) throws InterruptedException {
+        if (latencyMs > 0) {
+            Thread.sleep(latencyMs);
+        }
+        log.debug("Stub delivered {} {} notifications", batch.size(), channel);
+    }
+}
@@ -0,0 +1,16 @@
+package com.corporation.ratelimiter.dispatch;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+// a single message waiting in (or taken from) a channel queue
+@Value
+public class Notification {
+    String trackingId;
+    String clientId;
+    NotificationChannel channel;
+    String recipient;
+    String message;
+    Instant queuedAt;
+}
@@ -0,0 +1,6 @@
+package com.corporation.ratelimiter.dispatch;
+
+public enum NotificationChannel {
+    SMS,
+    EMAIL
+}
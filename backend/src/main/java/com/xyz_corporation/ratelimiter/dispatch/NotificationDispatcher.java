@@ -0,0 +1,195 @@
+package com.corporation.ratelimiter.dispatch;
+
+import com.corporation.ratelimiter.util.ThreadFactories;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decouples the HTTP request from delivery. Every channel has a bounded queue
+ * drained by its own workers, which hand the provider up to batch-size messages
+ * per call. Request threads only enqueue, so provider latency shows up as queue
+ * depth, and a queue above the high watermark makes new requests for that
+ * channel fail fast (see {@link DispatchesTo}).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDispatcher {
+    
+    private final List<NotificationProvider> providers;
+    private final NotificationTracker tracker;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    
+    @Value("${rate-limiter.dispatch.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    // fraction of the queue at which new work is turned away
+    @Value("${rate-limiter.dispatch.high-watermark:0.9}")
+    private double highWatermark;
+    
+    @Value("${rate-limiter.dispatch.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${rate-limiter.dispatch.workers-per-channel:4}")
+    private int workersPerChannel;
+    
+    @Value("${rate-limiter.dispatch.virtual-threads:true}")
+    private boolean virtualThreads;
+    
+    @Value("${rate-limiter.dispatch.shutdown-timeout-seconds:10}")
+    private long shutdownTimeoutSeconds;
+    
+    private final Map<NotificationChannel, BlockingQueue<Notification>> queues = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, ExecutorService> workers = new EnumMap<>(NotificationChannel.class);
+    private volatile boolean running;
+    private int saturationThreshold;
+    
+    @PostConstruct
+    public void start() {
+        saturationThreshold = Math.max(1, (int) (queueCapacity * highWatermark));
+        running = true;
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            NotificationProvider provider = providerFor(channel);
+            BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(queueCapacity);
+            queues.put(channel, queue);
+            
+            ExecutorService pool = Executors.newFixedThreadPool(workersPerChannel,
+                ThreadFactories.named("dispatch-" + channel.name().toLowerCase(), virtualThreads));
+            for (int i = 0; i < workersPerChannel; i++) {
+                pool.execute(() -> drain(channel, queue, provider));
+            }
+            workers.put(channel, pool);
+            
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry != null) {
+                Gauge.builder("ratelimiter.dispatch.queue.size", queue, BlockingQueue::size)
+                    .tag("channel", channel.name())
+                    .register(registry);
+            }
+            log.info("Dispatching {} through {} with {} workers (virtual threads: {})", channel,
+                provider.getClass().getSimpleName(), workersPerChannel,
+                virtualThreads && ThreadFactories.virtualThreadsAvailable());
+        }
+    }
+    
+    // workers finish what is already queued before they stop, what they cannot finish in time fails
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (ExecutorService pool : workers.values()) {
+            pool.shutdown();
+        }
+        for (Map.Entry<NotificationChannel, ExecutorService> entry : workers.entrySet()) {
+            if (!entry.getValue().awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                entry.getValue().shutdownNow();
+                List<Notification> dropped = new ArrayList<>();
+                queues.get(entry.getKey()).drainTo(dropped);
+                log.warn("{} dispatch workers did not finish, {} notifications dropped", entry.getKey(), dropped.size());
+                fail(dropped);
+            }
+        }
+    }
+    
+    public boolean isSaturated(NotificationChannel channel) {
+        return queues.get(channel).size() >= saturationThreshold;
+    }
+    
+    // how many more messages the channel takes before it counts as saturated
+    public int remainingCapacity(NotificationChannel channel) {
+        return Math.max(0, saturationThreshold - queues.get(channel).size());
+    }
+    
+    /**
+     * Queues one message per recipient, in order, and returns their tracking ids.
+     * Stops at the first one the queue has no room for, so the result can be
+     * shorter than the recipient list.
+     */
+    public List<String> enqueue(String clientId, NotificationChannel channel, List<String> recipients, String message) {
+        BlockingQueue<Notification> queue = queues.get(channel);
+        List<String> trackingIds = new ArrayList<>(recipients.size());
+        Instant now = Instant.now();
+        for (String recipient : recipients) {
+            String trackingId = UUID.randomUUID().toString();
+            tracker.track(trackingId);
+            if (!queue.offer(new Notification(trackingId, clientId, channel, recipient, message, now))) {
+                tracker.update(trackingId, DispatchStatus.FAILED);
+                break;
+            }
+            trackingIds.add(trackingId);
+        }
+        return trackingIds;
+    }
+    
+    private void drain(NotificationChannel channel, BlockingQueue<Notification> queue, NotificationProvider provider) {
+        List<Notification> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Notification first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                deliver(channel, provider, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    private void deliver(NotificationChannel channel, NotificationProvider provider, List<Notification> batch)
+            throws InterruptedException {
+        DispatchStatus status;
+        try {
+            provider.send(channel, batch);
+            status = DispatchStatus.SENT;
+        } catch (InterruptedException e) {
+            // stopped mid-batch, whether the provider got them is unknown
+            log.warn("Interrupted delivering {} {} notifications, marking them failed", batch.size(), channel);
+            fail(batch);
+            throw e;
+        } catch (Exception e) {
+            log.error("Provider failed to deliver {} {} notifications: {}", batch.size(), channel, e.getMessage(), e);
+            status = DispatchStatus.FAILED;
+        }
+        for (Notification notification : batch) {
+            tracker.update(notification.getTrackingId(), status);
+        }
+    }
+    
+    // so nothing that will not be delivered stays QUEUED
+    private void fail(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            tracker.update(notification.getTrackingId(), DispatchStatus.FAILED);
+        }
+    }
+    
+    private NotificationProvider providerFor(NotificationChannel channel) {
+        return providers.stream()
+            .filter(provider -> provider.supports(channel))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("No notification provider for " + channel));
+    }
+}
@@ -0,0 +1,23 @@
+package com.corporation.ratelimiter.dispatch;
+
+import java.util.List;
+
+/**
+ * Delivers notifications to an external service (SMS gateway, mail server, ...).
+ * Providers are called from the dispatcher's worker threads with batches of up
+ * to rate-limiter.dispatch.batch-size messages of a single channel, never from
+ * a request thread, so a slow provider only fills the queue.
+ * <p>
+ * Register an implementation as a bean, it takes precedence over the local stub
+ * for the channels it supports. Use {@link org.springframework.core.annotation.Order}
+ * to rank several providers for the same channel.
+ */
+public interface NotificationProvider {
+    
+    boolean supports(NotificationChannel channel);
+    
+    /**
+     * Sends the batch. Throwing marks every message of the batch as failed.
+     */
+    void send(NotificationChannel channel, List<Notification> batch) throws Exception;
+}
@@ -0,0 +1,45 @@
+package com.corporation.ratelimiter.dispatch;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Delivery status per tracking id, kept in memory for the most recent
+ * rate-limiter.dispatch.tracking-capacity notifications. Older ones are
+ * forgotten oldest first.
+ */
+@Component
+public class NotificationTracker {
+    
+    private final Map<String, DispatchStatus> statuses = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    
+    @Value("${rate-limiter.dispatch.tracking-capacity:100000}")
+    private int capacity;
+    
+    public void track(String trackingId) {
+        statuses.put(trackingId, DispatchStatus.QUEUED);
+        insertionOrder.add(trackingId);
+        while (statuses.size() > capacity) {
+            String eldest = insertionOrder.poll();
+            if (eldest == null) {
+                break;
+            }
+            statuses.remove(eldest);
+        }
+    }
+    
+    public void update(String trackingId, DispatchStatus status) {
+        statuses.computeIfPresent(trackingId, (id, previous) -> status);
+    }
+    
+    public Optional<DispatchStatus> getStatus(String trackingId) {
+        return Optional.ofNullable(statuses.get(trackingId));
+    }
+}
@@ -0,0 +1,19 @@
+package com.corporation.ratelimiter.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchNotificationRequest {
+    @NotEmpty(message = "At least one recipient is required")
+    private List<@NotBlank(message = "Recipient must not be blank") String> recipients;
+    
+    @NotBlank(message = "Message is required")
+    private String message;
+    
+    // send to as many recipients as the remaining quota allows instead of rejecting the whole batch
+    private boolean allowPartial;
+}
@@ -20,12 +20,16 @@ public class ClientDTO {
     @Email(message = "Invalid email format")
     private String contactEmail;
     
+    // optional, the tenant whose shared quota the client draws from
+    private String tenantId;
+    
     public Client toEntity() {
         Client client = new Client();
         client.setClientId(this.clientId);
         client.setName(this.name);
         client.setDescription(this.description);
         client.setContactEmail(this.contactEmail);
+        client.setTenantId(this.tenantId == null || this.tenantId.isBlank() ? null : this.tenantId.trim());
         return client;
     }
     
@@ -36,6 +40,7 @@ public class ClientDTO {
         dto.setName(client.getName());
         dto.setDescription(client.getDescription());
         dto.setContactEmail(client.getContactEmail());
+        dto.setTenantId(client.getTenantId());
         return dto;
     }
 }
@@ -0,0 +1,15 @@
+package com.corporation.ratelimiter.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ClientUsageDTO {
+    private String clientId;
+    private UsageCounterDTO timeWindow;
+    private UsageCounterDTO monthly;
+    
+    // only filled for single client lookups, the bulk stream reports it once up front
+    private UsageCounterDTO global;
+}
@@ -0,0 +1,37 @@
+package com.corporation.ratelimiter.dto;
+
+import com.corporation.ratelimiter.model.IpRule;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class IpRuleDTO {
+    private Long id;
+    
+    // e.g. 203.0.113.0/24 or 2001:db8::/32, a bare address is a single host
+    @NotBlank(message = "CIDR is required")
+    private String cidr;
+    
+    @NotNull(message = "Action is required")
+    private IpRule.Action action;
+    
+    private String description;
+    
+    public IpRule toEntity() {
+        IpRule rule = new IpRule();
+        rule.setCidr(this.cidr);
+        rule.setAction(this.action);
+        rule.setDescription(this.description);
+        return rule;
+    }
+    
+    public static IpRuleDTO fromEntity(IpRule rule) {
+        IpRuleDTO dto = new IpRuleDTO();
+        dto.setId(rule.getId());
+        dto.setCidr(rule.getCidr());
+        dto.setAction(rule.getAction());
+        dto.setDescription(rule.getDescription());
+        return dto;
+    }
+}
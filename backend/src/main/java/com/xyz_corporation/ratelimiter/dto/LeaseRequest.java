@@ -0,0 +1,20 @@
+package com.corporation.ratelimiter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Units a client library wants to spend in process, or gives back unspent.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaseRequest {
+    private String clientId;
+    // a route name or channel whose policies apply too, as for /api/limits/check
+    private String resource;
+    private Integer units;
+    // the lease units are given back from; when leasing, the previous lease whose unspent units move over
+    private String leaseId;
+}
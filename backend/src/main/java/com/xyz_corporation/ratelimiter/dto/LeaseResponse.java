@@ -0,0 +1,19 @@
+package com.corporation.ratelimiter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaseResponse {
+    // 0 when nothing could be leased
+    private long granted;
+    private long remaining;
+    private long resetSeconds;
+    // how long the granted units may be spent, never past the reset of any counter they were charged to
+    private long ttlMs;
+    // to give unspent units back with, null when nothing was granted
+    private String leaseId;
+}
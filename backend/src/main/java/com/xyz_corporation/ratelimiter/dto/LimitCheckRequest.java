@@ -0,0 +1,23 @@
+package com.corporation.ratelimiter.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One item of a /api/limits/check batch, on the wire as a
+ * [clientId, resource, cost] tuple. resource and cost may be null.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"clientId", "resource", "cost"})
+public class LimitCheckRequest {
+    private String clientId;
+    // a route name or channel whose policies apply too
+    private String resource;
+    private Integer cost;
+}
@@ -0,0 +1,23 @@
+package com.corporation.ratelimiter.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Decision for one item of a /api/limits/check batch, on the wire as a
+ * [allowed, remaining, resetSeconds] tuple.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"allowed", "remaining", "resetSeconds"})
+public class LimitCheckResult {
+    private boolean allowed;
+    // room left on the counter that denied the request, or on the tightest one
+    private long remaining;
+    private long resetSeconds;
+}
@@ -1,11 +1,19 @@
 package com.corporation.ratelimiter.dto;
 
 import com.corporation.ratelimiter.model.RateLimitConfig;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Data
 public class RateLimitConfigDTO {
     @NotBlank(message = "Client ID is required")
@@ -23,8 +31,35 @@ public class RateLimitConfigDTO {
     @Min(value = 1, message = "Monthly requests must be at least 1")
     private Integer monthlyRequests;
     
+    // optional, requests allowed in flight at once
+    @Min(value = 1, message = "Max concurrent requests must be at least 1")
+    private Integer maxConcurrentRequests;
+    
+    // optional extra (requests, windowSeconds) rules
+    @Valid
+    private List<RateLimitWindowDTO> windows = new ArrayList<>();
+    
     private RateLimitConfig.ThrottlingMode throttlingMode = RateLimitConfig.ThrottlingMode.HARD;
     
+    // optional, LOW / NORMAL / HIGH
+    private RateLimitConfig.Priority priority;
+    
+    // every window needs its own size, they share a counter key otherwise
+    @AssertTrue(message = "Window sizes must differ from each other and from timeWindowSeconds")
+    public boolean isWindowSizesDistinct() {
+        if (windows == null || windows.isEmpty()) {
+            return true;
+        }
+        Set<Integer> sizes = new HashSet<>();
+        sizes.add(timeWindowSeconds);
+        for (RateLimitWindowDTO window : windows) {
+            if (window != null && !sizes.add(window.getWindowSeconds())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     public RateLimitConfig toEntity() {
         RateLimitConfig config = new RateLimitConfig();
         config.setClientId(this.clientId);
@@ -32,6 +67,11 @@ public class RateLimitConfigDTO {
         config.setTimeWindowSeconds(this.timeWindowSeconds);
         config.setMonthlyRequests(this.monthlyRequests);
         config.setThrottlingMode(this.throttlingMode);
+        config.setMaxConcurrentRequests(this.maxConcurrentRequests);
+        config.setPriority(this.priority);
+        if (this.windows != null) {
+            config.setWindows(this.windows.stream().map(RateLimitWindowDTO::toEntity).collect(Collectors.toCollection(ArrayList::new)));
+        }
         return config;
     }
     
@@ -42,6 +82,9 @@ public class RateLimitConfigDTO {
         dto.setTimeWindowSeconds(config.getTimeWindowSeconds());
         dto.setMonthlyRequests(config.getMonthlyRequests());
         dto.setThrottlingMode(config.getThrottlingMode());
+        dto.setMaxConcurrentRequests(config.getMaxConcurrentRequests());
+        dto.setPriority(config.getPriority());
+        dto.setWindows(config.getWindows().stream().map(RateLimitWindowDTO::fromEntity).collect(Collectors.toList()));
         return dto;
     }
 }
@@ -0,0 +1,48 @@
+package com.corporation.ratelimiter.dto;
+
+import com.corporation.ratelimiter.dispatch.NotificationChannel;
+import com.corporation.ratelimiter.model.RateLimitPolicy;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class RateLimitPolicyDTO {
+    private Long id;
+    
+    private String clientId;
+    
+    @NotNull(message = "Channel is required")
+    private NotificationChannel channel;
+    
+    // optional, narrows the policy to one route of the channel
+    private String route;
+    
+    @NotNull(message = "Requests is required")
+    @Min(value = 1, message = "Requests must be at least 1")
+    private Integer requests;
+    
+    @NotNull(message = "Window seconds is required")
+    @Min(value = 1, message = "Window seconds must be at least 1")
+    private Integer windowSeconds;
+    
+    public RateLimitPolicy toEntity() {
+        RateLimitPolicy policy = new RateLimitPolicy();
+        policy.setChannel(this.channel);
+        policy.setRoute(this.route == null || this.route.isBlank() ? null : this.route.trim());
+        policy.setRequests(this.requests);
+        policy.setWindowSeconds(this.windowSeconds);
+        return policy;
+    }
+    
+    public static RateLimitPolicyDTO fromEntity(RateLimitPolicy policy) {
+        RateLimitPolicyDTO dto = new RateLimitPolicyDTO();
+        dto.setId(policy.getId());
+        dto.setClientId(policy.getClientId());
+        dto.setChannel(policy.getChannel());
+        dto.setRoute(policy.getRoute());
+        dto.setRequests(policy.getRequests());
+        dto.setWindowSeconds(policy.getWindowSeconds());
+        return dto;
+    }
+}
@@ -0,0 +1,28 @@
+package com.corporation.ratelimiter.dto;
+
+import com.corporation.ratelimiter.model.RateLimitWindow;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class RateLimitWindowDTO {
+    @NotNull(message = "Window requests is required")
+    @Min(value = 1, message = "Window requests must be at least 1")
+    private Integer requests;
+    
+    @NotNull(message = "Window seconds is required")
+    @Min(value = 1, message = "Window seconds must be at least 1")
+    private Integer windowSeconds;
+    
+    public RateLimitWindow toEntity() {
+        return new RateLimitWindow(requests, windowSeconds);
+    }
+    
+    public static RateLimitWindowDTO fromEntity(RateLimitWindow window) {
+        RateLimitWindowDTO dto = new RateLimitWindowDTO();
+        dto.setRequests(window.getRequests());
+        dto.setWindowSeconds(window.getWindowSeconds());
+        return dto;
+    }
+}
@@ -11,6 +11,10 @@ public class SystemLimitConfigDTO {
     @Min(value = 1, message = "Global requests per second must be at least 1")
     private Integer globalRequestsPerSecond;
     
+    // read only: the limit being enforced, differs from the configured one in adaptive mode
+    private Integer effectiveGlobalRequestsPerSecond;
+    private boolean adaptive;
+    
     public SystemLimitConfig toEntity() {
         SystemLimitConfig config = new SystemLimitConfig();
         config.setGlobalRequestsPerSecond(this.globalRequestsPerSecond);
@@ -0,0 +1,58 @@
+package com.corporation.ratelimiter.dto;
+
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.model.Tenant;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class TenantDTO {
+    private Long id;
+    
+    @NotBlank(message = "Tenant ID is required")
+    private String tenantId;
+    
+    @NotBlank(message = "Tenant name is required")
+    private String name;
+    
+    @Min(value = 1, message = "Time window requests must be at least 1")
+    private Integer timeWindowRequests;
+    
+    @Min(value = 1, message = "Time window seconds must be at least 1")
+    private Integer timeWindowSeconds;
+    
+    @Min(value = 1, message = "Monthly requests must be at least 1")
+    private Integer monthlyRequests;
+    
+    private RateLimitConfig.ThrottlingMode throttlingMode = RateLimitConfig.ThrottlingMode.HARD;
+    
+    @AssertTrue(message = "Time window requests and seconds must be given together")
+    public boolean isTimeWindowComplete() {
+        return (timeWindowRequests == null) == (timeWindowSeconds == null);
+    }
+    
+    public Tenant toEntity() {
+        Tenant tenant = new Tenant();
+        tenant.setTenantId(this.tenantId);
+        tenant.setName(this.name);
+        tenant.setTimeWindowRequests(this.timeWindowRequests);
+        tenant.setTimeWindowSeconds(this.timeWindowSeconds);
+        tenant.setMonthlyRequests(this.monthlyRequests);
+        tenant.setThrottlingMode(this.throttlingMode);
+        return tenant;
+    }
+    
+    public static TenantDTO fromEntity(Tenant tenant) {
+        TenantDTO dto = new TenantDTO();
+        dto.setId(tenant.getId());
+        dto.setTenantId(tenant.getTenantId());
+        dto.setName(tenant.getName());
+        dto.setTimeWindowRequests(tenant.getTimeWindowRequests());
+        dto.setTimeWindowSeconds(tenant.getTimeWindowSeconds());
+        dto.setMonthlyRequests(tenant.getMonthlyRequests());
+        dto.setThrottlingMode(tenant.getThrottlingMode());
+        return dto;
+    }
+}
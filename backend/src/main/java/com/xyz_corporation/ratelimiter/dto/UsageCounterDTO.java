@@ -0,0 +1,20 @@
+package com.corporation.ratelimiter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageCounterDTO {
+    private long used;
+    private long limit;
+    private long remaining;
+    // seconds until the counter expires, -1 when there is no live counter
+    private long resetSeconds;
+    
+    public static UsageCounterDTO of(long used, long limit, long ttl) {
+        return new UsageCounterDTO(used, limit, Math.max(0, limit - used), ttl < 0 ? -1 : ttl);
+    }
+}
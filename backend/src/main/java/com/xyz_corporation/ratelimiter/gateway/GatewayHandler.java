@@ -0,0 +1,370 @@
+package com.corporation.ratelimiter.gateway;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.interceptor.RateLimitHeaders;
+import com.corporation.ratelimiter.interceptor.RequestCostResolver;
+import com.corporation.ratelimiter.interceptor.TrafficShaper;
+import com.corporation.ratelimiter.model.IpRule;
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.service.AdaptiveGlobalLimit;
+import com.corporation.ratelimiter.service.ClientAddressResolver;
+import com.corporation.ratelimiter.service.ConcurrencyLimiter;
+import com.corporation.ratelimiter.service.ConcurrencyPermit;
+import com.corporation.ratelimiter.service.IpRuleService;
+import com.corporation.ratelimiter.service.LoadShedder;
+import com.corporation.ratelimiter.service.RateLimitConfigService;
+import com.corporation.ratelimiter.service.RateLimitService;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebHandler;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Limits any request the gateway gets with the same checks as
+ * RateLimitInterceptor (load shedding, concurrency, the client's limits in
+ * HARD, SOFT or SHAPE mode) and reverse-proxies the ones let through to the
+ * upstream of their route. Bodies stream through in both directions, nothing
+ * is buffered.
+ *
+ * The limit checks are blocking redis calls, they run on the bounded elastic
+ * scheduler so the event loop never waits for them. Shaped requests wait on
+ * a reactor timer, holding no thread.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rate-limiter.gateway", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class GatewayHandler implements WebHandler {
+    
+    // connection level headers, never forwarded (RFC 9110 7.6.1)
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+        "te", "trailer", "transfer-encoding", "upgrade", "host");
+    
+    // reactor netty only ships its pool shaded, so the exception is matched by name
+    private static final String POOL_ACQUIRE_TIMEOUT = "PoolAcquireTimeoutException";
+    
+    private final GatewayProperties properties;
+    private final RateLimitService rateLimitService;
+    private final RateLimitConfigService configService;
+    private final RequestCostResolver costResolver;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final AdaptiveGlobalLimit adaptiveGlobalLimit;
+    private final LoadShedder loadShedder;
+    private final TrafficShaper trafficShaper;
+    private final ClientAddressResolver addressResolver;
+    private final IpRuleService ipRuleService;
+    
+    private ConnectionProvider connections;
+    private WebClient webClient;
+    // longest prefix first
+    private List<GatewayProperties.Route> routes;
+    
+    @PostConstruct
+    public void start() {
+        connections = ConnectionProvider.builder("gateway")
+            .maxConnections(properties.getMaxConnections())
+            .pendingAcquireTimeout(Duration.ofMillis(properties.getPendingAcquireTimeoutMs()))
+            .build();
+        HttpClient httpClient = HttpClient.create(connections)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeoutMs())
+            .responseTimeout(Duration.ofMillis(properties.getResponseTimeoutMs()));
+        webClient = WebClient.builder()
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+        for (GatewayProperties.Route route : properties.getRoutes()) {
+            if (route.getPath() == null || !route.getPath().startsWith("/") || route.getUri() == null) {
+                throw new IllegalStateException("Gateway route needs a path starting with / and a uri: " + route);
+            }
+        }
+        routes = properties.getRoutes().stream()
+            .sorted(Comparator.comparingInt((GatewayProperties.Route route) -> route.getPath().length()).reversed())
+            .toList();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        connections.disposeLater().block(Duration.ofSeconds(5));
+    }
+    
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        GatewayProperties.Route route = findRoute(request.getPath().value());
+        if (route == null) {
+            return reply(response, HttpStatus.NOT_FOUND);
+        }
+        
+        // allow and deny rules by the caller's address apply before anything is charged
+        byte[] address = address(request);
+        IpRule.Action ipRule = ipRuleService.match(address);
+        if (ipRule == IpRule.Action.DENY) {
+            return reply(response, HttpStatus.FORBIDDEN);
+        }
+        // an allowed subnet has no budget of its own, a client sending its id keeps all of its limits
+        String explicitClientId = request.getHeaders().getFirst("X-Client-Id");
+        if (ipRule == IpRule.Action.ALLOW && (explicitClientId == null || explicitClientId.isEmpty())) {
+            return proxy(exchange, route);
+        }
+        
+        String clientId = clientId(request, address);
+        int cost;
+        try {
+            cost = costResolver.resolveCost(request.getHeaders().getFirst(RequestCostResolver.COST_HEADER));
+        } catch (IllegalArgumentException e) {
+            return reply(response, HttpStatus.BAD_REQUEST);
+        }
+        
+        // the config lookups may go to the database on a cache miss, so they stay off the event loop too
+        long deadline = System.currentTimeMillis() + trafficShaper.getMaxWaitMs();
+        return blocking(() -> new ClientSettings(configService.getPriority(clientId),
+                configService.getMaxConcurrentRequests(clientId)))
+            .flatMap(settings -> {
+                // lower tiers make room for higher ones while the global budget runs low
+                if (loadShedder.shouldShed(settings.getPriority())) {
+                    return backpressure(response);
+                }
+                return acquire(exchange, route, clientId, cost, settings.getMaxConcurrent(), deadline);
+            });
+    }
+    
+    private Mono<Void> acquire(ServerWebExchange exchange, GatewayProperties.Route route, String clientId, int cost,
+                               int maxConcurrent, long deadline) {
+        ServerHttpResponse response = exchange.getResponse();
+        // the slot is given back exactly once however the exchange ends, also when the
+        // client goes away while it is still being acquired
+        AtomicReference<ConcurrencyPermit> acquired = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Runnable giveBack = () -> {
+            ConcurrencyPermit permit = acquired.getAndSet(null);
+            if (permit != null) {
+                release(permit);
+            }
+        };
+        return blocking(() -> {
+                ConcurrencyPermit permit = concurrencyLimiter.tryAcquire(clientId, maxConcurrent);
+                acquired.set(permit);
+                if (cancelled.get()) {
+                    giveBack.run();
+                }
+                return permit != null;
+            })
+            .doOnCancel(() -> {
+                cancelled.set(true);
+                giveBack.run();
+            })
+            .flatMap(admitted -> {
+                if (!admitted) {
+                    response.getHeaders().set(RateLimitHeaders.CONCURRENCY_LIMIT_HEADER, String.valueOf(maxConcurrent));
+                    response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                    return reply(response, HttpStatus.TOO_MANY_REQUESTS);
+                }
+                return admit(exchange, route, clientId, cost, deadline, System.currentTimeMillis())
+                    .doFinally(signal -> giveBack.run());
+            });
+    }
+    
+    private Mono<Void> admit(ServerWebExchange exchange, GatewayProperties.Route route, String clientId, int cost,
+                             long deadline, long parkedAt) {
+        ServerHttpResponse response = exchange.getResponse();
+        return blocking(() -> Optional.ofNullable(checkLimits(clientId, cost)))
+            .flatMap(checked -> {
+                if (checked.isEmpty()) {
+                    // allow request if the check failed, as the interceptor does
+                    return proxy(exchange, route);
+                }
+                RateLimitDecision decision = checked.get();
+                if (decision.isAllowed()) {
+                    accept(response, decision, parkedAt);
+                    return proxy(exchange, route);
+                }
+                RateLimitResult blocking = decision.getBlockingResult();
+                if (decision.isShaped() && trafficShaper.canWait(blocking, deadline)) {
+                    return Mono.delay(Duration.ofMillis(trafficShaper.retryDelayMs(blocking, deadline)))
+                        .then(Mono.defer(() -> admit(exchange, route, clientId, cost, deadline, parkedAt)));
+                }
+                if (blocking != null) {
+                    RateLimitHeaders.addExceededHeaders(response.getHeaders(), blocking);
+                }
+                return reply(response, HttpStatus.TOO_MANY_REQUESTS);
+            });
+    }
+    
+    private RateLimitDecision checkLimits(String clientId, int cost) {
+        try {
+            // channel and route policies belong to the notification handlers, not to proxied routes
+            return rateLimitService.checkLimits(clientId, cost, null, null);
+        } catch (Exception e) {
+            log.error("Error checking rate limits", e);
+            return null;
+        }
+    }
+    
+    private void accept(ServerHttpResponse response, RateLimitDecision decision, long parkedAt) {
+        // soft limits that were exceeded only add a warning
+        RateLimitResult exceeded = decision.getFirstExceeded();
+        if (exceeded != null) {
+            RateLimitHeaders.addWarningHeaders(response.getHeaders(), exceeded);
+        }
+        RateLimitHeaders.addLimitHeaders(response.getHeaders(), decision);
+        long delay = System.currentTimeMillis() - parkedAt;
+        if (decision.isShaped() && delay > 0) {
+            response.getHeaders().set(RateLimitHeaders.DELAY_HEADER, String.valueOf(delay));
+        }
+    }
+    
+    private Mono<Void> proxy(ServerWebExchange exchange, GatewayProperties.Route route) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        long admittedAt = System.nanoTime();
+        
+        WebClient.RequestBodySpec upstream = webClient.method(request.getMethod())
+            .uri(upstreamUri(route, request))
+            .headers(headers -> {
+                copyHeaders(request.getHeaders(), headers);
+                InetSocketAddress remote = request.getRemoteAddress();
+                if (remote != null) {
+                    headers.add("X-Forwarded-For", remote.getAddress().getHostAddress());
+                }
+            });
+        WebClient.RequestHeadersSpec<?> spec = hasBody(request)
+            ? upstream.body(BodyInserters.fromDataBuffers(request.getBody()))
+            : upstream;
+        
+        return spec.exchangeToMono(upstreamResponse -> {
+                response.setStatusCode(upstreamResponse.statusCode());
+                copyHeaders(upstreamResponse.headers().asHttpHeaders(), response.getHeaders());
+                return response.writeWith(upstreamResponse.body(BodyExtractors.toDataBuffers()));
+            })
+            .onErrorResume(e -> {
+                HttpStatus status = upstreamErrorStatus(e);
+                log.warn("Gateway request to {} failed with {}: {}", route.getUri(), status.value(), e.getMessage());
+                return response.isCommitted() ? Mono.error(e) : reply(response, status);
+            })
+            // latency and server errors of proxied requests steer the adaptive global limit
+            .doFinally(signal -> adaptiveGlobalLimit.record(System.nanoTime() - admittedAt,
+                signal == SignalType.ON_ERROR || response.getStatusCode() == null || response.getStatusCode().is5xxServerError()));
+    }
+    
+    private GatewayProperties.Route findRoute(String path) {
+        for (GatewayProperties.Route route : routes) {
+            String prefix = route.getPath();
+            if (path.startsWith(prefix) && (path.length() == prefix.length() || prefix.endsWith("/")
+                    || path.charAt(prefix.length()) == '/')) {
+                return route;
+            }
+        }
+        return null;
+    }
+    
+    private static URI upstreamUri(GatewayProperties.Route route, ServerHttpRequest request) {
+        String rest = request.getURI().getRawPath().substring(route.getPath().length());
+        String base = route.getUri().endsWith("/") && rest.startsWith("/")
+            ? route.getUri().substring(0, route.getUri().length() - 1)
+            : route.getUri();
+        String query = request.getURI().getRawQuery();
+        return URI.create(base + rest + (query != null ? "?" + query : ""));
+    }
+    
+    // the caller's address behind our trusted proxies, null without one
+    private byte[] address(ServerHttpRequest request) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        if (remote == null || remote.getAddress() == null) {
+            return null;
+        }
+        return addressResolver.resolve(remote.getAddress().getHostAddress(),
+            request.getHeaders().getOrEmpty(ClientAddressResolver.FORWARDED_FOR_HEADER));
+    }
+    
+    private String clientId(ServerHttpRequest request, byte[] address) {
+        // get clientID from header or use the caller's subnet as fallback
+        String clientId = request.getHeaders().getFirst("X-Client-Id");
+        if ((clientId == null || clientId.isEmpty()) && address != null) {
+            clientId = addressResolver.clientId(address);
+        }
+        return clientId;
+    }
+    
+    private static boolean hasBody(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+    
+    private static void copyHeaders(HttpHeaders from, HttpHeaders to) {
+        from.forEach((name, values) -> {
+            if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                to.put(name, values);
+            }
+        });
+    }
+    
+    private static HttpStatus upstreamErrorStatus(Throwable e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        if (cause.getClass().getSimpleName().equals(POOL_ACQUIRE_TIMEOUT)) {
+            // every pooled connection is busy
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (cause instanceof ReadTimeoutException || cause instanceof TimeoutException) {
+            return HttpStatus.GATEWAY_TIMEOUT;
+        }
+        return HttpStatus.BAD_GATEWAY;
+    }
+    
+    private void release(ConcurrencyPermit permit) {
+        Schedulers.boundedElastic().schedule(() -> concurrencyLimiter.release(permit));
+    }
+    
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    private static Mono<Void> backpressure(ServerHttpResponse response) {
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        return reply(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    
+    private static Mono<Void> reply(ServerHttpResponse response, HttpStatus status) {
+        response.setStatusCode(status);
+        return response.setComplete();
+    }
+    
+    @lombok.Value
+    private static class ClientSettings {
+        RateLimitConfig.Priority priority;
+        int maxConcurrent;
+    }
+}
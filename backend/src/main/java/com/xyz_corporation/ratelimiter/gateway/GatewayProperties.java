@@ -0,0 +1,38 @@
+package com.corporation.ratelimiter.gateway;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * rate-limiter.gateway.* settings. Bound as properties rather than @Value
+ * fields because the upstream routes are a list.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limiter.gateway")
+public class GatewayProperties {
+    
+    private boolean enabled = false;
+    private int port = 8090;
+    // pooled upstream connections, shared by all routes
+    private int maxConnections = 500;
+    // how long a request waits for a pooled connection before it gets 503
+    private long pendingAcquireTimeoutMs = 5000;
+    private long connectTimeoutMs = 2000;
+    private long responseTimeoutMs = 30000;
+    private List<Route> routes = new ArrayList<>();
+    
+    /**
+     * Requests whose path starts with path go to uri, with the prefix
+     * replaced by the uri's own path.
+     */
+    @Data
+    public static class Route {
+        private String path;
+        private String uri;
+    }
+}
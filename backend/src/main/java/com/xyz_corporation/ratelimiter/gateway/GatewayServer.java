@@ -0,0 +1,48 @@
+package com.corporation.ratelimiter.gateway;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * The gateway's own Netty server, next to the Tomcat one serving the API.
+ * Every request it gets goes through {@link GatewayHandler}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rate-limiter.gateway", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class GatewayServer {
+    
+    private final GatewayProperties properties;
+    private final GatewayHandler handler;
+    
+    private DisposableServer server;
+    
+    @PostConstruct
+    public void start() {
+        ReactorHttpHandlerAdapter adapter = new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.webHandler(handler).build());
+        server = HttpServer.create()
+            .port(properties.getPort())
+            .handle(adapter)
+            .bindNow();
+        log.info("Gateway listening on port {} with {} routes", server.port(), properties.getRoutes().size());
+    }
+    
+    @PreDestroy
+    public void stop() {
+        server.disposeNow();
+    }
+    
+    // the bound port, differs from the configured one when that is 0
+    public int getPort() {
+        return server.port();
+    }
+}
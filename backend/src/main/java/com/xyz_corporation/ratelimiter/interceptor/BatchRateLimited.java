@@ -0,0 +1,19 @@
+package com.corporation.ratelimiter.interceptor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler that charges the rate limits itself, once for the whole
+ * batch it receives, because the number of units is only known from the body.
+ * The interceptor still resolves the client id (see
+ * {@link RateLimitInterceptor#CLIENT_ID_ATTRIBUTE}) but does not check limits.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface BatchRateLimited {
+}
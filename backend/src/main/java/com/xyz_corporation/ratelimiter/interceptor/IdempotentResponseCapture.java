@@ -0,0 +1,48 @@
+package com.corporation.ratelimiter.interceptor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Keeps the JSON body of requests that reserved an Idempotency-Key, so
+ * {@link RateLimitInterceptor#afterCompletion} can store it for replays.
+ */
+@ControllerAdvice
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotentResponseCapture implements ResponseBodyAdvice<Object> {
+    
+    private final ObjectMapper objectMapper;
+    
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+    
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body != null && request instanceof ServletServerHttpRequest servletRequest
+                && servletRequest.getServletRequest().getAttribute(RateLimitInterceptor.IDEMPOTENCY_KEY_ATTRIBUTE) != null) {
+            try {
+                servletRequest.getServletRequest().setAttribute(RateLimitInterceptor.RESPONSE_BODY_ATTRIBUTE,
+                    objectMapper.writeValueAsString(body));
+            } catch (JsonProcessingException e) {
+                // not stored, the key is released and a retry runs again
+                log.warn("Could not serialize response for idempotency replay: {}", e.getMessage());
+            }
+        }
+        return body;
+    }
+}
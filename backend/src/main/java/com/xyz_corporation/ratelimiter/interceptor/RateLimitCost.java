@@ -0,0 +1,19 @@
+package com.corporation.ratelimiter.interceptor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Number of quota units a call to the annotated handler consumes. Put it on a
+ * controller class to set the cost for all of its endpoints, a method level
+ * annotation wins over the class level one. Handlers without it cost 1.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimitCost {
+    int value();
+}
@@ -0,0 +1,113 @@
+package com.corporation.ratelimiter.interceptor;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.core.RateLimitResult;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Writes the X-RateLimit-* response headers, shared by the interceptor, the
+ * handlers that charge their own quota and the gateway.
+ */
+public final class RateLimitHeaders {
+    
+    // set when a request is rejected for having too many in flight
+    public static final String CONCURRENCY_LIMIT_HEADER = "X-RateLimit-Concurrency-Limit";
+    // milliseconds a SHAPE mode request was held before it went through
+    public static final String DELAY_HEADER = "X-RateLimit-Delay-Ms";
+    
+    private RateLimitHeaders() {
+    }
+    
+    public static void addLimitHeaders(HttpServletResponse response, RateLimitDecision decision) {
+        addLimitHeaders(response::setHeader, decision);
+    }
+    
+    public static void addLimitHeaders(HttpHeaders headers, RateLimitDecision decision) {
+        addLimitHeaders(headers::set, decision);
+    }
+    
+    private static void addLimitHeaders(BiConsumer<String, String> setHeader, RateLimitDecision decision) {
+        // with stacked windows the one with the least room left is reported
+        RateLimitResult timeWindow = decision.getTightestResult(RateLimitDimension.TIME_WINDOW);
+        addDimensionHeaders(setHeader, timeWindow, "TimeWindow");
+        if (timeWindow != null) {
+            setHeader.accept("X-RateLimit-TimeWindow-Reset", String.valueOf(System.currentTimeMillis() / 1000 + timeWindow.getResetSeconds()));
+        }
+        addDimensionHeaders(setHeader, decision.getResult(RateLimitDimension.MONTHLY), "Monthly");
+        addDimensionHeaders(setHeader, decision.getResult(RateLimitDimension.GLOBAL), "Global");
+        addDimensionHeaders(setHeader, decision.getResult(RateLimitDimension.CHANNEL), "Channel");
+        addDimensionHeaders(setHeader, decision.getResult(RateLimitDimension.ROUTE), "Route");
+        addDimensionHeaders(setHeader, decision.getResult(RateLimitDimension.TENANT_TIME_WINDOW), "Tenant-TimeWindow");
+        addDimensionHeaders(setHeader, decision.getResult(RateLimitDimension.TENANT_MONTHLY), "Tenant-Monthly");
+        setHeader.accept(RequestCostResolver.COST_HEADER, String.valueOf(decision.getGranted()));
+    }
+    
+    // headers of a rejected request
+    public static void addExceededHeaders(HttpServletResponse response, RateLimitResult result) {
+        addExceededHeaders(response::setHeader, result);
+    }
+    
+    public static void addExceededHeaders(HttpHeaders headers, RateLimitResult result) {
+        addExceededHeaders(headers::set, result);
+    }
+    
+    private static void addExceededHeaders(BiConsumer<String, String> setHeader, RateLimitResult result) {
+        setHeader.accept("X-RateLimit-Limit", String.valueOf(result.getLimit()));
+        setHeader.accept("X-RateLimit-Remaining", String.valueOf(result.getRemainingRequests()));
+        setHeader.accept("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + result.getResetSeconds()));
+    }
+    
+    // soft throttling: the request goes through, the caller gets warned
+    public static void addWarningHeaders(HttpServletResponse response, RateLimitResult result) {
+        addWarningHeaders(response::setHeader, result);
+    }
+    
+    public static void addWarningHeaders(HttpHeaders headers, RateLimitResult result) {
+        addWarningHeaders(headers::set, result);
+    }
+    
+    private static void addWarningHeaders(BiConsumer<String, String> setHeader, RateLimitResult result) {
+        setHeader.accept("X-RateLimit-Warning", exceededMessage(result));
+        setHeader.accept("X-RateLimit-Limit", String.valueOf(result.getLimit()));
+        setHeader.accept("X-RateLimit-Remaining", String.valueOf(result.getRemainingRequests()));
+    }
+    
+    public static String exceededMessage(RateLimitResult result) {
+        if (result == null) {
+            return "Rate limit exceeded";
+        }
+        switch (result.getDimension()) {
+            case RateLimitDimension.GLOBAL:
+                return "Global rate limit exceeded";
+            case RateLimitDimension.FAIR_SHARE:
+                return "Fair share of the global rate limit exceeded";
+            case RateLimitDimension.TIME_WINDOW:
+                return "Time window rate limit exceeded";
+            case RateLimitDimension.MONTHLY:
+                return "Monthly rate limit exceeded";
+            case RateLimitDimension.CHANNEL:
+                return "Channel rate limit exceeded";
+            case RateLimitDimension.ROUTE:
+                return "Route rate limit exceeded";
+            case RateLimitDimension.TENANT_TIME_WINDOW:
+                return "Tenant time window rate limit exceeded";
+            case RateLimitDimension.TENANT_MONTHLY:
+                return "Tenant monthly rate limit exceeded";
+            default:
+                return "Rate limit exceeded: " + result.getDimension();
+        }
+    }
+    
+    private static void addDimensionHeaders(BiConsumer<String, String> setHeader, RateLimitResult result, String name) {
+        if (result == null) {
+            return;
+        }
+        setHeader.accept("X-RateLimit-" + name + "-Limit", String.valueOf(result.getLimit()));
+        setHeader.accept("X-RateLimit-" + name + "-Remaining", String.valueOf(result.getRemainingRequests()));
+    }
+}
@@ -1,22 +1,79 @@
 package com.corporation.ratelimiter.interceptor;
 
-import com.corporation.ratelimiter.model.RateLimitConfig;
-import com.corporation.ratelimiter.service.RateLimitResult;
+import com.corporation.ratelimiter.core.IdempotentResponse;
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.dispatch.DispatchesTo;
+import com.corporation.ratelimiter.dispatch.NotificationDispatcher;
+import com.corporation.ratelimiter.model.IpRule;
+import com.corporation.ratelimiter.service.AdaptiveGlobalLimit;
+import com.corporation.ratelimiter.service.ClientAddressResolver;
+import com.corporation.ratelimiter.service.ConcurrencyLimiter;
+import com.corporation.ratelimiter.service.ConcurrencyPermit;
+import com.corporation.ratelimiter.service.IdempotencyService;
+import com.corporation.ratelimiter.service.IpRuleService;
+import com.corporation.ratelimiter.service.LoadShedder;
+import com.corporation.ratelimiter.service.RateLimitConfigService;
+import com.corporation.ratelimiter.service.RateLimitRoute;
 import com.corporation.ratelimiter.service.RateLimitService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class RateLimitInterceptor implements HandlerInterceptor {
     
+    // request attribute holding the resolved client id for the handlers
+    public static final String CLIENT_ID_ATTRIBUTE = "com.corporation.ratelimiter.clientId";
+    // request attribute holding the RateLimitDecision the request was let through with
+    public static final String DECISION_ATTRIBUTE = "com.corporation.ratelimiter.decision";
+    // request attribute holding the RateLimitRoute of the handler, if it has one
+    public static final String ROUTE_ATTRIBUTE = "com.corporation.ratelimiter.route";
+    // request attribute holding the Idempotency-Key this request reserved
+    public static final String IDEMPOTENCY_KEY_ATTRIBUTE = "com.corporation.ratelimiter.idempotencyKey";
+    // request attribute holding the serialized response body, set by IdempotentResponseCapture
+    public static final String RESPONSE_BODY_ATTRIBUTE = "com.corporation.ratelimiter.responseBody";
+    // request attribute holding the ConcurrencyPermit released in afterCompletion
+    public static final String PERMIT_ATTRIBUTE = "com.corporation.ratelimiter.permit";
+    // request attribute holding System.nanoTime() at admission, for the adaptive global limit
+    public static final String ADMITTED_AT_ATTRIBUTE = "com.corporation.ratelimiter.admittedAt";
+    // request attribute holding the RateLimitDecision a shaped request got on its re-check
+    public static final String SHAPED_DECISION_ATTRIBUTE = "com.corporation.ratelimiter.shapedDecision";
+    
+    // the container's async timeout on top of the shaping wait, it should never fire
+    private static final long ASYNC_TIMEOUT_MARGIN_MS = 5000;
+    
     private final RateLimitService rateLimitService;
+    private final RequestCostResolver costResolver;
+    private final NotificationDispatcher dispatcher;
+    private final IdempotencyService idempotencyService;
+    private final RateLimitRouteRegistry routeRegistry;
+    private final RateLimitConfigService configService;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final AdaptiveGlobalLimit adaptiveGlobalLimit;
+    private final LoadShedder loadShedder;
+    private final TrafficShaper trafficShaper;
+    private final ClientAddressResolver addressResolver;
+    private final IpRuleService ipRuleService;
+    private final ObjectMapper objectMapper;
     
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
@@ -25,39 +82,130 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         if (path.startsWith("/api/rate-limits") || 
             path.startsWith("/api/system") ||
             path.startsWith("/api/clients") ||
+            path.startsWith("/api/tenants") ||
+            path.startsWith("/api/ip-rules") ||
+            path.startsWith("/api/usage") ||
+            path.startsWith("/api/limits") ||
+            path.startsWith("/api/notifications/status") ||
             path.startsWith("/actuator") ||
             path.startsWith("/h2-console")) {
             return true;
         }
         
-        // get clientID from header or use ip address as fallback
+        // the caller's address behind our trusted proxies, allow and deny rules apply before anything is charged
+        byte[] address = addressResolver.resolve(request.getRemoteAddr(),
+            Collections.list(request.getHeaders(ClientAddressResolver.FORWARDED_FOR_HEADER)));
+        IpRule.Action ipRule = ipRuleService.match(address);
+        if (ipRule == IpRule.Action.DENY) {
+            return handleDenied(request, response);
+        }
+        
+        // get clientID from header or use the caller's subnet as fallback
         String clientId = request.getHeader("X-Client-Id");
         if (clientId == null || clientId.isEmpty()) {
-            clientId = request.getRemoteAddr();
+            clientId = address != null ? addressResolver.clientId(address) : request.getRemoteAddr();
+            // an allowed subnet has no budget of its own, a client sending its id keeps all of its limits
+            if (ipRule == IpRule.Action.ALLOW) {
+                request.setAttribute(CLIENT_ID_ATTRIBUTE, clientId);
+                request.setAttribute(ADMITTED_AT_ATTRIBUTE, System.nanoTime());
+                return true;
+            }
         }
+        request.setAttribute(CLIENT_ID_ATTRIBUTE, clientId);
         
-        try {
-            // first I check the global limit
-            RateLimitResult globalResult = rateLimitService.checkGlobalLimit();
-            if (!globalResult.isAllowed()) {
-                return handleRateLimitExceeded(response, globalResult, "Global rate limit exceeded");
+        // a shaped request coming back once its re-check let it through: already charged
+        RateLimitDecision shapedDecision = (RateLimitDecision) request.getAttribute(SHAPED_DECISION_ATTRIBUTE);
+        if (shapedDecision != null && request.getDispatcherType() == DispatcherType.ASYNC) {
+            request.removeAttribute(SHAPED_DECISION_ATTRIBUTE);
+            accept(request, response, shapedDecision, (String) request.getAttribute(IDEMPOTENCY_KEY_ATTRIBUTE));
+            request.setAttribute(ADMITTED_AT_ATTRIBUTE, System.nanoTime());
+            return true;
+        }
+        
+        // hot retries are answered from the local cache, before anything is charged
+        String idempotencyKey = idempotencyService.normalizeKey(request.getHeader(IdempotencyService.IDEMPOTENCY_KEY_HEADER));
+        if (idempotencyKey != null) {
+            IdempotentResponse cached = idempotencyService.getCached(clientId, idempotencyKey);
+            if (cached != null) {
+                return replay(response, cached);
             }
-            
-            // check time window limit
-            RateLimitResult timeWindowResult = rateLimitService.checkTimeWindowLimit(clientId);
-            if (!timeWindowResult.isAllowed()) {
-                return handleRateLimitExceeded(response, timeWindowResult, "Time window rate limit exceeded");
+        }
+        
+        RateLimitRoute route = null;
+        if (handler instanceof HandlerMethod handlerMethod) {
+            route = routeRegistry.getRoute(handlerMethod);
+            if (route != null) {
+                request.setAttribute(ROUTE_ATTRIBUTE, route);
             }
             
-            // check monthly limit
-            RateLimitResult monthlyResult = rateLimitService.checkMonthlyLimit(clientId);
-            if (!monthlyResult.isAllowed()) {
-                return handleRateLimitExceeded(response, monthlyResult, "Monthly rate limit exceeded");
+            // no point charging quota for work the dispatch queue cannot take
+            DispatchesTo dispatchesTo = handlerMethod.getMethodAnnotation(DispatchesTo.class);
+            if (dispatchesTo != null && dispatcher.isSaturated(dispatchesTo.value())) {
+                return handleBackpressure(response);
+            }
+        }
+        
+        // lower tiers make room for higher ones while the global budget runs low
+        if (loadShedder.shouldShed(configService.getPriority(clientId))) {
+            return handleBackpressure(response);
+        }
+        
+        // cap the client's requests in flight, the slot is given back in afterCompletion
+        int maxConcurrent = configService.getMaxConcurrentRequests(clientId);
+        ConcurrencyPermit permit = concurrencyLimiter.tryAcquire(clientId, maxConcurrent);
+        if (permit == null) {
+            return handleConcurrencyExceeded(response, maxConcurrent);
+        }
+        boolean admitted = false;
+        try {
+            admitted = admit(request, response, handler, clientId, route, idempotencyKey, permit);
+            return admitted;
+        } finally {
+            if (admitted) {
+                request.setAttribute(PERMIT_ATTRIBUTE, permit);
+                request.setAttribute(ADMITTED_AT_ATTRIBUTE, System.nanoTime());
+            } else if (!request.isAsyncStarted()) {
+                // a shaped request keeps its slot while it waits
+                concurrencyLimiter.release(permit);
+            }
+        }
+    }
+    
+    private boolean admit(HttpServletRequest request, HttpServletResponse response, Object handler,
+                          String clientId, RateLimitRoute route, String idempotencyKey, ConcurrencyPermit permit) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            // batch handlers charge the whole batch themselves, only the key is reserved here
+            if (handlerMethod.hasMethodAnnotation(BatchRateLimited.class)) {
+                if (idempotencyKey != null) {
+                    RateLimitDecision reservation = rateLimitService.reserveIdempotencyKey(clientId, idempotencyKey);
+                    if (reservation.isDuplicate()) {
+                        return handleDuplicate(response, clientId, idempotencyKey, reservation.getPreviousResponse());
+                    }
+                    request.setAttribute(IDEMPOTENCY_KEY_ATTRIBUTE, idempotencyKey);
+                }
+                return true;
+            }
+        }
+        
+        // a bad cost header is the caller's fault, let it surface as a 400
+        int cost = costResolver.resolveCost(request, handler);
+        
+        try {
+            // idempotency key, global, time window, monthly and policy limits in one round trip, in that order
+            RateLimitDecision decision = rateLimitService.checkLimits(clientId, cost, route, idempotencyKey);
+            if (decision.isDuplicate()) {
+                return handleDuplicate(response, clientId, idempotencyKey, decision.getPreviousResponse());
+            }
+            if (!decision.isAllowed()) {
+                long deadline = System.currentTimeMillis() + trafficShaper.getMaxWaitMs();
+                if (decision.isShaped() && trafficShaper.canWait(decision.getBlockingResult(), deadline)) {
+                    return shape(request, response, clientId, cost, route, idempotencyKey, permit,
+                        decision.getBlockingResult(), deadline);
+                }
+                return handleRateLimitExceeded(response, decision.getBlockingResult());
             }
             
-            // add rate limit headers
-            addRateLimitHeaders(response, timeWindowResult, monthlyResult, globalResult);
-            
+            accept(request, response, decision, idempotencyKey);
             return true;
             
         } catch (Exception e) {
@@ -67,35 +215,182 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         }
     }
     
-    private boolean handleRateLimitExceeded(HttpServletResponse response, 
-                                           RateLimitResult result, 
-                                           String message) {
-        if (result.getThrottlingMode() == RateLimitConfig.ThrottlingMode.HARD) {
-            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.setHeader("X-RateLimit-Limit", String.valueOf(result.getLimit()));
-            response.setHeader("X-RateLimit-Remaining", String.valueOf(result.getRemainingRequests()));
-            response.setHeader("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + 60));
-            // reject the request
-            return false; 
+    private void accept(HttpServletRequest request, HttpServletResponse response, RateLimitDecision decision,
+                        String idempotencyKey) {
+        // soft limits that were exceeded only add a warning
+        RateLimitResult exceeded = decision.getFirstExceeded();
+        if (exceeded != null) {
+            RateLimitHeaders.addWarningHeaders(response, exceeded);
+        }
+        
+        // add rate limit headers
+        RateLimitHeaders.addLimitHeaders(response, decision);
+        request.setAttribute(DECISION_ATTRIBUTE, decision);
+        if (idempotencyKey != null) {
+            request.setAttribute(IDEMPOTENCY_KEY_ATTRIBUTE, idempotencyKey);
+        }
+    }
+    
+    /**
+     * Parks a SHAPE mode request in async mode, so it holds no thread while it
+     * waits, and re-checks it until it fits or the wait is up. A request that
+     * fits is dispatched again and comes back through preHandle.
+     */
+    private boolean shape(HttpServletRequest request, HttpServletResponse response, String clientId, int cost,
+                          RateLimitRoute route, String idempotencyKey, ConcurrencyPermit permit,
+                          RateLimitResult blocking, long deadline) {
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(trafficShaper.getMaxWaitMs() + ASYNC_TIMEOUT_MARGIN_MS);
+        request.setAttribute(PERMIT_ATTRIBUTE, permit);
+        trafficShaper.scheduleRetry(new ShapedRequest(async, request, response, clientId, cost, route,
+            idempotencyKey, permit, deadline), blocking, deadline);
+        return false;
+    }
+    
+    @RequiredArgsConstructor
+    private class ShapedRequest implements TrafficShaper.Retry {
+        private final long parkedAt = System.currentTimeMillis();
+        private final AsyncContext async;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final String clientId;
+        private final int cost;
+        private final RateLimitRoute route;
+        private final String idempotencyKey;
+        private final ConcurrencyPermit permit;
+        private final long deadline;
+        
+        @Override
+        public void run() {
+            try {
+                RateLimitDecision decision = rateLimitService.checkLimits(clientId, cost, route, idempotencyKey);
+                if (decision.isAllowed() && !decision.isDuplicate()) {
+                    response.setHeader(RateLimitHeaders.DELAY_HEADER, String.valueOf(System.currentTimeMillis() - parkedAt));
+                    request.setAttribute(SHAPED_DECISION_ATTRIBUTE, decision);
+                    if (idempotencyKey != null) {
+                        request.setAttribute(IDEMPOTENCY_KEY_ATTRIBUTE, idempotencyKey);
+                    }
+                    async.dispatch();
+                    return;
+                }
+                if (decision.isDuplicate()) {
+                    handleDuplicate(response, clientId, idempotencyKey, decision.getPreviousResponse());
+                } else if (trafficShaper.canWait(decision.getBlockingResult(), deadline)) {
+                    trafficShaper.scheduleRetry(this, decision.getBlockingResult(), deadline);
+                    return;
+                } else {
+                    handleRateLimitExceeded(response, decision.getBlockingResult());
+                }
+            } catch (Exception e) {
+                log.error("Error re-checking shaped request of client {}", clientId, e);
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            }
+            complete();
+        }
+        
+        // the shaper is stopping before the re-check ran, the client may retry elsewhere
+        @Override
+        public void giveUp() {
+            handleBackpressure(response);
+            complete();
+        }
+        
+        // given up: there is no afterCompletion for this request, the slot goes back here
+        private void complete() {
+            concurrencyLimiter.release(permit);
+            async.complete();
+        }
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ConcurrencyPermit permit = (ConcurrencyPermit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            concurrencyLimiter.release(permit);
+        }
+        
+        // latency and server errors of admitted requests steer the adaptive global limit
+        Long admittedAt = (Long) request.getAttribute(ADMITTED_AT_ATTRIBUTE);
+        if (admittedAt != null) {
+            adaptiveGlobalLimit.record(System.nanoTime() - admittedAt,
+                ex != null || response.getStatus() >= 500);
+        }
+        
+        String idempotencyKey = (String) request.getAttribute(IDEMPOTENCY_KEY_ATTRIBUTE);
+        if (idempotencyKey == null) {
+            return;
+        }
+        String clientId = (String) request.getAttribute(CLIENT_ID_ATTRIBUTE);
+        Object body = request.getAttribute(RESPONSE_BODY_ATTRIBUTE);
+        // only successful responses are replayed, anything else may be retried for real
+        if (ex == null && body != null && HttpStatus.valueOf(response.getStatus()).is2xxSuccessful()) {
+            idempotencyService.complete(clientId, idempotencyKey, response.getStatus(), (String) body);
         } else {
-            // soft throttling with warnings in the headers. also allow the request
-            response.setHeader("X-RateLimit-Warning", message);
-            response.setHeader("X-RateLimit-Limit", String.valueOf(result.getLimit()));
-            response.setHeader("X-RateLimit-Remaining", String.valueOf(result.getRemainingRequests()));
-            return true; // Allow the request
+            idempotencyService.release(clientId, idempotencyKey);
         }
     }
     
-    private void addRateLimitHeaders(HttpServletResponse response,
-                                    RateLimitResult timeWindowResult,
-                                    RateLimitResult monthlyResult,
-                                    RateLimitResult globalResult) {
-        response.setHeader("X-RateLimit-TimeWindow-Limit", String.valueOf(timeWindowResult.getLimit()));
-        response.setHeader("X-RateLimit-TimeWindow-Remaining", String.valueOf(timeWindowResult.getRemainingRequests()));
-        response.setHeader("X-RateLimit-Monthly-Limit", String.valueOf(monthlyResult.getLimit()));
-        response.setHeader("X-RateLimit-Monthly-Remaining", String.valueOf(monthlyResult.getRemainingRequests()));
-        response.setHeader("X-RateLimit-Global-Limit", String.valueOf(globalResult.getLimit()));
-        response.setHeader("X-RateLimit-Global-Remaining", String.valueOf(globalResult.getRemainingRequests()));
+    private boolean handleDuplicate(HttpServletResponse response, String clientId, String idempotencyKey,
+                                    IdempotentResponse previous) {
+        if (previous.isPending()) {
+            // the first request with this key is still running
+            response.setStatus(HttpStatus.CONFLICT.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return false;
+        }
+        idempotencyService.remember(clientId, idempotencyKey, previous);
+        return replay(response, previous);
+    }
+    
+    private boolean replay(HttpServletResponse response, IdempotentResponse previous) {
+        response.setStatus(previous.getStatus());
+        response.setHeader(IdempotencyService.REPLAYED_HEADER, "true");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try {
+            response.getWriter().write(previous.getBody());
+        } catch (IOException e) {
+            log.error("Error replaying idempotent response", e);
+        }
+        return false;
+    }
+    
+    private boolean handleConcurrencyExceeded(HttpServletResponse response, int limit) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(RateLimitHeaders.CONCURRENCY_LIMIT_HEADER, String.valueOf(limit));
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return false;
+    }
+    
+    private boolean handleBackpressure(HttpServletResponse response) {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return false;
+    }
+    
+    private boolean handleDenied(HttpServletRequest request, HttpServletResponse response) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("timestamp", LocalDateTime.now());
+        error.put("status", HttpStatus.FORBIDDEN.value());
+        error.put("error", "Forbidden");
+        error.put("message", "Requests from this address are denied");
+        error.put("path", request.getRequestURI());
+        
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try {
+            response.getWriter().write(objectMapper.writeValueAsString(error));
+        } catch (IOException e) {
+            log.error("Error writing denied response", e);
+        }
+        return false;
+    }
+    
+    private boolean handleRateLimitExceeded(HttpServletResponse response, RateLimitResult result) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        if (result != null) {
+            RateLimitHeaders.addExceededHeaders(response, result);
+        }
+        // reject the request
+        return false;
     }
 }
-
@@ -0,0 +1,87 @@
+package com.corporation.ratelimiter.interceptor;
+
+import com.corporation.ratelimiter.dispatch.DispatchesTo;
+import com.corporation.ratelimiter.dispatch.NotificationChannel;
+import com.corporation.ratelimiter.service.RateLimitRoute;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Handler method -> {@link RateLimitRoute}, built once from the request
+ * mappings when the context is up so the interceptor does a single lookup.
+ * Only handlers annotated with {@link DispatchesTo} have a route.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitRouteRegistry {
+    
+    private final ApplicationContext applicationContext;
+    
+    private volatile Map<Method, RateLimitRoute> routes = Map.of();
+    
+    // looked up here rather than injected, the handler mapping itself depends on the interceptor
+    @EventListener(ContextRefreshedEvent.class)
+    public void compile() {
+        RequestMappingHandlerMapping mapping = applicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        Map<Method, RateLimitRoute> compiled = new HashMap<>();
+        mapping.getHandlerMethods().forEach((info, handlerMethod) -> {
+            DispatchesTo dispatchesTo = handlerMethod.getMethodAnnotation(DispatchesTo.class);
+            if (dispatchesTo != null) {
+                compiled.put(handlerMethod.getMethod(), new RateLimitRoute(dispatchesTo.value(), routeName(info)));
+            }
+        });
+        routes = compiled;
+    }
+    
+    public RateLimitRoute getRoute(HandlerMethod handlerMethod) {
+        return routes.get(handlerMethod.getMethod());
+    }
+    
+    public Collection<RateLimitRoute> getRoutes() {
+        return routes.values();
+    }
+    
+    /**
+     * The route a resource named by an outside caller stands for: a route name
+     * ("POST /api/notifications/sms") or a channel ("SMS", its channel level
+     * policies only). Null for no resource.
+     */
+    public RateLimitRoute resolve(String resource) {
+        if (resource == null || resource.isBlank()) {
+            return null;
+        }
+        for (RateLimitRoute route : routes.values()) {
+            if (route.getName().equals(resource)) {
+                return route;
+            }
+        }
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            if (channel.name().equalsIgnoreCase(resource)) {
+                return new RateLimitRoute(channel, null);
+            }
+        }
+        throw new IllegalArgumentException("Unknown resource: " + resource);
+    }
+    
+    private static String routeName(RequestMappingInfo info) {
+        String method = info.getMethodsCondition().getMethods().stream()
+            .map(Enum::name)
+            .findFirst()
+            .orElse("ANY");
+        String pattern = info.getPatternValues().stream()
+            .findFirst()
+            .orElse("");
+        return method + " " + pattern;
+    }
+}
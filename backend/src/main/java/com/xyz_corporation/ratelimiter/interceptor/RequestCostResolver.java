@@ -0,0 +1,69 @@
+package com.corporation.ratelimiter.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+@Component
+public class RequestCostResolver {
+    
+    public static final String COST_HEADER = "X-RateLimit-Cost";
+    
+    @Value("${rate-limiter.cost.max:1000}")
+    private int maxCost;
+    
+    /**
+     * Cost of the request: the handler's {@link RateLimitCost}, raised by the
+     * X-RateLimit-Cost header when the caller declares more work than that
+     * (e.g. one call standing in for many). The header can never lower it.
+     */
+    public int resolveCost(HttpServletRequest request, Object handler) {
+        int cost = 1;
+        if (handler instanceof HandlerMethod handlerMethod) {
+            RateLimitCost annotation = handlerMethod.getMethodAnnotation(RateLimitCost.class);
+            if (annotation == null) {
+                annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), RateLimitCost.class);
+            }
+            if (annotation != null) {
+                cost = annotation.value();
+            }
+        }
+        
+        return resolveCost(cost, request.getHeader(COST_HEADER));
+    }
+    
+    // cost of a request with no handler annotation, e.g. one passing through the gateway
+    public int resolveCost(String header) {
+        return resolveCost(1, header);
+    }
+    
+    private int resolveCost(int cost, String header) {
+        if (header != null && !header.isBlank()) {
+            int declared;
+            try {
+                declared = Integer.parseInt(header.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + COST_HEADER + " header: " + header);
+            }
+            if (declared < 1) {
+                throw new IllegalArgumentException(COST_HEADER + " must be at least 1");
+            }
+            cost = Math.max(cost, declared);
+        }
+        
+        return checkCost(cost);
+    }
+    
+    // a cost given outright, e.g. by a caller of the decision API
+    public int checkCost(int cost) {
+        if (cost < 1) {
+            throw new IllegalArgumentException("Request cost must be at least 1");
+        }
+        if (cost > maxCost) {
+            throw new IllegalArgumentException("Request cost " + cost + " exceeds the maximum of " + maxCost);
+        }
+        return cost;
+    }
+}
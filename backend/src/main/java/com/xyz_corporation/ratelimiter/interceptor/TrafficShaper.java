@@ -0,0 +1,115 @@
+package com.corporation.ratelimiter.interceptor;
+
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.util.HashedWheelTimer;
+import com.corporation.ratelimiter.util.ThreadFactories;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Timing for SHAPE mode clients: their over-limit requests are parked in
+ * servlet async mode, without a thread, and re-checked when the counter that
+ * blocked them is about to have room again. The re-checks run on a hashed
+ * wheel timer, cheap for many short waits, and then on their own small pool
+ * so a slow redis call never holds up the wheel. Requests still parked when
+ * the shaper stops are given up on, not dropped.
+ */
+@Component
+@Slf4j
+public class TrafficShaper {
+
+    // a request that would have to wait longer than this is rejected right away
+    @Getter
+    @Value("${rate-limiter.shaping.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    // shortest gap between two re-checks of the same request
+    @Value("${rate-limiter.shaping.min-retry-ms:50}")
+    private long minRetryMs;
+
+    @Value("${rate-limiter.shaping.tick-ms:10}")
+    private long tickMs;
+
+    @Value("${rate-limiter.shaping.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${rate-limiter.shaping.workers:4}")
+    private int workers;
+
+    private ExecutorService executor;
+    private HashedWheelTimer timer;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newFixedThreadPool(workers, ThreadFactories.named("shaping", true));
+        timer = new HashedWheelTimer("shaping-timer", tickMs, wheelSize, executor);
+    }
+
+    /**
+     * A parked request: run() re-checks it, giveUp() answers it without a
+     * re-check and gives back what it holds.
+     */
+    public interface Retry extends Runnable {
+        void giveUp();
+    }
+
+    @PreDestroy
+    public void stop() {
+        // re-checks that never ran, on the wheel or queued for the pool
+        List<Runnable> parked = new ArrayList<>(timer.stop());
+        parked.addAll(executor.shutdownNow());
+        for (Runnable task : parked) {
+            if (task instanceof Retry retry) {
+                giveUp(retry);
+            }
+        }
+        if (!parked.isEmpty()) {
+            log.info("Gave up on {} shaped requests on shutdown", parked.size());
+        }
+    }
+
+    // whether a request blocked by this result can still be let through before the deadline
+    public boolean canWait(RateLimitResult blocking, long deadlineMillis) {
+        long remaining = deadlineMillis - System.currentTimeMillis();
+        return blocking != null && remaining > 0 && blocking.getResetSeconds() * 1000 <= remaining + 1000;
+    }
+
+    /**
+     * Runs the re-check once the blocking counter may have room again: half its
+     * remaining ttl, since the ttl is only known to the second, but never past
+     * the deadline.
+     */
+    public void scheduleRetry(Retry retry, RateLimitResult blocking, long deadlineMillis) {
+        try {
+            timer.schedule(retry, retryDelayMs(blocking, deadlineMillis));
+        } catch (RejectedExecutionException e) {
+            // stopping: nothing would ever run it
+            giveUp(retry);
+        }
+    }
+    
+    // the wait before that re-check, for callers with their own timer (the gateway)
+    public long retryDelayMs(RateLimitResult blocking, long deadlineMillis) {
+        long remaining = deadlineMillis - System.currentTimeMillis();
+        long delay = Math.min(remaining, Math.max(minRetryMs, blocking.getResetSeconds() * 1000 / 2));
+        return Math.max(0, delay);
+    }
+    
+    private static void giveUp(Retry retry) {
+        try {
+            retry.giveUp();
+        } catch (RuntimeException e) {
+            log.error("Could not give up on shaped request: {}", e.getMessage(), e);
+        }
+    }
+}
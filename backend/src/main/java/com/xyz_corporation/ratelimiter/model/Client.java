@@ -27,6 +27,9 @@ public class Client {
     
     private String contactEmail;
     
+    // tenant whose pooled limits the client also draws from, optional
+    private String tenantId;
+    
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
@@ -0,0 +1,53 @@
+package com.corporation.ratelimiter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An allow or deny rule for a network, by the address of the caller. The
+ * most specific rule an address falls in wins, e.g. a /24 allowed inside a
+ * denied /16.
+ */
+@Entity
+@Table(name = "ip_rules")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IpRule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // normalized, see Cidr#toString
+    @Column(unique = true, nullable = false)
+    private String cidr;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Action action;
+    
+    private String description;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    public enum Action {
+        ALLOW, // not limited at all
+        DENY   // 403, before anything is charged
+    }
+}
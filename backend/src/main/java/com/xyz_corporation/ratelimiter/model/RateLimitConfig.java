@@ -4,8 +4,12 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @Table(name = "rate_limit_configs")
@@ -24,9 +28,22 @@ public class RateLimitConfig {
     private Integer timeWindowRequests;
     private Integer timeWindowSeconds;
     
+    // more windows checked along with the one above, e.g. 10/second and 50000/day
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "rate_limit_config_windows", joinColumns = @JoinColumn(name = "config_id"))
+    @Fetch(FetchMode.SUBSELECT)
+    private List<RateLimitWindow> windows = new ArrayList<>();
+    
     // monthly rate limit
     private Integer monthlyRequests;
     
+    // requests allowed in flight at once, null for the default
+    private Integer maxConcurrentRequests;
+    
+    // who is shed first when the global budget runs low, null for the default
+    @Enumerated(EnumType.STRING)
+    private Priority priority;
+    
     // throttling mode
     @Enumerated(EnumType.STRING)
     private ThrottlingMode throttlingMode = ThrottlingMode.HARD;
@@ -47,7 +64,14 @@ public class RateLimitConfig {
     
     public enum ThrottlingMode {
         SOFT, // warning headers but allow request
-        HARD  // reject with  code 429. rate limit has been exceeded
+        HARD, // reject with  code 429. rate limit has been exceeded
+        SHAPE // hold the request until the limit has room, up to a maximum wait, then 429
+    }
+    
+    public enum Priority {
+        LOW,    // shed first
+        NORMAL,
+        HIGH    // only ever stopped by the global limit itself
     }
 }
 
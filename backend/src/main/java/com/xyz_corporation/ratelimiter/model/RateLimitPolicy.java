@@ -0,0 +1,54 @@
+package com.corporation.ratelimiter.model;
+
+import com.corporation.ratelimiter.dispatch.NotificationChannel;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A time window limit below the client's overall one: per channel, or per
+ * route within a channel when route is set (e.g. "POST /api/notifications/sms/batch").
+ * Every level that matches a request is checked along with the client's
+ * own limits.
+ */
+@Entity
+@Table(name = "rate_limit_policies",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"clientId", "channel", "route"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitPolicy {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String clientId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationChannel channel;
+    
+    // null for the channel level
+    private String route;
+    
+    private Integer requests;
+    private Integer windowSeconds;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,19 @@
+package com.corporation.ratelimiter.model;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One extra (limit, window) rule of a client, e.g. 10 per second or 50000
+ * per day, checked along with its main time window.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitWindow {
+    private Integer requests;
+    private Integer windowSeconds;
+}
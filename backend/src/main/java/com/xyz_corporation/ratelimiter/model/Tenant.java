@@ -0,0 +1,53 @@
+package com.corporation.ratelimiter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A customer owning several clients (API keys). Its limits are a pool shared
+ * by all of them, checked on top of each client's own limits.
+ */
+@Entity
+@Table(name = "tenants")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Tenant {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(unique = true, nullable = false)
+    private String tenantId;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    // pooled time window limit, null for none
+    private Integer timeWindowRequests;
+    private Integer timeWindowSeconds;
+    
+    // pooled monthly limit, null for none
+    private Integer monthlyRequests;
+    
+    @Enumerated(EnumType.STRING)
+    private RateLimitConfig.ThrottlingMode throttlingMode = RateLimitConfig.ThrottlingMode.HARD;
+    
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -4,11 +4,14 @@ import com.corporation.ratelimiter.model.Client;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ClientRepository extends JpaRepository<Client, Long> {
     Optional<Client> findByClientId(String clientId);
     boolean existsByClientId(String clientId);
+    List<Client> findByTenantId(String tenantId);
+    List<Client> findByTenantIdIsNotNull();
 }
 
@@ -0,0 +1,10 @@
+package com.corporation.ratelimiter.repository;
+
+import com.corporation.ratelimiter.model.IpRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IpRuleRepository extends JpaRepository<IpRule, Long> {
+    boolean existsByCidr(String cidr);
+}
@@ -1,14 +1,24 @@
 package com.corporation.ratelimiter.repository;
 
 import com.corporation.ratelimiter.model.RateLimitConfig;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RateLimitConfigRepository extends JpaRepository<RateLimitConfig, Long> {
+    @EntityGraph(attributePaths = "windows")
     Optional<RateLimitConfig> findByClientId(String clientId);
     boolean existsByClientId(String clientId);
+    // all of them with their windows in one query, for the full resync of the redis mirror
+    @EntityGraph(attributePaths = "windows")
+    List<RateLimitConfig> findAllWithWindowsBy();
+    // the configs of a batch of clients with their windows in one query, for the config cache
+    @EntityGraph(attributePaths = "windows")
+    List<RateLimitConfig> findAllByClientIdIn(Collection<String> clientIds);
 }
 
@@ -0,0 +1,16 @@
+package com.corporation.ratelimiter.repository;
+
+import com.corporation.ratelimiter.dispatch.NotificationChannel;
+import com.corporation.ratelimiter.model.RateLimitPolicy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RateLimitPolicyRepository extends JpaRepository<RateLimitPolicy, Long> {
+    List<RateLimitPolicy> findByClientId(String clientId);
+    Optional<RateLimitPolicy> findByIdAndClientId(Long id, String clientId);
+    boolean existsByClientIdAndChannelAndRoute(String clientId, NotificationChannel channel, String route);
+}
@@ -0,0 +1,13 @@
+package com.corporation.ratelimiter.repository;
+
+import com.corporation.ratelimiter.model.Tenant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface TenantRepository extends JpaRepository<Tenant, Long> {
+    Optional<Tenant> findByTenantId(String tenantId);
+    boolean existsByTenantId(String tenantId);
+}
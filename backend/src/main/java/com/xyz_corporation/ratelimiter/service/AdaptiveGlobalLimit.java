@@ -0,0 +1,159 @@
+package com.corporation.ratelimiter.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves the global requests-per-second limit with the health of the backend
+ * instead of leaving it at the configured value.
+ *
+ * The interceptor records the latency and outcome of every admitted request.
+ * Every rate-limiter.global.adaptive.interval-ms the limit is adjusted AIMD
+ * style: it grows by a fixed step while latency stays near its baseline and
+ * errors stay rare, and is cut by the backoff factor as soon as either one
+ * degrades. The baseline follows the fastest recent latency and only creeps
+ * up slowly, so a backend that gets slower under load keeps being backed off.
+ * The limit stays between the configured floor and ceiling. Each instance
+ * adapts on its own measurements.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdaptiveGlobalLimit {
+
+    // how fast the baseline follows latencies above it, per interval
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Getter
+    @Value("${rate-limiter.global.adaptive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${rate-limiter.global.adaptive.floor:100}")
+    private int floor;
+
+    @Value("${rate-limiter.global.adaptive.ceiling:10000}")
+    private int ceiling;
+
+    @Value("${rate-limiter.global.adaptive.increase:10}")
+    private int increase;
+
+    @Value("${rate-limiter.global.adaptive.backoff:0.9}")
+    private double backoff;
+
+    // latency above baseline * tolerance counts as overload
+    @Value("${rate-limiter.global.adaptive.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${rate-limiter.global.adaptive.max-error-rate:0.05}")
+    private double maxErrorRate;
+
+    // intervals with fewer requests carry no signal and leave the limit alone
+    @Value("${rate-limiter.global.adaptive.min-samples:20}")
+    private int minSamples;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    // 0 until the first request, which seeds it from the configured limit
+    private volatile int limit;
+    private volatile double baselineNanos;
+
+    @PostConstruct
+    void init() {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (enabled && registry != null) {
+            Gauge.builder("ratelimiter.global.limit.effective", this, AdaptiveGlobalLimit::currentLimit)
+                .register(registry);
+        }
+    }
+
+    /**
+     * The global limit to enforce right now, the configured one when adaptive
+     * mode is off.
+     */
+    public int getEffectiveLimit(int configured) {
+        if (!enabled) {
+            return configured;
+        }
+        int current = limit;
+        if (current == 0) {
+            current = clamp(configured);
+            limit = current;
+        }
+        return current;
+    }
+
+    // starts over from a newly configured limit
+    public void reset(int configured) {
+        limit = enabled ? clamp(configured) : 0;
+    }
+
+    // called once per admitted request when its response is complete
+    public void record(long elapsedNanos, boolean error) {
+        if (!enabled) {
+            return;
+        }
+        requests.increment();
+        latencyNanos.add(elapsedNanos);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limiter.global.adaptive.interval-ms:1000}")
+    public void adjust() {
+        if (!enabled || limit == 0) {
+            return;
+        }
+        long count = requests.sumThenReset();
+        long failed = errors.sumThenReset();
+        long totalNanos = latencyNanos.sumThenReset();
+        if (count < minSamples) {
+            return;
+        }
+
+        double averageNanos = (double) totalNanos / count;
+        double baseline = baselineNanos;
+        if (baseline == 0 || averageNanos < baseline) {
+            baseline = averageNanos;
+        } else {
+            baseline += (averageNanos - baseline) * BASELINE_DRIFT;
+        }
+        baselineNanos = baseline;
+
+        double errorRate = (double) failed / count;
+        int current = limit;
+        int next;
+        if (errorRate > maxErrorRate || averageNanos > baseline * latencyTolerance) {
+            next = clamp((int) (current * backoff));
+        } else {
+            next = clamp(current + increase);
+        }
+        if (next != current) {
+            log.debug("Adaptive global limit {} -> {} (avg latency {} ms, baseline {} ms, error rate {})",
+                current, next, averageNanos / 1_000_000, baseline / 1_000_000, errorRate);
+            limit = next;
+        }
+    }
+
+    private double currentLimit() {
+        return limit;
+    }
+
+    private int clamp(int value) {
+        return Math.max(floor, Math.min(ceiling, value));
+    }
+}
@@ -0,0 +1,89 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.config.IpProperties;
+import com.corporation.ratelimiter.util.Cidr;
+import com.corporation.ratelimiter.util.CidrTrie;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Works out the address of the caller behind the proxies we trust, and the
+ * client id requests without X-Client-Id are limited under.
+ *
+ * X-Forwarded-For is read right to left, each proxy appending the address
+ * it got the request from: entries are skipped for as long as the hop that
+ * added them is a trusted proxy, the first one that is not is the caller.
+ * Anything left of it may have been made up by the caller and is never used.
+ * Without trusted proxies the header is ignored.
+ *
+ * The client id is the subnet of rate-limiter.ip.ipv4-prefix or ipv6-prefix
+ * bits the caller is in, e.g. 203.0.113.0/24, so a range of addresses in the
+ * hands of one party shares one budget. At the full length it is the plain
+ * address.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClientAddressResolver {
+    
+    public static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+    
+    private final IpProperties properties;
+    
+    private CidrTrie<Boolean> trustedProxies;
+    
+    @PostConstruct
+    void init() {
+        if (properties.getIpv4Prefix() < 0 || properties.getIpv4Prefix() > 32
+                || properties.getIpv6Prefix() < 0 || properties.getIpv6Prefix() > 128) {
+            throw new IllegalStateException("rate-limiter.ip.ipv4-prefix must be 0 to 32 and ipv6-prefix 0 to 128");
+        }
+        CidrTrie<Boolean> trie = new CidrTrie<>();
+        for (String proxy : properties.getTrustedProxies()) {
+            try {
+                trie.put(Cidr.parse(proxy), Boolean.TRUE);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Bad rate-limiter.ip.trusted-proxies entry: " + e.getMessage());
+            }
+        }
+        trustedProxies = trie;
+    }
+    
+    /**
+     * The caller's 4 or 16 byte address, null when the connection's remote
+     * address is not an IP address (e.g. a Unix domain socket).
+     *
+     * @param forwardedFor the X-Forwarded-For header values, in order
+     */
+    public byte[] resolve(String remoteAddress, List<String> forwardedFor) {
+        byte[] address = Cidr.parseAddress(remoteAddress);
+        if (address == null || trustedProxies.isEmpty() || forwardedFor == null || forwardedFor.isEmpty()) {
+            return address;
+        }
+        String[] hops = String.join(",", forwardedFor).split(",");
+        for (int i = hops.length - 1; i >= 0 && isTrustedProxy(address); i--) {
+            byte[] hop = Cidr.parseAddress(hops[i]);
+            if (hop == null) {
+                // garbage in the header: the last trusted proxy is as far back as it can be followed
+                break;
+            }
+            address = hop;
+        }
+        return address;
+    }
+    
+    // the client id of the caller's subnet
+    public String clientId(byte[] address) {
+        int prefixLength = address.length == 4 ? properties.getIpv4Prefix() : properties.getIpv6Prefix();
+        if (prefixLength == address.length * 8) {
+            return Cidr.format(address);
+        }
+        return Cidr.format(Cidr.mask(address, prefixLength)) + "/" + prefixLength;
+    }
+    
+    private boolean isTrustedProxy(byte[] address) {
+        return trustedProxies.longestMatch(address) != null;
+    }
+}
@@ -0,0 +1,340 @@
+package com.corporation.ratelimiter.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Where a client's time window and monthly counters live in redis.
+ *
+ * By default every counter is a string key named after the client. With
+ * rate-limiter.compact-keys.enabled a client is given a short base62 id the
+ * first time it is counted, kept in bucketed hashes, and its counters are
+ * named after that id instead. Its monthly counter becomes a field of a hash
+ * shared with the next bucket-size ids, small enough for redis to keep in
+ * its listpack encoding, which saves the per-key overhead of one key per
+ * client and month. The time windows stay keys of their own, they start and
+ * expire per client. Switching layouts starts every client's counters over.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClientKeys {
+
+    // id bucket hashes, client id -> short id, and the sequence the short ids are taken from
+    private static final String ID_PREFIX = "rl:ids:";
+    static final String ID_SEQUENCE_KEY = "rl:idseq";
+    // the number of id buckets the first instance settled on, later ones use the same
+    static final String ID_BUCKETS_KEY = "rl:idbuckets";
+    private static final String TIME_WINDOW_PREFIX = "rl:tw:";
+    private static final String MONTHLY_PREFIX = "rl:m:";
+
+    private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    // redis' default hash-max-listpack-entries, past it a hash loses its compact encoding
+    static final int LISTPACK_MAX_ENTRIES = 128;
+    // clients per id bucket the bucket count is derived for, leaves room below that limit
+    static final int CLIENTS_PER_ID_BUCKET = 100;
+
+    // redis: the short id of client ARGV[i] from its id bucket KEYS[i]. a client without
+    // one gets the next number of the sequence KEYS[#KEYS], in base62. returns the ids in order
+    static final String ASSIGN_SCRIPT =
+        "local digits = '" + BASE62 + "' " +
+        "local ids = {} " +
+        "for i = 1, #ARGV do " +
+        "  local id = redis.call('HGET', KEYS[i], ARGV[i]) " +
+        "  if not id then " +
+        "    local n = redis.call('INCR', KEYS[#KEYS]) " +
+        "    id = '' " +
+        "    repeat " +
+        "      local digit = n % 62 " +
+        "      id = string.sub(digits, digit + 1, digit + 1) .. id " +
+        "      n = (n - digit) / 62 " +
+        "    until n == 0 " +
+        "    redis.call('HSET', KEYS[i], ARGV[i], id) " +
+        "  end " +
+        "  ids[i] = id " +
+        "end " +
+        "return ids";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> ASSIGN = new DefaultRedisScript<>(ASSIGN_SCRIPT, List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Getter
+    @Value("${rate-limiter.compact-keys.enabled:false}")
+    private boolean enabled;
+
+    // sizes the id buckets so each stays in the listpack encoding
+    @Value("${rate-limiter.compact-keys.expected-clients:1000000}")
+    private long expectedClients;
+
+    // 0 derives it from expected-clients. fixed once there are ids: a client is looked up in
+    // the bucket its id hashes to, so the first value is pinned in redis and used from then on
+    @Value("${rate-limiter.compact-keys.id-buckets:0}")
+    private int configuredIdBuckets;
+
+    @Getter
+    private int idBuckets;
+    // whether it was logged that the buckets outgrew the listpack encoding
+    private volatile boolean bucketsOvergrown;
+
+    // monthly counters per hash, keep it under redis' hash-max-listpack-entries
+    @Value("${rate-limiter.compact-keys.monthly-bucket-size:100}")
+    private int monthlyBucketSize;
+
+    @Value("${rate-limiter.compact-keys.local-cache-size:100000}")
+    private int localCacheSize;
+
+    // client id -> short id, ids never change so only the size is bounded
+    private Map<String, String> shortIds;
+    // the highest id number handed out that this instance has seen
+    private final AtomicLong highestSeen = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        // access ordered, so the eldest entry is the least recently used one
+        shortIds = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > localCacheSize;
+            }
+        });
+        idBuckets = configuredIdBuckets > 0
+            ? configuredIdBuckets
+            : (int) Math.min(Integer.MAX_VALUE, Math.max(1, (expectedClients + CLIENTS_PER_ID_BUCKET - 1) / CLIENTS_PER_ID_BUCKET));
+        if ((double) expectedClients / idBuckets > LISTPACK_MAX_ENTRIES) {
+            log.warn("{} id buckets for {} expected clients is more than {} per bucket, past the default "
+                + "hash-max-listpack-entries: the compact layout loses most of its saving", idBuckets, expectedClients,
+                LISTPACK_MAX_ENTRIES);
+        }
+        if (enabled) {
+            pinIdBuckets();
+        }
+    }
+
+    // the first instance stores its bucket count, every other one takes that over
+    private void pinIdBuckets() {
+        try {
+            redisTemplate.opsForValue().setIfAbsent(ID_BUCKETS_KEY, String.valueOf(idBuckets));
+            int pinned = Integer.parseInt(redisTemplate.opsForValue().get(ID_BUCKETS_KEY));
+            if (pinned != idBuckets) {
+                log.warn("Using the {} id buckets the existing short ids were stored in, not {}", pinned, idBuckets);
+                idBuckets = pinned;
+            }
+        } catch (Exception e) {
+            log.error("Error reading the id bucket count, using {}: {}", idBuckets, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The client's counter keys, giving it a short id first in the compact
+     * layout if it has none yet.
+     */
+    public Counters of(String clientId) {
+        if (!enabled) {
+            return plain(clientId);
+        }
+        String shortId = shortIds.get(clientId);
+        if (shortId == null) {
+            shortId = assign(List.of(clientId)).get(0);
+        }
+        return compact(shortId);
+    }
+
+    /**
+     * Same as {@link #of(String)} without giving out an id, null for a client
+     * that was never counted in the compact layout.
+     */
+    public Counters existing(String clientId) {
+        if (!enabled) {
+            return plain(clientId);
+        }
+        String shortId = shortIds.get(clientId);
+        if (shortId == null) {
+            Object stored = redisTemplate.opsForHash().get(idBucketKey(clientId), clientId);
+            if (stored == null) {
+                return null;
+            }
+            shortId = remember(clientId, stored.toString());
+        }
+        return compact(shortId);
+    }
+
+    // looks up the short ids of a batch of clients in one round trip, so the checks that follow find them cached
+    public void prefetch(Collection<String> clientIds) {
+        if (!enabled) {
+            return;
+        }
+        Set<String> missing = new LinkedHashSet<>();
+        for (String clientId : clientIds) {
+            if (!shortIds.containsKey(clientId)) {
+                missing.add(clientId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            assign(new ArrayList<>(missing));
+        }
+    }
+
+    /**
+     * Hands every client that has a short id to the consumer, with its
+     * counter keys, in batches of up to batchSize. Only for the compact
+     * layout, the plain one is listed from its monthly keys.
+     */
+    public void forEachClient(int batchSize, Consumer<Map<String, Counters>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(ID_PREFIX + "*").count(batchSize).build();
+        Map<String, Counters> batch = new LinkedHashMap<>();
+        List<String> page = new ArrayList<>();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                page.add(cursor.next());
+                if (page.size() >= batchSize || !cursor.hasNext()) {
+                    // the buckets of a page in one round trip, not one each
+                    for (Map<?, ?> bucket : readBuckets(page)) {
+                        for (Map.Entry<?, ?> entry : bucket.entrySet()) {
+                            batch.put(entry.getKey().toString(), compact(entry.getValue().toString()));
+                            if (batch.size() >= batchSize) {
+                                consumer.accept(batch);
+                                batch = new LinkedHashMap<>();
+                            }
+                        }
+                    }
+                    page.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    private List<Map<?, ?>> readBuckets(List<String> keys) {
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.hashCommands().hGetAll(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        List<Map<?, ?>> buckets = new ArrayList<>(replies.size());
+        for (Object reply : replies) {
+            if (reply instanceof Map<?, ?> bucket) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Forgets the cached ids once redis has lost the mappings (flushed, or
+     * restarted without persistence): the sequence then starts over and would
+     * hand this instance's cached ids to other clients.
+     */
+    @Scheduled(fixedDelayString = "${rate-limiter.configs.refresh-ms:30000}", initialDelayString = "${rate-limiter.configs.refresh-ms:30000}")
+    public void checkSequence() {
+        long seen = highestSeen.get();
+        if (!enabled || seen == 0) {
+            return;
+        }
+        try {
+            String sequence = redisTemplate.opsForValue().get(ID_SEQUENCE_KEY);
+            if (sequence == null || Long.parseLong(sequence) < seen) {
+                log.warn("Short id sequence in redis is behind {}, dropping {} cached short ids", seen, shortIds.size());
+                shortIds.clear();
+                highestSeen.set(0);
+                // the bucket count went with the mappings, store ours again
+                pinIdBuckets();
+            } else if (!bucketsOvergrown && Long.parseLong(sequence) / idBuckets > LISTPACK_MAX_ENTRIES) {
+                bucketsOvergrown = true;
+                log.warn("{} clients in {} id buckets is more than {} per bucket, past the default hash-max-listpack-entries. "
+                    + "Raise rate-limiter.compact-keys.expected-clients for a new deployment", sequence, idBuckets,
+                    LISTPACK_MAX_ENTRIES);
+            }
+        } catch (Exception e) {
+            log.error("Error checking the short id sequence: {}", e.getMessage(), e);
+        }
+    }
+
+    private List<String> assign(List<String> clientIds) {
+        List<String> keys = new ArrayList<>(clientIds.size() + 1);
+        for (String clientId : clientIds) {
+            keys.add(idBucketKey(clientId));
+        }
+        keys.add(ID_SEQUENCE_KEY);
+        List<?> reply = redisTemplate.execute(ASSIGN, keys, clientIds.toArray());
+        List<String> ids = new ArrayList<>(clientIds.size());
+        for (int i = 0; i < clientIds.size(); i++) {
+            Object id = reply.get(i);
+            ids.add(remember(clientIds.get(i), id instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : id.toString()));
+        }
+        return ids;
+    }
+
+    private String remember(String clientId, String shortId) {
+        shortIds.put(clientId, shortId);
+        highestSeen.accumulateAndGet(decode(shortId), Math::max);
+        return shortId;
+    }
+
+    private Counters plain(String clientId) {
+        return new Counters(RateLimitService.timeWindowKey(clientId), RateLimitService.monthlyKey(clientId), null);
+    }
+
+    Counters compact(String shortId) {
+        return new Counters(TIME_WINDOW_PREFIX + shortId,
+            MONTHLY_PREFIX + RateLimitService.getCurrentMonthKey() + ":" + decode(shortId) / monthlyBucketSize, shortId);
+    }
+
+    private String idBucketKey(String clientId) {
+        CRC32 crc = new CRC32();
+        crc.update(clientId.getBytes(StandardCharsets.UTF_8));
+        return ID_PREFIX + crc.getValue() % idBuckets;
+    }
+
+    static long decode(String shortId) {
+        long value = 0;
+        for (int i = 0; i < shortId.length(); i++) {
+            value = value * 62 + BASE62.indexOf(shortId.charAt(i));
+        }
+        return value;
+    }
+
+    /**
+     * A client's counter keys in the current layout. The monthly counter is
+     * monthlyField of the hash at monthlyKey when the field is set.
+     */
+    @lombok.Value
+    public static class Counters {
+        String timeWindowKey;
+        String monthlyKey;
+        String monthlyField;
+
+        // extra windows are told apart by their size
+        public String timeWindowKey(int windowSeconds) {
+            return timeWindowKey + ":" + windowSeconds + "s";
+        }
+    }
+}
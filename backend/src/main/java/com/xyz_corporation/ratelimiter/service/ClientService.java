@@ -16,12 +16,15 @@ import java.util.Optional;
 public class ClientService {
     
     private final ClientRepository repository;
+    private final TenantService tenantService;
     
     public Client createClient(Client client) {
         if (repository.existsByClientId(client.getClientId())) {
             throw new IllegalArgumentException("Client with ID already exists: " + client.getClientId());
         }
-        return repository.save(client);
+        Client saved = repository.save(client);
+        tenantService.refresh();
+        return saved;
     }
     
     public Optional<Client> getClient(String clientId) {
@@ -41,13 +44,17 @@ public class ClientService {
         existing.setName(updatedClient.getName());
         existing.setDescription(updatedClient.getDescription());
         existing.setContactEmail(updatedClient.getContactEmail());
+        existing.setTenantId(updatedClient.getTenantId());
         
-        return repository.save(existing);
+        Client saved = repository.save(existing);
+        tenantService.refresh();
+        return saved;
     }
     
     public void deleteClient(String clientId) {
         repository.findByClientId(clientId)
             .ifPresent(repository::delete);
+        tenantService.refresh();
     }
 }
 
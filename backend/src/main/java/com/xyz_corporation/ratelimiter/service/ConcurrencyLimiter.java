@@ -0,0 +1,154 @@
+package com.corporation.ratelimiter.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caps the requests a client has in flight at the same time.
+ *
+ * By default the count is local to this instance: a table of per-client
+ * counters used as semaphores, updated atomically per client and sized at
+ * acquire time, so limit changes apply without rebuilding anything. With
+ * rate-limiter.concurrency.distributed the slots are leases in a per-client
+ * redis sorted set scored by expiry. Leases held here are renewed in the
+ * background, so the ones of a crashed instance expire and free their slots.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConcurrencyLimiter {
+    
+    private static final String LEASE_PREFIX = "rate_limit:concurrency:";
+    
+    // redis: drops expired leases of KEYS[1], then adds lease ARGV[2] for ARGV[3] ms
+    // if fewer than ARGV[1] are left. uses the redis clock so instances never disagree
+    static final String ACQUIRE_SCRIPT = 
+        "local now = redis.call('TIME') " +
+        "local nowMs = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000) " +
+        "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', nowMs) " +
+        "if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[1]) then return 0 end " +
+        "redis.call('ZADD', KEYS[1], nowMs + tonumber(ARGV[3]), ARGV[2]) " +
+        "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+        "return 1";
+    
+    // redis: pushes the expiry of lease ARGV[i] in KEYS[i] to now + ARGV[#ARGV] ms,
+    // leases that already expired are not brought back
+    static final String RENEW_SCRIPT = 
+        "local now = redis.call('TIME') " +
+        "local nowMs = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000) " +
+        "local leaseMs = tonumber(ARGV[#ARGV]) " +
+        "for i = 1, #KEYS do " +
+        "  if redis.call('ZADD', KEYS[i], 'XX', 'CH', nowMs + leaseMs, ARGV[i]) == 1 then " +
+        "    redis.call('PEXPIRE', KEYS[i], leaseMs) " +
+        "  end " +
+        "end " +
+        "return 1";
+    
+    private static final DefaultRedisScript<Long> ACQUIRE = new DefaultRedisScript<>(ACQUIRE_SCRIPT, Long.class);
+    private static final DefaultRedisScript<Long> RENEW = new DefaultRedisScript<>(RENEW_SCRIPT, Long.class);
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    
+    // clientId -> requests in flight on this instance
+    private final Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+    // leaseId -> clientId of the redis leases held by this instance
+    private final Map<String, String> heldLeases = new ConcurrentHashMap<>();
+    
+    @Value("${rate-limiter.concurrency.distributed:false}")
+    private boolean distributed;
+    
+    @Value("${rate-limiter.concurrency.lease-ms:30000}")
+    private long leaseMs;
+    
+    /**
+     * Takes one of the client's limit slots, null when all of them are in use.
+     * A limit of 0 or less means unlimited and always succeeds.
+     */
+    public ConcurrencyPermit tryAcquire(String clientId, int limit) {
+        if (limit <= 0) {
+            return new ConcurrencyPermit(clientId, null, limit);
+        }
+        if (distributed) {
+            String leaseId = UUID.randomUUID().toString();
+            try {
+                Long acquired = redisTemplate.execute(ACQUIRE, List.of(leaseKey(clientId)),
+                    String.valueOf(limit), leaseId, String.valueOf(leaseMs));
+                if (acquired == null || acquired == 0) {
+                    return null;
+                }
+                heldLeases.put(leaseId, clientId);
+                return new ConcurrencyPermit(clientId, leaseId, limit);
+            } catch (Exception e) {
+                // keep limiting per instance while redis is unavailable
+                log.error("Error acquiring concurrency lease for client {}, using a local slot: {}", clientId, e.getMessage(), e);
+            }
+        }
+        boolean[] acquired = new boolean[1];
+        inFlight.compute(clientId, (id, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= limit) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0] ? new ConcurrencyPermit(clientId, null, limit) : null;
+    }
+    
+    public void release(ConcurrencyPermit permit) {
+        if (permit.getLimit() <= 0) {
+            return;
+        }
+        if (permit.getLeaseId() != null) {
+            heldLeases.remove(permit.getLeaseId());
+            try {
+                redisTemplate.opsForZSet().remove(leaseKey(permit.getClientId()), permit.getLeaseId());
+            } catch (Exception e) {
+                // the lease expires on its own
+                log.error("Error releasing concurrency lease of client {}: {}", permit.getClientId(), e.getMessage(), e);
+            }
+            return;
+        }
+        // idle clients are dropped from the table
+        inFlight.computeIfPresent(permit.getClientId(), (id, count) -> count <= 1 ? null : count - 1);
+    }
+    
+    // requests the client has in flight on this instance
+    public int getInFlight(String clientId) {
+        return inFlight.getOrDefault(clientId, 0);
+    }
+    
+    @Scheduled(fixedDelayString = "${rate-limiter.concurrency.renew-ms:10000}")
+    public void renewLeases() {
+        if (heldLeases.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(heldLeases.size());
+        List<String> args = new ArrayList<>(heldLeases.size() + 1);
+        heldLeases.forEach((leaseId, clientId) -> {
+            keys.add(leaseKey(clientId));
+            args.add(leaseId);
+        });
+        args.add(String.valueOf(leaseMs));
+        try {
+            redisTemplate.execute(RENEW, keys, args.toArray());
+        } catch (Exception e) {
+            log.error("Error renewing {} concurrency leases: {}", keys.size(), e.getMessage(), e);
+        }
+    }
+    
+    static String leaseKey(String clientId) {
+        return LEASE_PREFIX + clientId;
+    }
+}
@@ -0,0 +1,15 @@
+package com.corporation.ratelimiter.service;
+
+import lombok.Value;
+
+/**
+ * One in-flight request slot held by a client, handed back through
+ * {@link ConcurrencyLimiter#release}. leaseId is set when the slot is a
+ * redis lease rather than a local one.
+ */
+@Value
+public class ConcurrencyPermit {
+    String clientId;
+    String leaseId;
+    int limit;
+}
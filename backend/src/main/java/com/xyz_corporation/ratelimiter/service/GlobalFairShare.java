@@ -0,0 +1,137 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.core.RateLimitDimension;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Splits the global per-second budget between the clients competing for it,
+ * so one noisy client cannot use it all up.
+ *
+ * Every client gets a per-second counter capped at the current share, checked
+ * by the same script call as its other limits. That call also adds the client
+ * to a HyperLogLog of the second's active clients, to a second one when the
+ * share is what stopped it, and counts the units granted. Once a second the
+ * share is recomputed from the previous second's numbers, max-min style: the
+ * clients under the share keep what they used and the capped ones split the
+ * rest, never less than an equal split. A second in which the global budget
+ * ran out backs the share off towards that equal split.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GlobalFairShare {
+
+    // the quota script expires the per-second bookkeeping after QuotaScript.FAIR_SHARE_BOOKKEEPING_TTL_SECONDS
+    private static final String KEY_PREFIX = "rate_limit:fair:";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final SystemLimitConfigService systemLimitConfigService;
+
+    @Getter
+    @Value("${rate-limiter.fairness.enabled:false}")
+    private boolean enabled;
+
+    // 0 while nobody competes: no cap below the global limit
+    private volatile long share;
+
+    /**
+     * The client's fair share counter for the current second.
+     */
+    public RateLimitDimension dimension(String clientId, long globalLimit) {
+        long current = share;
+        long limit = current == 0 ? globalLimit : Math.min(current, globalLimit);
+        return new RateLimitDimension(RateLimitDimension.FAIR_SHARE,
+            KEY_PREFIX + "client:" + clientId + ":" + Instant.now().getEpochSecond(), limit, 1, false);
+    }
+
+    // the bookkeeping keys of the current second, in the order the quota script expects them
+    public List<String> bookkeepingKeys() {
+        long second = Instant.now().getEpochSecond();
+        return List.of(activeKey(second), cappedKey(second), usedKey(second));
+    }
+
+    public long getShare() {
+        return share;
+    }
+
+    @Scheduled(fixedRateString = "${rate-limiter.fairness.interval-ms:1000}")
+    public void recompute() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long second = Instant.now().getEpochSecond() - 1;
+            byte[] activeKey = bytes(activeKey(second));
+            byte[] cappedKey = bytes(cappedKey(second));
+            byte[] usedKey = bytes(usedKey(second));
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hyperLogLogCommands().pfCount(activeKey);
+                connection.hyperLogLogCommands().pfCount(cappedKey);
+                connection.stringCommands().get(usedKey);
+                return null;
+            });
+            long active = count(results.get(0));
+            long capped = count(results.get(1));
+            long used = count(results.get(2));
+            share = nextShare(share, systemLimitConfigService.getEffectiveGlobalRequestsPerSecond(), active, capped, used);
+        } catch (Exception e) {
+            log.error("Error recomputing the global fair share: {}", e.getMessage(), e);
+        }
+    }
+
+    static long nextShare(long current, long limit, long active, long capped, long used) {
+        if (active <= 1) {
+            return 0;
+        }
+        long equalSplit = (limit + active - 1) / active;
+        long share = current == 0 ? limit : current;
+        long next;
+        if (used >= limit) {
+            // the budget ran out, someone may have been starved
+            next = Math.max(equalSplit, share / 2);
+        } else if (capped == 0) {
+            // nobody reached the share, hand out what was left over
+            next = share + (limit - used);
+        } else {
+            // water filling: the uncapped keep their use, the capped split the rest.
+            // approached halfway so a client arriving late in the second still finds room
+            long uncappedUse = Math.max(0, used - capped * share);
+            long target = (limit - uncappedUse) / capped;
+            next = share + (target - share) / 2;
+        }
+        next = Math.max(equalSplit, Math.min(limit, next));
+        return next >= limit ? 0 : next;
+    }
+
+    private static String activeKey(long second) {
+        return KEY_PREFIX + "active:" + second;
+    }
+
+    private static String cappedKey(long second) {
+        return KEY_PREFIX + "capped:" + second;
+    }
+
+    private static String usedKey(long second) {
+        return KEY_PREFIX + "used:" + second;
+    }
+
+    private static long count(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.core.IdempotentResponse;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Dedupe store behind the Idempotency-Key header. Keys are reserved in redis
+ * by the limit check itself (see {@link RateLimitService#checkLimits(String, int, RateLimitRoute, String)}),
+ * this class stores the finished response and keeps the hottest ones in a
+ * local LRU so repeated retries are answered without a round trip.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+    
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    
+    private static final String KEY_PREFIX = "rate_limit:idempotency:";
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    
+    @Value("${rate-limiter.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+    
+    // how long a reserved key stays pending without a stored response, so a request
+    // whose instance died before storing it does not block its retries for the full ttl
+    @Getter
+    @Value("${rate-limiter.idempotency.pending-ttl-seconds:60}")
+    private long pendingTtlSeconds;
+    
+    @Value("${rate-limiter.idempotency.max-key-length:255}")
+    private int maxKeyLength;
+    
+    @Value("${rate-limiter.idempotency.local-cache-size:10000}")
+    private int localCacheSize;
+    
+    private Map<String, IdempotentResponse> localCache;
+    
+    @PostConstruct
+    void init() {
+        // access ordered, so the eldest entry is the least recently used one
+        localCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotentResponse> eldest) {
+                return size() > localCacheSize;
+            }
+        });
+    }
+    
+    /**
+     * The Idempotency-Key header value, or null when the request has none.
+     */
+    public String normalizeKey(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        String key = header.trim();
+        if (key.length() > maxKeyLength) {
+            throw new IllegalArgumentException(IDEMPOTENCY_KEY_HEADER + " must be at most " + maxKeyLength + " characters");
+        }
+        return key;
+    }
+    
+    // completed response from the local LRU, null if it is not there
+    public IdempotentResponse getCached(String clientId, String key) {
+        String redisKey = redisKey(clientId, key);
+        IdempotentResponse cached = localCache.get(redisKey);
+        if (cached != null && cached.isExpired()) {
+            localCache.remove(redisKey);
+            return null;
+        }
+        return cached;
+    }
+    
+    // keeps a completed response found in redis for the next retry
+    public void remember(String clientId, String key, IdempotentResponse response) {
+        if (!response.isPending()) {
+            localCache.put(redisKey(clientId, key), response);
+        }
+    }
+    
+    /**
+     * Stores the response of the request that reserved the key, for the full
+     * ttl. Only replaces the pending marker, so a key that expired in the
+     * meantime stays gone.
+     */
+    public void complete(String clientId, String key, int status, String body) {
+        IdempotentResponse response = new IdempotentResponse(status, body, System.currentTimeMillis() + ttlSeconds * 1000);
+        try {
+            redisTemplate.opsForValue().setIfPresent(redisKey(clientId, key), response.encode(), Duration.ofSeconds(ttlSeconds));
+            localCache.put(redisKey(clientId, key), response);
+        } catch (Exception e) {
+            log.error("Error storing response for idempotency key {} of client {}: {}", key, clientId, e.getMessage(), e);
+        }
+    }
+    
+    // frees a reserved key whose request failed, so a retry runs it again
+    public void release(String clientId, String key) {
+        try {
+            redisTemplate.delete(redisKey(clientId, key));
+        } catch (Exception e) {
+            log.error("Error releasing idempotency key {} of client {}: {}", key, clientId, e.getMessage(), e);
+        }
+    }
+    
+    static String redisKey(String clientId, String key) {
+        return KEY_PREFIX + clientId + ":" + key;
+    }
+}
@@ -0,0 +1,97 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.model.IpRule;
+import com.corporation.ratelimiter.repository.IpRuleRepository;
+import com.corporation.ratelimiter.util.Cidr;
+import com.corporation.ratelimiter.util.CidrTrie;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * The allow and deny rules by caller address. Besides the CRUD, keeps them
+ * compiled into a longest-prefix-match trie, so checking an address costs at
+ * most one step per address bit however many rules there are. The trie is
+ * rebuilt on every change made here and refreshed periodically to pick up
+ * changes made by other instances.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IpRuleService {
+    
+    private final IpRuleRepository repository;
+    
+    // swapped as a whole, lookups never lock
+    private volatile CidrTrie<IpRule.Action> compiled = new CidrTrie<>();
+    
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+    
+    @Scheduled(fixedDelayString = "${rate-limiter.ip.refresh-ms:30000}", initialDelayString = "${rate-limiter.ip.refresh-ms:30000}")
+    public void refresh() {
+        try {
+            CidrTrie<IpRule.Action> trie = new CidrTrie<>();
+            for (IpRule rule : repository.findAll()) {
+                trie.put(Cidr.parse(rule.getCidr()), rule.getAction());
+            }
+            compiled = trie;
+        } catch (Exception e) {
+            log.error("Error loading IP rules: {}", e.getMessage(), e);
+        }
+    }
+    
+    // the action of the most specific rule the address falls in, null if there is none
+    public IpRule.Action match(byte[] address) {
+        CidrTrie<IpRule.Action> rules = compiled;
+        if (address == null || rules.isEmpty()) {
+            return null;
+        }
+        return rules.longestMatch(address);
+    }
+    
+    public List<IpRule> getAllRules() {
+        return repository.findAll();
+    }
+    
+    public IpRule createRule(IpRule rule) {
+        rule.setCidr(Cidr.parse(rule.getCidr()).toString());
+        if (repository.existsByCidr(rule.getCidr())) {
+            throw new IllegalArgumentException("IP rule already exists for " + rule.getCidr());
+        }
+        IpRule saved = repository.save(rule);
+        refresh();
+        return saved;
+    }
+    
+    @Transactional
+    public IpRule updateRule(Long id, IpRule updatedRule) {
+        IpRule existing = repository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("IP rule not found: " + id));
+        
+        String cidr = Cidr.parse(updatedRule.getCidr()).toString();
+        if (!cidr.equals(existing.getCidr()) && repository.existsByCidr(cidr)) {
+            throw new IllegalArgumentException("IP rule already exists for " + cidr);
+        }
+        existing.setCidr(cidr);
+        existing.setAction(updatedRule.getAction());
+        existing.setDescription(updatedRule.getDescription());
+        
+        IpRule saved = repository.save(existing);
+        refresh();
+        return saved;
+    }
+    
+    public void deleteRule(Long id) {
+        repository.findById(id)
+            .ifPresent(repository::delete);
+        refresh();
+    }
+}
@@ -0,0 +1,83 @@
+package com.corporation.ratelimiter.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unspent balance of the leases handed out by /api/limits/lease, so a return
+ * can only give back units that were really leased to that client, and only
+ * once. Each lease is a redis hash that expires when the counters its units
+ * were charged to reset, after which a refund would land in the next window.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaseLedger {
+
+    private static final String KEY_PREFIX = "rate_limit:lease:";
+
+    // redis: records lease KEYS[1] of client ARGV[1] and resource ARGV[2] with ARGV[3] units for ARGV[4] ms
+    static final String OPEN_SCRIPT =
+        "redis.call('HSET', KEYS[1], 'client', ARGV[1], 'resource', ARGV[2], 'balance', ARGV[3]) " +
+        "redis.call('PEXPIRE', KEYS[1], ARGV[4]) " +
+        "return 1";
+
+    // redis: closes lease KEYS[1] if it belongs to client ARGV[1] and resource ARGV[2],
+    // returning its balance but at most ARGV[3]. 0 for unknown, expired or foreign leases
+    static final String TAKE_SCRIPT =
+        "local lease = redis.call('HMGET', KEYS[1], 'client', 'resource', 'balance') " +
+        "if not lease[3] or lease[1] ~= ARGV[1] or lease[2] ~= ARGV[2] then return 0 end " +
+        "redis.call('DEL', KEYS[1]) " +
+        "return math.min(tonumber(lease[3]), tonumber(ARGV[3]))";
+
+    private static final DefaultRedisScript<Long> OPEN = new DefaultRedisScript<>(OPEN_SCRIPT, Long.class);
+    private static final DefaultRedisScript<Long> TAKE = new DefaultRedisScript<>(TAKE_SCRIPT, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * Records a lease of the granted units and returns its id. Units left on
+     * the previous lease of the same client and resource, if that one is
+     * still open, move over to the new one.
+     */
+    public String open(String clientId, String resource, long granted, long ttlMs, String previousLeaseId) {
+        String leaseId = UUID.randomUUID().toString();
+        try {
+            long balance = granted + take(clientId, resource, previousLeaseId, Long.MAX_VALUE);
+            redisTemplate.execute(OPEN, List.of(KEY_PREFIX + leaseId),
+                clientId, resourceField(resource), String.valueOf(balance), String.valueOf(ttlMs));
+        } catch (Exception e) {
+            // nothing can be given back from this lease then, which is never more than was charged
+            log.error("Error recording lease of client {}: {}", clientId, e.getMessage(), e);
+        }
+        return leaseId;
+    }
+
+    /**
+     * Closes the lease and returns how many of the units may be refunded:
+     * the requested ones, capped at what is left on it.
+     */
+    public long take(String clientId, String resource, String leaseId, long units) {
+        if (leaseId == null || leaseId.isBlank() || units <= 0) {
+            return 0;
+        }
+        try {
+            Long taken = redisTemplate.execute(TAKE, List.of(KEY_PREFIX + leaseId),
+                clientId, resourceField(resource), String.valueOf(units));
+            return taken != null ? taken : 0;
+        } catch (Exception e) {
+            log.error("Error closing lease {} of client {}: {}", leaseId, clientId, e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private static String resourceField(String resource) {
+        return resource != null ? resource : "";
+    }
+}
@@ -0,0 +1,14 @@
+package com.corporation.ratelimiter.service;
+
+import lombok.Value;
+
+/**
+ * One request of a batch decision: the client, the cost it would charge and
+ * the route whose policies apply, null for the client's own limits only.
+ */
+@Value
+public class LimitCheck {
+    String clientId;
+    int cost;
+    RateLimitRoute route;
+}
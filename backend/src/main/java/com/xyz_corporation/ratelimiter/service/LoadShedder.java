@@ -0,0 +1,62 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Turns lower priority clients away first while the global per-second budget
+ * runs out. Utilization is taken from the global counter value the last limit
+ * check on this instance got back from redis, so deciding costs nothing: no
+ * extra round trip and nothing charged for a shed request.
+ */
+@Service
+public class LoadShedder {
+
+    @Value("${rate-limiter.shedding.enabled:false}")
+    private boolean enabled;
+
+    // share of the global limit used up in the current second above which a tier is shed
+    @Value("${rate-limiter.shedding.low-threshold:0.8}")
+    private double lowThreshold;
+
+    @Value("${rate-limiter.shedding.normal-threshold:0.95}")
+    private double normalThreshold;
+
+    private volatile Observation last = new Observation(0, 0, 0);
+
+    // called with the global counter after every limit check
+    public void observeGlobal(long count, long limit) {
+        last = new Observation(Instant.now().getEpochSecond(), count, limit);
+    }
+
+    /**
+     * True when requests of this priority should be turned away right now.
+     * HIGH is never shed, it is only stopped by the global limit itself.
+     */
+    public boolean shouldShed(RateLimitConfig.Priority priority) {
+        if (!enabled || priority == RateLimitConfig.Priority.HIGH) {
+            return false;
+        }
+        double threshold = priority == RateLimitConfig.Priority.LOW ? lowThreshold : normalThreshold;
+        return getUtilization() >= threshold;
+    }
+
+    // used share of the current second's global budget, 0 when nothing was seen this second
+    public double getUtilization() {
+        Observation observation = last;
+        if (observation.getEpochSecond() != Instant.now().getEpochSecond() || observation.getLimit() <= 0) {
+            return 0;
+        }
+        return (double) observation.getCount() / observation.getLimit();
+    }
+
+    @lombok.Value
+    private static class Observation {
+        long epochSecond;
+        long count;
+        long limit;
+    }
+}
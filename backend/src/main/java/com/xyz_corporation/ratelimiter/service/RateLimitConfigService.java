@@ -2,14 +2,24 @@ package com.corporation.ratelimiter.service;
 
 import com.corporation.ratelimiter.model.RateLimitConfig;
 import com.corporation.ratelimiter.repository.RateLimitConfigRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -17,6 +27,7 @@ import java.util.Optional;
 public class RateLimitConfigService {
     
     private final RateLimitConfigRepository repository;
+    private final RedisConfigMirror configMirror;
     
     @Value("${rate-limiter.default.time-window.requests:100}")
     private int defaultTimeWindowRequests;
@@ -27,20 +38,131 @@ public class RateLimitConfigService {
     @Value("${rate-limiter.default.monthly.requests:10000}")
     private int defaultMonthlyRequests;
     
+    @Value("${rate-limiter.default.concurrency.max-requests:0}")
+    private int defaultMaxConcurrentRequests;
+    
+    @Value("${rate-limiter.default.priority:NORMAL}")
+    private RateLimitConfig.Priority defaultPriority;
+    
+    // most recently used clients kept in memory, with or without a config of their own
+    @Value("${rate-limiter.configs.cache-size:100000}")
+    private int cacheSize;
+    
+    // a cached config is reloaded in the background after this, so changes made through other instances apply within it
+    @Value("${rate-limiter.configs.cache-ttl-ms:5000}")
+    private long cacheTtlMs;
+    
+    // clientId -> config, empty for clients without one. read on every request
+    private LoadingCache<String, Optional<RateLimitConfig>> cache;
+    
+    @PostConstruct
+    void init() {
+        // a miss loads once however many requests wait for it, an old entry keeps being
+        // served while one reload runs, and the last known one stays if that reload fails
+        cache = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .refreshAfterWrite(Duration.ofMillis(cacheTtlMs))
+            .build(new CacheLoader<>() {
+                @Override
+                public Optional<RateLimitConfig> load(String clientId) {
+                    return repository.findByClientId(clientId);
+                }
+                
+                @Override
+                public Map<String, Optional<RateLimitConfig>> loadAll(Set<? extends String> clientIds) {
+                    Map<String, Optional<RateLimitConfig>> loaded = new HashMap<>();
+                    for (String clientId : clientIds) {
+                        loaded.put(clientId, Optional.empty());
+                    }
+                    for (RateLimitConfig config : repository.findAllByClientIdIn(List.copyOf(clientIds))) {
+                        loaded.put(config.getClientId(), Optional.of(config));
+                    }
+                    return loaded;
+                }
+            });
+    }
+    
+    /**
+     * Fills the cache with up to cache-size configs, so the first requests
+     * after startup find them in memory. Part of the warm-up, the cache loads
+     * any client it does not have on its own. Returns the number loaded.
+     */
+    public int preload() {
+        try {
+            List<RateLimitConfig> configs = repository.findAll(PageRequest.of(0, cacheSize)).getContent();
+            for (RateLimitConfig config : configs) {
+                cache.put(config.getClientId(), Optional.of(config));
+            }
+            return configs.size();
+        } catch (Exception e) {
+            log.error("Error preloading client rate limit configs: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+    
+    /**
+     * Requests the client may have in flight at once, 0 for unlimited. Served
+     * from the config cache.
+     */
+    public int getMaxConcurrentRequests(String clientId) {
+        RateLimitConfig config = cached(clientId);
+        return config != null && config.getMaxConcurrentRequests() != null
+            ? config.getMaxConcurrentRequests() : defaultMaxConcurrentRequests;
+    }
+    
+    // served from the config cache like the concurrency limits
+    public RateLimitConfig.Priority getPriority(String clientId) {
+        RateLimitConfig config = cached(clientId);
+        return config != null && config.getPriority() != null ? config.getPriority() : defaultPriority;
+    }
+    
     public RateLimitConfig createConfig(RateLimitConfig config) {
         if (repository.existsByClientId(config.getClientId())) {
             throw new IllegalArgumentException("Rate limit config already exists for client: " + config.getClientId());
         }
-        return repository.save(config);
+        RateLimitConfig saved = repository.save(config);
+        configMirror.write(saved);
+        cache.put(saved.getClientId(), Optional.of(saved));
+        return saved;
     }
     
     public Optional<RateLimitConfig> getConfig(String clientId) {
         return repository.findByClientId(clientId);
     }
     
+    // served from the config cache, this runs on every rate limited request
     public RateLimitConfig getConfigOrDefault(String clientId) {
-        return repository.findByClientId(clientId)
-            .orElseGet(() -> createDefaultConfig(clientId));
+        RateLimitConfig config = cached(clientId);
+        return config != null ? config : createDefaultConfig(clientId);
+    }
+    
+    // same for a whole batch of clients in at most one query, missing ones get the defaults
+    public Map<String, RateLimitConfig> getConfigsOrDefault(Collection<String> clientIds) {
+        Map<String, Optional<RateLimitConfig>> configs;
+        try {
+            configs = cache.getAll(clientIds);
+        } catch (Exception e) {
+            // the database is unreachable: what is cached, the defaults for the rest
+            log.error("Error loading client rate limit configs: {}", e.getMessage(), e);
+            configs = cache.getAllPresent(clientIds);
+        }
+        Map<String, RateLimitConfig> result = new HashMap<>();
+        for (String clientId : clientIds) {
+            Optional<RateLimitConfig> config = configs.getOrDefault(clientId, Optional.empty());
+            result.put(clientId, config.orElseGet(() -> createDefaultConfig(clientId)));
+        }
+        return result;
+    }
+    
+    // the client's config, null if it has none. loaded on a miss, reloaded once older than the ttl
+    private RateLimitConfig cached(String clientId) {
+        try {
+            return cache.get(clientId).orElse(null);
+        } catch (Exception e) {
+            // the database is unreachable and nothing is cached: the defaults
+            log.error("Error loading rate limit config of client {}: {}", clientId, e.getMessage(), e);
+            return null;
+        }
     }
     
     private RateLimitConfig createDefaultConfig(String clientId) {
@@ -62,17 +184,25 @@ public class RateLimitConfigService {
         existing.setTimeWindowSeconds(updatedConfig.getTimeWindowSeconds());
         existing.setMonthlyRequests(updatedConfig.getMonthlyRequests());
         existing.setThrottlingMode(updatedConfig.getThrottlingMode());
+        existing.setMaxConcurrentRequests(updatedConfig.getMaxConcurrentRequests());
+        existing.setPriority(updatedConfig.getPriority());
+        existing.getWindows().clear();
+        existing.getWindows().addAll(updatedConfig.getWindows());
         
-        return repository.save(existing);
+        RateLimitConfig saved = repository.save(existing);
+        configMirror.write(saved);
+        cache.put(clientId, Optional.of(saved));
+        return saved;
     }
     
     public void deleteConfig(String clientId) {
         repository.findByClientId(clientId)
             .ifPresent(repository::delete);
+        configMirror.delete(clientId);
+        cache.put(clientId, Optional.empty());
     }
     
     public List<RateLimitConfig> getAllConfigs() {
         return repository.findAll();
     }
 }
-
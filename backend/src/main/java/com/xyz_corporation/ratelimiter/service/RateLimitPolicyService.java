@@ -0,0 +1,138 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.dispatch.NotificationChannel;
+import com.corporation.ratelimiter.model.RateLimitPolicy;
+import com.corporation.ratelimiter.repository.RateLimitPolicyRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Channel and route policies of the clients. Besides the CRUD, keeps them
+ * compiled into a client -> channel -> route map of the exact policies a
+ * request on that route is checked against, so the hot path is a few map
+ * lookups. The map is rebuilt on every change made here and refreshed
+ * periodically to pick up changes made by other instances.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitPolicyService {
+    
+    // route key of the channel level entry in the compiled map
+    private static final String ANY_ROUTE = "";
+    
+    private final RateLimitPolicyRepository repository;
+    
+    // swapped as a whole, lookups never lock
+    private volatile Map<String, Map<NotificationChannel, Map<String, List<RateLimitPolicy>>>> compiled = Map.of();
+    
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+    
+    @Scheduled(fixedDelayString = "${rate-limiter.policies.refresh-ms:30000}", initialDelayString = "${rate-limiter.policies.refresh-ms:30000}")
+    public void refresh() {
+        try {
+            compiled = compile(repository.findAll());
+        } catch (Exception e) {
+            log.error("Error loading rate limit policies: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Policies a request of the client on the route is checked against,
+     * channel level first. Empty when the client has none or the route is null.
+     */
+    public List<RateLimitPolicy> getPolicies(String clientId, RateLimitRoute route) {
+        if (route == null) {
+            return List.of();
+        }
+        Map<NotificationChannel, Map<String, List<RateLimitPolicy>>> byChannel = compiled.get(clientId);
+        if (byChannel == null) {
+            return List.of();
+        }
+        Map<String, List<RateLimitPolicy>> byRoute = byChannel.get(route.getChannel());
+        if (byRoute == null) {
+            return List.of();
+        }
+        List<RateLimitPolicy> policies = byRoute.get(route.getName());
+        return policies != null ? policies : byRoute.get(ANY_ROUTE);
+    }
+    
+    public List<RateLimitPolicy> getPolicies(String clientId) {
+        return repository.findByClientId(clientId);
+    }
+    
+    public RateLimitPolicy createPolicy(String clientId, RateLimitPolicy policy) {
+        if (repository.existsByClientIdAndChannelAndRoute(clientId, policy.getChannel(), policy.getRoute())) {
+            throw new IllegalArgumentException("Rate limit policy already exists for client " + clientId
+                + " on " + policy.getChannel() + (policy.getRoute() != null ? " " + policy.getRoute() : ""));
+        }
+        policy.setClientId(clientId);
+        RateLimitPolicy saved = repository.save(policy);
+        refresh();
+        return saved;
+    }
+    
+    @Transactional
+    public RateLimitPolicy updatePolicy(String clientId, Long id, RateLimitPolicy updatedPolicy) {
+        RateLimitPolicy existing = repository.findByIdAndClientId(id, clientId)
+            .orElseThrow(() -> new IllegalArgumentException("Rate limit policy " + id + " not found for client: " + clientId));
+        
+        existing.setRequests(updatedPolicy.getRequests());
+        existing.setWindowSeconds(updatedPolicy.getWindowSeconds());
+        
+        RateLimitPolicy saved = repository.save(existing);
+        refresh();
+        return saved;
+    }
+    
+    public void deletePolicy(String clientId, Long id) {
+        repository.findByIdAndClientId(id, clientId)
+            .ifPresent(repository::delete);
+        refresh();
+    }
+    
+    static Map<String, Map<NotificationChannel, Map<String, List<RateLimitPolicy>>>> compile(List<RateLimitPolicy> policies) {
+        Map<String, Map<NotificationChannel, List<RateLimitPolicy>>> grouped = new HashMap<>();
+        for (RateLimitPolicy policy : policies) {
+            grouped.computeIfAbsent(policy.getClientId(), id -> new EnumMap<>(NotificationChannel.class))
+                .computeIfAbsent(policy.getChannel(), channel -> new ArrayList<>())
+                .add(policy);
+        }
+        
+        Map<String, Map<NotificationChannel, Map<String, List<RateLimitPolicy>>>> result = new HashMap<>();
+        grouped.forEach((clientId, byChannel) -> {
+            Map<NotificationChannel, Map<String, List<RateLimitPolicy>>> channels = new EnumMap<>(NotificationChannel.class);
+            byChannel.forEach((channel, channelPolicies) -> {
+                RateLimitPolicy channelLevel = null;
+                for (RateLimitPolicy policy : channelPolicies) {
+                    if (policy.getRoute() == null) {
+                        channelLevel = policy;
+                    }
+                }
+                Map<String, List<RateLimitPolicy>> routes = new HashMap<>();
+                routes.put(ANY_ROUTE, channelLevel != null ? List.of(channelLevel) : List.of());
+                for (RateLimitPolicy policy : channelPolicies) {
+                    if (policy.getRoute() != null) {
+                        routes.put(policy.getRoute(), channelLevel != null ? List.of(channelLevel, policy) : List.of(policy));
+                    }
+                }
+                channels.put(channel, routes);
+            });
+            result.put(clientId, channels);
+        });
+        return result;
+    }
+}
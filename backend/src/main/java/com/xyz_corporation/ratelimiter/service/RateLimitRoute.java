@@ -0,0 +1,14 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.dispatch.NotificationChannel;
+import lombok.Value;
+
+/**
+ * A rate limited handler as policies see it: the channel it sends on and
+ * its route name, "HTTP_METHOD /path/pattern".
+ */
+@Value
+public class RateLimitRoute {
+    NotificationChannel channel;
+    String name;
+}
@@ -1,17 +1,32 @@
 package com.corporation.ratelimiter.service;
 
+import com.corporation.ratelimiter.core.CounterReply;
+import com.corporation.ratelimiter.core.IdempotentResponse;
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.core.RateLimiter;
 import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.model.RateLimitPolicy;
+import com.corporation.ratelimiter.model.RateLimitWindow;
 import com.corporation.ratelimiter.model.SystemLimitConfig;
+import com.corporation.ratelimiter.model.Tenant;
+import com.corporation.ratelimiter.redis.QuotaScript;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Service
@@ -22,191 +37,588 @@ public class RateLimitService {
     private final RedisTemplate<String, String> redisTemplate;
     private final RateLimitConfigService configService;
     private final SystemLimitConfigService systemLimitConfigService;
+    private final IdempotencyService idempotencyService;
+    private final RateLimitPolicyService policyService;
+    private final TenantService tenantService;
+    private final LoadShedder loadShedder;
+    private final GlobalFairShare fairShare;
+    private final SoftLimitCounter softLimitCounter;
+    private final RedisConfigMirror configMirror;
+    private final AdaptiveGlobalLimit adaptiveGlobalLimit;
+    private final ClientKeys clientKeys;
     
     private static final String TIME_WINDOW_PREFIX = "rate_limit:time_window:";
     private static final String MONTHLY_PREFIX = "rate_limit:monthly:";
     private static final String GLOBAL_PREFIX = "rate_limit:global:";
+    private static final String POLICY_PREFIX = "rate_limit:policy:";
+    private static final String TENANT_TIME_WINDOW_PREFIX = "rate_limit:tenant:time_window:";
+    private static final String TENANT_MONTHLY_PREFIX = "rate_limit:tenant:monthly:";
     
-    // redis: script for atomic time window rate limiting
-    private static final String TIME_WINDOW_SCRIPT = 
-        "local key = KEYS[1] " +
-        "local limit = tonumber(ARGV[1]) " +
-        "local window = tonumber(ARGV[2]) " +
-        "local current = redis.call('INCR', key) " +
-        "if current == 1 then " +
-        "  redis.call('EXPIRE', key, window) " +
-        "end " +
-        "return {current, limit}";
-    
-    // redis: script for monthly rate limiting
-    private static final String MONTHLY_SCRIPT = 
-        "local key = KEYS[1] " +
-        "local limit = tonumber(ARGV[1]) " +
-        "local current = redis.call('INCR', key) " +
-        "local ttl = redis.call('TTL', key) " +
-        "if ttl == -1 then " +
-        "  local now = tonumber(ARGV[2]) " +
-        "  local monthStart = tonumber(ARGV[3]) " +
-        "  local secondsUntilMonthEnd = tonumber(ARGV[4]) " +
-        "  redis.call('EXPIRE', key, secondsUntilMonthEnd) " +
-        "end " +
-        "return {current, limit}";
-    
-    // redis: script for global rate limiting
-    private static final String GLOBAL_SCRIPT = 
-        "local key = KEYS[1] " +
-        "local limit = tonumber(ARGV[1]) " +
-        "local current = redis.call('INCR', key) " +
-        "if current == 1 then " +
-        "  redis.call('EXPIRE', key, 1) " +
-        "end " +
-        "return {current, limit}";
+    // the scripts of the redis counter store, see QuotaScript. built once so EVALSHA can be used on every call
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> QUOTA = listScript(QuotaScript.TEXT);
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> REFUND = listScript(QuotaScript.REFUND_TEXT);
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> RESOLVING = listScript(RedisConfigMirror.SCRIPT);
     
-    public RateLimitResult checkTimeWindowLimit(String clientId) {
+    // the resolving script's error when redis has lost the mirrored configs
+    private static final String NO_CONFIG = "NOCONFIG";
+    
+    /**
+     * Checks the global, time window and monthly limits of the client in one
+     * round trip. The cost is charged to all of them or, if a hard limit has
+     * no room for it, to none of them.
+     */
+    public RateLimitDecision checkLimits(String clientId, int cost) {
+        return consume(clientId, cost, false, null, null);
+    }
+    
+    /**
+     * Same as {@link #checkLimits(String, int)}, plus the client's channel and
+     * route policies for the route, deduplicated on the client's Idempotency-Key,
+     * all in the same round trip. A key seen before charges nothing and comes
+     * back as the decision's previous response.
+     */
+    public RateLimitDecision checkLimits(String clientId, int cost, RateLimitRoute route, String idempotencyKey) {
+        return consume(clientId, cost, false, route, idempotencyKey);
+    }
+    
+    /**
+     * Like {@link #checkLimits} but for a batch of units: with allowPartial the
+     * grant is cut down to what every hard limit still has room for.
+     */
+    public RateLimitDecision consume(String clientId, int requested, boolean allowPartial) {
+        return consume(clientId, requested, allowPartial, null, null);
+    }
+    
+    public RateLimitDecision consume(String clientId, int requested, boolean allowPartial, RateLimitRoute route) {
+        return consume(clientId, requested, allowPartial, route, null);
+    }
+    
+    /**
+     * Reserves an Idempotency-Key without charging anything, for handlers that
+     * charge their quota themselves.
+     */
+    public RateLimitDecision reserveIdempotencyKey(String clientId, String idempotencyKey) {
+        return evaluate(List.of(), 0, false, IdempotencyService.redisKey(clientId, idempotencyKey), null);
+    }
+    
+    private RateLimitDecision consume(String clientId, int requested, boolean allowPartial,
+                                      RateLimitRoute route, String idempotencyKey) {
+        Limits limits = limitsOf(clientId, route);
+        if (limits == null) {
+            // no limits to check against, allow the request
+            return createAllowDecision(List.of(), requested);
+        }
+        // SOFT mode: nothing to wait for, counted in the background
+        if (!allowPartial && idempotencyKey == null && canCountLocally(limits)) {
+            return softLimitCounter.count(limits.getDimensions(), requested);
+        }
+        String redisIdempotencyKey = idempotencyKey != null ? IdempotencyService.redisKey(clientId, idempotencyKey) : null;
+        if (limits.isResolvedInRedis()) {
+            return evaluateResolved(clientId, limits.getCounters(), limits.getDimensions(), requested, allowPartial, redisIdempotencyKey);
+        }
+        RateLimitDecision decision = evaluate(limits.getDimensions(), requested, allowPartial, redisIdempotencyKey, clientId);
+        decision.setShaped(limits.isShaped());
+        return decision;
+    }
+    
+    /**
+     * Checks a batch of independent requests, each one as
+     * {@link #checkLimits(String, int, RateLimitRoute, String)} would without an
+     * Idempotency-Key, with all their script calls pipelined into a single
+     * round trip. The decisions come back in the order of the checks.
+     */
+    public List<RateLimitDecision> checkLimits(List<LimitCheck> checks) {
+        prefetchShortIds(checks);
+        List<RateLimitDecision> decisions = new ArrayList<>(checks.size());
+        List<Integer> evaluated = new ArrayList<>(checks.size());
+        List<Limits> evaluatedLimits = new ArrayList<>(checks.size());
+        List<ScriptCall> calls = new ArrayList<>(checks.size());
+        for (LimitCheck check : checks) {
+            Limits limits = limitsOf(check.getClientId(), check.getRoute());
+            if (limits == null) {
+                decisions.add(createAllowDecision(List.of(), check.getCost()));
+            } else if (canCountLocally(limits)) {
+                decisions.add(softLimitCounter.count(limits.getDimensions(), check.getCost()));
+            } else {
+                // filled in once the pipeline returns
+                decisions.add(null);
+                evaluated.add(decisions.size() - 1);
+                evaluatedLimits.add(limits);
+                calls.add(limits.isResolvedInRedis()
+                    ? resolvingCall(check.getClientId(), limits.getCounters(), limits.getDimensions(), check.getCost(), false, null)
+                    : scriptCall(limits.getDimensions(), check.getCost(), false, null, check.getClientId()));
+            }
+        }
+        if (calls.isEmpty()) {
+            return decisions;
+        }
+        
+        List<Object> results;
         try {
-            RateLimitConfig config = configService.getConfigOrDefault(clientId);
-            
-            String key = TIME_WINDOW_PREFIX + clientId;
-            int limit = config.getTimeWindowRequests();
-            int window = config.getTimeWindowSeconds();
-            
-            DefaultRedisScript<List> script = new DefaultRedisScript<>();
-            script.setScriptText(TIME_WINDOW_SCRIPT);
-            script.setResultType(List.class);
-            
-            @SuppressWarnings("unchecked")
-            List<Long> result = redisTemplate.execute(script, 
-                Collections.singletonList(key), 
-                String.valueOf(limit), 
-                String.valueOf(window));
-            
-            if (result == null || result.isEmpty()) {
-                log.warn("Redis script returned null or empty result for client {}", clientId);
-                return createAllowResult(limit, config.getThrottlingMode());
+            results = executePipelined(calls);
+        } catch (Exception e) {
+            log.error("Error checking a batch of {} rate limits: {}", calls.size(), e.getMessage(), e);
+            results = null;
+        }
+        for (int i = 0; i < evaluated.size(); i++) {
+            int index = evaluated.get(i);
+            Limits limits = evaluatedLimits.get(i);
+            List<RateLimitDimension> dimensions = limits.getDimensions();
+            int cost = checks.get(index).getCost();
+            RateLimitDecision decision;
+            if (results == null) {
+                // allow the requests if Redis is unavailable
+                decision = createAllowDecision(dimensions, cost);
+            } else if (limits.isResolvedInRedis()) {
+                decision = decodeResolved(results.get(i), limits.getCounters(), dimensions, cost, calls.get(i).getKeys());
+            } else {
+                decision = decode(results.get(i), dimensions, cost, calls.get(i).getKeys());
+                decision.setShaped(limits.isShaped());
             }
-            
-            long current = result.get(0);
-            boolean allowed = current <= limit;
-            
-            return RateLimitResult.builder()
-                .allowed(allowed)
-                .currentRequests(current)
-                .limit(limit)
-                .remainingRequests(Math.max(0, limit - current))
-                .throttlingMode(config.getThrottlingMode())
-                .build();
+            decisions.set(index, decision);
+        }
+        return decisions;
+    }
+    
+    // one round trip for the short ids the batch needs in the compact layout, instead of one per client
+    private void prefetchShortIds(List<LimitCheck> checks) {
+        if (!clientKeys.isEnabled()) {
+            return;
+        }
+        try {
+            clientKeys.prefetch(checks.stream().map(LimitCheck::getClientId).toList());
         } catch (Exception e) {
-            log.error("Error checking time window limit for client {}: {}", clientId, e.getMessage(), e);
-            // allow request if Redis/database is unavailable
+            // each check tries again, and fails open
+            log.error("Error looking up the short ids of a batch of {} clients: {}", checks.size(), e.getMessage(), e);
+        }
+    }
+    
+    // the counters a request of the client on the route is checked against, null if they cannot be loaded
+    private Limits limitsOf(String clientId, RateLimitRoute route) {
+        if (configMirror.isEnabled()) {
+            return resolvedLimitsOf(clientId, route);
+        }
+        try {
             RateLimitConfig config = configService.getConfigOrDefault(clientId);
-            return createAllowResult(config.getTimeWindowRequests(), config.getThrottlingMode());
+            ClientKeys.Counters counters = clientKeys.of(clientId);
+            boolean shaped = config.getThrottlingMode() == RateLimitConfig.ThrottlingMode.SHAPE;
+            SystemLimitConfig systemConfig = systemLimitConfigService.getConfigOrDefault();
+            List<RateLimitPolicy> policies = policyService.getPolicies(clientId, route);
+            List<RateLimitDimension> dimensions = new ArrayList<>(6 + config.getWindows().size() + policies.size());
+            RateLimitDimension global = globalDimension(systemConfig);
+            dimensions.add(global);
+            if (fairShare.isEnabled()) {
+                // the client's slice of the global budget, see GlobalFairShare
+                dimensions.add(fairShare.dimension(clientId, global.getLimit()));
+            }
+            dimensions.addAll(timeWindowDimensions(counters, config));
+            dimensions.add(monthlyDimension(counters, config));
+            for (RateLimitPolicy policy : policies) {
+                dimensions.add(policyDimension(policy, isSoft(config)));
+            }
+            // the pool shared with the other clients of the tenant, resolved from memory
+            dimensions.addAll(tenantDimensions(tenantService.getTenantOfClient(clientId)));
+            return new Limits(dimensions, shaped, false, counters);
+        } catch (Exception e) {
+            log.error("Error loading rate limit configs for client {}: {}", clientId, e.getMessage(), e);
+            return null;
         }
     }
     
-    private RateLimitResult createAllowResult(int limit, RateLimitConfig.ThrottlingMode mode) {
-        return RateLimitResult.builder()
-            .allowed(true)
-            .currentRequests(0)
-            .limit(limit)
-            .remainingRequests(limit)
-            .throttlingMode(mode)
-            .build();
+    // only the counters the resolving script cannot find in redis itself, see RedisConfigMirror
+    private Limits resolvedLimitsOf(String clientId, RateLimitRoute route) {
+        ClientKeys.Counters counters;
+        try {
+            counters = clientKeys.of(clientId);
+        } catch (Exception e) {
+            log.error("Error looking up the short id of client {}: {}", clientId, e.getMessage(), e);
+            return null;
+        }
+        List<RateLimitPolicy> policies = policyService.getPolicies(clientId, route);
+        List<RateLimitDimension> dimensions = new ArrayList<>(3 + policies.size());
+        if (fairShare.isEnabled()) {
+            // the script caps it at the global limit
+            dimensions.add(fairShare.dimension(clientId, Long.MAX_VALUE));
+        }
+        for (RateLimitPolicy policy : policies) {
+            // soft or not as the client's mode in redis says
+            dimensions.add(policyDimension(policy, false));
+        }
+        dimensions.addAll(tenantDimensions(tenantService.getTenantOfClient(clientId)));
+        return new Limits(dimensions, false, true, counters);
     }
     
-    public RateLimitResult checkMonthlyLimit(String clientId) {
+    // whether nothing but local counting is needed, never the case while the mode is only known to redis
+    private boolean canCountLocally(Limits limits) {
+        return !limits.isResolvedInRedis() && softLimitCounter.canCount(limits.getDimensions());
+    }
+    
+    /**
+     * Returns units that were charged but not used (e.g. the work could not be
+     * queued) to the client's time window and monthly counters. The global
+     * per-second counter is left alone, its bucket has usually rolled over.
+     */
+    public void refund(String clientId, long units) {
+        refund(clientId, null, units);
+    }
+    
+    // same, also giving the units back to the client's policies for the route
+    public void refund(String clientId, RateLimitRoute route, long units) {
+        if (units <= 0) {
+            return;
+        }
         try {
             RateLimitConfig config = configService.getConfigOrDefault(clientId);
-            
-            String key = MONTHLY_PREFIX + clientId + ":" + getCurrentMonthKey();
-            int limit = config.getMonthlyRequests();
-            
-            DefaultRedisScript<List> script = new DefaultRedisScript<>();
-            script.setScriptText(MONTHLY_SCRIPT);
-            script.setResultType(List.class);
-            
-            long now = Instant.now().getEpochSecond();
-            long monthStart = getMonthStartTimestamp();
-            long secondsUntilMonthEnd = getSecondsUntilMonthEnd();
-            
-            @SuppressWarnings("unchecked")
-            List<Long> result = redisTemplate.execute(script, 
-                Collections.singletonList(key), 
-                String.valueOf(limit),
-                String.valueOf(now),
-                String.valueOf(monthStart),
-                String.valueOf(secondsUntilMonthEnd));
-            
-            if (result == null || result.isEmpty()) {
-                log.warn("Redis script returned null or empty result for monthly limit, client {}", clientId);
-                return createAllowResult(limit, config.getThrottlingMode());
+            ClientKeys.Counters counters = clientKeys.of(clientId);
+            List<RateLimitDimension> dimensions = new ArrayList<>(timeWindowDimensions(counters, config));
+            dimensions.add(monthlyDimension(counters, config));
+            for (RateLimitPolicy policy : policyService.getPolicies(clientId, route)) {
+                dimensions.add(policyDimension(policy, false));
             }
-            
-            long current = result.get(0);
-            boolean allowed = current <= limit;
-            
-            return RateLimitResult.builder()
-                .allowed(allowed)
-                .currentRequests(current)
-                .limit(limit)
-                .remainingRequests(Math.max(0, limit - current))
-                .throttlingMode(config.getThrottlingMode())
-                .build();
+            dimensions.addAll(tenantDimensions(tenantService.getTenantOfClient(clientId)));
+            redisTemplate.execute(REFUND, QuotaScript.keys(dimensions), (Object[]) QuotaScript.refundArgs(dimensions, units));
         } catch (Exception e) {
-            log.error("Error checking monthly limit for client {}: {}", clientId, e.getMessage(), e);
-            // allow request if Redis/database is unavailable
-            RateLimitConfig config = configService.getConfigOrDefault(clientId);
-            return createAllowResult(config.getMonthlyRequests(), config.getThrottlingMode());
+            log.error("Error refunding {} units to client {}: {}", units, clientId, e.getMessage(), e);
         }
     }
     
+    public RateLimitResult checkTimeWindowLimit(String clientId) {
+        return checkTimeWindowLimit(clientId, 1);
+    }
+    
+    // checks every window of the client, returns the tightest one
+    public RateLimitResult checkTimeWindowLimit(String clientId, int cost) {
+        RateLimitConfig config = configService.getConfigOrDefault(clientId);
+        return evaluate(timeWindowDimensions(clientKeys.of(clientId), config), cost, false).getTightestResult(RateLimitDimension.TIME_WINDOW);
+    }
+    
+    public RateLimitResult checkMonthlyLimit(String clientId) {
+        return checkMonthlyLimit(clientId, 1);
+    }
+    
+    public RateLimitResult checkMonthlyLimit(String clientId, int cost) {
+        RateLimitConfig config = configService.getConfigOrDefault(clientId);
+        return evaluate(List.of(monthlyDimension(clientKeys.of(clientId), config)), cost, false).getResults().get(0);
+    }
+    
     public RateLimitResult checkGlobalLimit() {
+        return checkGlobalLimit(1);
+    }
+    
+    public RateLimitResult checkGlobalLimit(int cost) {
+        SystemLimitConfig config = systemLimitConfigService.getConfigOrDefault();
+        return evaluate(List.of(globalDimension(config)), cost, false).getResults().get(0);
+    }
+    
+    RateLimitDecision evaluate(List<RateLimitDimension> dimensions, int requested, boolean allowPartial) {
+        return evaluate(dimensions, requested, allowPartial, null, null);
+    }
+    
+    RateLimitDecision evaluate(List<RateLimitDimension> dimensions, int requested, boolean allowPartial,
+                               String idempotencyKey, String clientId) {
         try {
-            SystemLimitConfig config = systemLimitConfigService.getConfigOrDefault();
-            
-            String key = GLOBAL_PREFIX + "second:" + getCurrentSecond();
-            int limit = config.getGlobalRequestsPerSecond();
-            
-            DefaultRedisScript<List> script = new DefaultRedisScript<>();
-            script.setScriptText(GLOBAL_SCRIPT);
-            script.setResultType(List.class);
-            
-            @SuppressWarnings("unchecked")
-            List<Long> result = redisTemplate.execute(script, 
-                Collections.singletonList(key), 
-                String.valueOf(limit));
-            
-            if (result == null || result.isEmpty()) {
-                log.warn("Redis script returned null or empty result for global limit");
-                return createAllowResult(limit, RateLimitConfig.ThrottlingMode.HARD);
+            ScriptCall call = scriptCall(dimensions, requested, allowPartial, idempotencyKey, clientId);
+            List<?> result = redisTemplate.execute(QUOTA, call.getKeys(), (Object[]) call.getArgs());
+            return decode(result, dimensions, requested, call.getKeys());
+        } catch (Exception e) {
+            log.error("Error checking rate limits {}: {}", dimensions, e.getMessage(), e);
+            // allow request if Redis is unavailable
+            return createAllowDecision(dimensions, requested);
+        }
+    }
+    
+    /**
+     * Like {@link #evaluate(List, int, boolean, String, String)} with the client's
+     * own limits and mode resolved by the script from the mirrored configs. A
+     * redis that lost them gets them again and the check is retried once.
+     */
+    private RateLimitDecision evaluateResolved(String clientId, ClientKeys.Counters counters, List<RateLimitDimension> dimensions,
+                                               int requested, boolean allowPartial, String idempotencyKey) {
+        try {
+            ScriptCall call = resolvingCall(clientId, counters, dimensions, requested, allowPartial, idempotencyKey);
+            List<?> result;
+            try {
+                result = redisTemplate.execute(RESOLVING, call.getKeys(), (Object[]) call.getArgs());
+            } catch (RuntimeException e) {
+                if (!isRedisError(e, NO_CONFIG)) {
+                    throw e;
+                }
+                configMirror.resync();
+                result = redisTemplate.execute(RESOLVING, call.getKeys(), (Object[]) call.getArgs());
             }
-            
-            long current = result.get(0);
-            boolean allowed = current <= limit;
-            
-            return RateLimitResult.builder()
-                .allowed(allowed)
-                .currentRequests(current)
-                .limit(limit)
-                .remainingRequests(Math.max(0, limit - current))
-                .throttlingMode(RateLimitConfig.ThrottlingMode.HARD)
-                .build();
+            return decodeResolved(result, counters, dimensions, requested, call.getKeys());
         } catch (Exception e) {
-            log.error("Error checking global limit: {}", e.getMessage(), e);
-            // allow request if Redis/database is unavailable
-            SystemLimitConfig config = systemLimitConfigService.getConfigOrDefault();
-            return createAllowResult(config.getGlobalRequestsPerSecond(), RateLimitConfig.ThrottlingMode.HARD);
+            log.error("Error checking rate limits of client {} resolved in redis: {}", clientId, e.getMessage(), e);
+            return createAllowDecision(dimensions, requested);
         }
     }
     
-    private String getCurrentMonthKey() {
-        LocalDate now = LocalDate.now();
-        return now.getYear() + "-" + String.format("%02d", now.getMonthValue());
+    private ScriptCall resolvingCall(String clientId, ClientKeys.Counters counters, List<RateLimitDimension> dimensions,
+                                     int requested, boolean allowPartial, String idempotencyKey) {
+        List<String> keys = RedisConfigMirror.keys(clientId, counters, dimensions);
+        // the adaptive limit lives on this instance, the configured one in redis
+        long globalOverride = adaptiveGlobalLimit.isEnabled() ? systemLimitConfigService.getEffectiveGlobalRequestsPerSecond() : 0;
+        String[] args = RedisConfigMirror.args(dimensions, requested, allowPartial,
+            idempotencyKey != null ? idempotencyService.getPendingTtlSeconds() : 0, clientId,
+            globalOverride, Math.max(1, getSecondsUntilMonthEnd()), counters.getMonthlyField());
+        if (QuotaScript.hasFairShare(args)) {
+            keys.addAll(fairShare.bookkeepingKeys());
+        }
+        if (idempotencyKey != null) {
+            keys.add(idempotencyKey);
+        }
+        return new ScriptCall(RESOLVING, keys, args);
+    }
+    
+    private ScriptCall scriptCall(List<RateLimitDimension> dimensions, int requested, boolean allowPartial,
+                                  String idempotencyKey, String clientId) {
+        List<String> keys = QuotaScript.keys(dimensions);
+        String[] args = QuotaScript.args(dimensions, requested, allowPartial,
+            idempotencyKey != null ? idempotencyService.getPendingTtlSeconds() : 0, clientId);
+        if (QuotaScript.hasFairShare(args)) {
+            keys.addAll(fairShare.bookkeepingKeys());
+        }
+        if (idempotencyKey != null) {
+            keys.add(idempotencyKey);
+        }
+        return new ScriptCall(QUOTA, keys, args);
+    }
+    
+    private RateLimitDecision decode(Object reply, List<RateLimitDimension> dimensions, int requested, List<String> keys) {
+        RateLimitDecision previous = previousDecision(reply, requested);
+        if (previous != null) {
+            return previous;
+        }
+        
+        CounterReply counters;
+        try {
+            counters = QuotaScript.parse(reply, dimensions.size());
+        } catch (IllegalStateException e) {
+            log.warn("Redis script returned an unexpected result for {}: {}", keys, reply);
+            return createAllowDecision(dimensions, requested);
+        }
+        return decide(dimensions, requested, counters);
+    }
+    
+    private RateLimitDecision decodeResolved(Object reply, ClientKeys.Counters counters, List<RateLimitDimension> dimensions,
+                                             int requested, List<String> keys) {
+        RateLimitDecision previous = previousDecision(reply, requested);
+        if (previous != null) {
+            return previous;
+        }
+        
+        RedisConfigMirror.Resolved resolved;
+        try {
+            resolved = RedisConfigMirror.parse(reply, counters, dimensions);
+        } catch (IllegalStateException | ClassCastException e) {
+            log.warn("Redis script returned an unexpected result for {}: {}", keys, reply);
+            return createAllowDecision(dimensions, requested);
+        }
+        RateLimitDecision decision = decide(resolved.getDimensions(), requested, resolved.getCounters());
+        decision.setShaped(resolved.isShaped());
+        return decision;
+    }
+    
+    // idempotency key already used: nothing was charged. null for any other reply
+    private static RateLimitDecision previousDecision(Object reply, int requested) {
+        IdempotentResponse previous = QuotaScript.previousResponse(reply);
+        if (previous == null) {
+            return null;
+        }
+        return RateLimitDecision.builder()
+            .requested(requested)
+            .granted(0)
+            .results(List.of())
+            .previousResponse(previous)
+            .build();
+    }
+    
+    private RateLimitDecision decide(List<RateLimitDimension> dimensions, int requested, CounterReply counters) {
+        for (int i = 0; i < dimensions.size(); i++) {
+            RateLimitDimension dimension = dimensions.get(i);
+            if (RateLimitDimension.GLOBAL.equals(dimension.getName())) {
+                // keeps the load shedder's view of the global budget current, for free
+                loadShedder.observeGlobal(counters.getCounts()[i], dimension.getLimit());
+            }
+        }
+        return RateLimiter.decide(dimensions, requested, counters);
+    }
+    
+    // the script calls as EVALSHA commands of one pipeline, loading the scripts first if redis lost them
+    private List<Object> executePipelined(List<ScriptCall> calls) {
+        try {
+            return executePipelinedOnce(calls);
+        } catch (RuntimeException e) {
+            if (!isRedisError(e, NO_CONFIG)) {
+                throw e;
+            }
+            configMirror.resync();
+            return executePipelinedOnce(calls);
+        }
+    }
+    
+    private List<Object> executePipelinedOnce(List<ScriptCall> calls) {
+        return redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            // spring's jedis connection refuses scripts in a pipeline, the native one does not
+            Jedis jedis = (Jedis) connection.getNativeConnection();
+            List<Object> results = evalShaPipelined(jedis, calls);
+            if (results == null) {
+                calls.stream().map(ScriptCall::getScript).distinct()
+                    .forEach(script -> jedis.scriptLoad(script.getScriptAsString()));
+                results = evalShaPipelined(jedis, calls);
+            }
+            return results;
+        });
+    }
+    
+    // null when redis does not know the script
+    private static List<Object> evalShaPipelined(Jedis jedis, List<ScriptCall> calls) {
+        List<Response<Object>> responses = new ArrayList<>(calls.size());
+        Pipeline pipeline = jedis.pipelined();
+        for (ScriptCall call : calls) {
+            responses.add(pipeline.evalsha(call.getScript().getSha1(), call.getKeys(), Arrays.asList(call.getArgs())));
+        }
+        pipeline.sync();
+        List<Object> results = new ArrayList<>(responses.size());
+        for (Response<Object> response : responses) {
+            try {
+                results.add(response.get());
+            } catch (RuntimeException e) {
+                if (isRedisError(e, "NOSCRIPT")) {
+                    return null;
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+    
+    private static boolean isRedisError(Throwable e, String error) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(error)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private RateLimitDecision createAllowDecision(List<RateLimitDimension> dimensions, int requested) {
+        return RateLimiter.allowAll(dimensions, requested);
+    }
+    
+    private RateLimitDimension globalDimension(SystemLimitConfig config) {
+        return new RateLimitDimension(RateLimitDimension.GLOBAL, globalKey(),
+            systemLimitConfigService.getEffectiveGlobalRequestsPerSecond(config), 1, false);
+    }
+    
+    // the main window first, then the extra ones, all reported as TIME_WINDOW
+    private List<RateLimitDimension> timeWindowDimensions(ClientKeys.Counters counters, RateLimitConfig config) {
+        List<RateLimitDimension> dimensions = new ArrayList<>(1 + config.getWindows().size());
+        dimensions.add(new RateLimitDimension(RateLimitDimension.TIME_WINDOW, counters.getTimeWindowKey(),
+            config.getTimeWindowRequests(), config.getTimeWindowSeconds(), isSoft(config)));
+        for (RateLimitWindow window : config.getWindows()) {
+            dimensions.add(new RateLimitDimension(RateLimitDimension.TIME_WINDOW, counters.timeWindowKey(window.getWindowSeconds()),
+                window.getRequests(), window.getWindowSeconds(), isSoft(config)));
+        }
+        return dimensions;
+    }
+    
+    private RateLimitDimension monthlyDimension(ClientKeys.Counters counters, RateLimitConfig config) {
+        return new RateLimitDimension(RateLimitDimension.MONTHLY, counters.getMonthlyKey(),
+            config.getMonthlyRequests(), Math.max(1, getSecondsUntilMonthEnd()), isSoft(config), counters.getMonthlyField());
+    }
+    
+    private List<RateLimitDimension> tenantDimensions(Tenant tenant) {
+        if (tenant == null) {
+            return List.of();
+        }
+        boolean soft = tenant.getThrottlingMode() == RateLimitConfig.ThrottlingMode.SOFT;
+        List<RateLimitDimension> dimensions = new ArrayList<>(2);
+        if (tenant.getTimeWindowRequests() != null && tenant.getTimeWindowSeconds() != null) {
+            dimensions.add(new RateLimitDimension(RateLimitDimension.TENANT_TIME_WINDOW, TENANT_TIME_WINDOW_PREFIX + tenant.getTenantId(),
+                tenant.getTimeWindowRequests(), tenant.getTimeWindowSeconds(), soft));
+        }
+        if (tenant.getMonthlyRequests() != null) {
+            dimensions.add(new RateLimitDimension(RateLimitDimension.TENANT_MONTHLY,
+                TENANT_MONTHLY_PREFIX + tenant.getTenantId() + ":" + getCurrentMonthKey(),
+                tenant.getMonthlyRequests(), Math.max(1, getSecondsUntilMonthEnd()), soft));
+        }
+        return dimensions;
+    }
+    
+    private RateLimitDimension policyDimension(RateLimitPolicy policy, boolean soft) {
+        return new RateLimitDimension(policy.getRoute() != null ? RateLimitDimension.ROUTE : RateLimitDimension.CHANNEL,
+            policyKey(policy), policy.getRequests(), policy.getWindowSeconds(), soft);
+    }
+    
+    @lombok.Value
+    private static class Limits {
+        List<RateLimitDimension> dimensions;
+        // the client is in SHAPE mode
+        boolean shaped;
+        // the client's own limits and mode are left to the script, only the other counters are here
+        boolean resolvedInRedis;
+        // where the client's own counters are
+        ClientKeys.Counters counters;
+    }
+    
+    @lombok.Value
+    private static class ScriptCall {
+        @SuppressWarnings("rawtypes")
+        DefaultRedisScript<List> script;
+        List<String> keys;
+        String[] args;
     }
     
-    private long getMonthStartTimestamp() {
+    private static boolean isSoft(RateLimitConfig config) {
+        return config.getThrottlingMode() == RateLimitConfig.ThrottlingMode.SOFT;
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private static DefaultRedisScript<List> listScript(String text) {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptText(text);
+        script.setResultType(List.class);
+        return script;
+    }
+    
+    static String timeWindowKey(String clientId) {
+        return TIME_WINDOW_PREFIX + clientId;
+    }
+    
+    // extra windows are told apart by their size, see ClientKeys.Counters
+    static String timeWindowKey(String clientId, int windowSeconds) {
+        return TIME_WINDOW_PREFIX + clientId + ":" + windowSeconds + "s";
+    }
+    
+    static String monthlyKey(String clientId) {
+        return MONTHLY_PREFIX + clientId + ":" + getCurrentMonthKey();
+    }
+    
+    // pattern matching every client's monthly counter for the current month
+    static String monthlyKeyPattern() {
+        return MONTHLY_PREFIX + "*:" + getCurrentMonthKey();
+    }
+    
+    // reverse of monthlyKey(), clientId may itself contain ':'
+    static String clientIdFromMonthlyKey(String key) {
+        return key.substring(MONTHLY_PREFIX.length(), key.length() - getCurrentMonthKey().length() - 1);
+    }
+    
+    static String policyKey(RateLimitPolicy policy) {
+        return POLICY_PREFIX + policy.getClientId() + ":" + policy.getId();
+    }
+    
+    static String globalKey() {
+        return GLOBAL_PREFIX + "second:" + getCurrentSecond();
+    }
+    
+    static String getCurrentMonthKey() {
         LocalDate now = LocalDate.now();
-        LocalDate monthStart = now.withDayOfMonth(1);
-        return monthStart.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        return now.getYear() + "-" + String.format("%02d", now.getMonthValue());
     }
     
     private long getSecondsUntilMonthEnd() {
@@ -216,7 +628,7 @@ public class RateLimitService {
         return monthEndTimestamp - Instant.now().getEpochSecond();
     }
     
-    private String getCurrentSecond() {
+    private static String getCurrentSecond() {
         return String.valueOf(Instant.now().getEpochSecond());
     }
 }
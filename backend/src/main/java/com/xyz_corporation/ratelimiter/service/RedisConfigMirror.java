@@ -0,0 +1,411 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.core.CounterReply;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.model.SystemLimitConfig;
+import com.corporation.ratelimiter.redis.QuotaScript;
+import com.corporation.ratelimiter.repository.RateLimitConfigRepository;
+import com.corporation.ratelimiter.repository.SystemLimitConfigRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * With rate-limiter.configs.resolve-in-redis, the client and system limit
+ * configs are copied into redis hashes and the quota script reads a client's
+ * limits itself: a decision needs no config from this instance, and a change
+ * applies to every instance on its next request.
+ *
+ * The hashes are written on every change made through the services and
+ * fully resynced from the database at startup. A script call that finds the
+ * defaults hash missing (redis flushed or restarted empty) fails with
+ * NOCONFIG, which triggers a resync and one retry. The channel and route
+ * policies, tenants and fair share still come from this instance's memory
+ * and are passed along as usual.
+ *
+ * The script derives the keys of a client's extra windows from its time
+ * window key, as only redis knows which windows the client has, so it runs on
+ * a single redis node only; startup fails when redis is a cluster.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RedisConfigMirror {
+
+    private static final String CLIENT_PREFIX = "rate_limit:config:client:";
+    static final String DEFAULTS_KEY = "rate_limit:config:defaults";
+    static final String SYSTEM_KEY = "rate_limit:config:system";
+
+    // client hash fields, the defaults hash also has global. an empty value falls back to the default
+    private static final String TIME_WINDOW_REQUESTS = "tw_requests";
+    private static final String TIME_WINDOW_SECONDS = "tw_seconds";
+    private static final String MONTHLY = "monthly";
+    private static final String MODE = "mode";
+    // the extra windows as requests:seconds pairs, comma separated
+    private static final String WINDOWS = "windows";
+    private static final String GLOBAL = "global";
+
+    // passed as the soft flag of a counter that is soft when the client is in SOFT mode
+    static final String SOFT_FOLLOWS_CLIENT = "c";
+
+    // redis: QuotaScript.CHARGE with the client's own counters resolved from the hashes.
+    // KEYS[1] the client's config hash, KEYS[2] the defaults hash, KEYS[3] the system
+    // hash, KEYS[4] the global counter, KEYS[5] the client's time window counter (extra
+    // windows are KEYS[5]:<seconds>s, not passed in, see init), KEYS[6] its monthly
+    // counter, then the counters resolved here, the fair share bookkeeping keys and the idempotency key as for
+    // QuotaScript.TEXT. ARGV[1] to ARGV[5] as for QuotaScript.TEXT, the fair share index
+    // counting the counters resolved here only, ARGV[6] the global limit to use instead
+    // of the configured one (0 for none), ARGV[7] the monthly counter's ttl, ARGV[8] its
+    // hash field in KEYS[6] ('' when it is a key of its own, see ClientKeys), then a
+    // (limit, ttl, soft) triple per counter resolved here and optionally their hash
+    // fields. soft 'c' follows the client's mode; a fair share limit of 0 means the
+    // global limit, and it never exceeds it.
+    // returns {mode, r, limit1, ttl1, ..., limitr, ttlr} for the r counters resolved from
+    // the hashes (global, time windows, monthly) followed by QuotaScript.TEXT's reply
+    static final String SCRIPT =
+        "local requested = tonumber(ARGV[1]) " +
+        "local allowPartial = ARGV[2] == '1' " +
+        "local pendingTtl = tonumber(ARGV[3]) " +
+        "local clientId = ARGV[5] " +
+        "local fields = {'" + TIME_WINDOW_REQUESTS + "', '" + TIME_WINDOW_SECONDS + "', '" + MONTHLY + "', '"
+            + MODE + "', '" + WINDOWS + "', '" + GLOBAL + "'} " +
+        "local defaults = redis.call('HMGET', KEYS[2], unpack(fields)) " +
+        "if not defaults[6] then return redis.error_reply('NOCONFIG limits are not mirrored to redis') end " +
+        "local own = redis.call('HMGET', KEYS[1], unpack(fields)) " +
+        "local config = {} " +
+        "for i = 1, 5 do " +
+        "  if own[i] and own[i] ~= '' then config[fields[i]] = own[i] else config[fields[i]] = defaults[i] end " +
+        "end " +
+        "local soft = config." + MODE + " == 'SOFT' " +
+        "local global = tonumber(ARGV[6]) " +
+        "if global == 0 then global = tonumber(redis.call('HGET', KEYS[3], '" + GLOBAL + "') or defaults[6]) end " +
+        "local ckeys, climits, cttls, csoft, cfields = {KEYS[4], KEYS[5]}, {global, tonumber(config." + TIME_WINDOW_REQUESTS + ")}, " +
+        "  {1, tonumber(config." + TIME_WINDOW_SECONDS + ")}, {false, soft}, {false, false} " +
+        "for requests, seconds in string.gmatch(config." + WINDOWS + " or '', '(%d+):(%d+)') do " +
+        "  ckeys[#ckeys + 1] = KEYS[5] .. ':' .. seconds .. 's' " +
+        "  climits[#climits + 1] = tonumber(requests) " +
+        "  cttls[#cttls + 1] = tonumber(seconds) " +
+        "  csoft[#csoft + 1] = soft " +
+        "  cfields[#cfields + 1] = false " +
+        "end " +
+        "ckeys[#ckeys + 1] = KEYS[6] " +
+        "climits[#climits + 1] = tonumber(config." + MONTHLY + ") " +
+        "cttls[#cttls + 1] = tonumber(ARGV[7]) " +
+        "csoft[#csoft + 1] = soft " +
+        "cfields[#cfields + 1] = ARGV[8] ~= '' and ARGV[8] " +
+        "local resolved = #ckeys " +
+        "local m = #KEYS - 6 " +
+        "if pendingTtl > 0 then m = m - 1 end " +
+        "local fairIndex = tonumber(ARGV[4]) " +
+        "if fairIndex > 0 then " +
+        "  m = m - 3 " +
+        "  fairIndex = resolved + fairIndex " +
+        "end " +
+        "local fairKey = 6 + m + 1 " +
+        "for i = 1, m do " +
+        "  local base = 9 + (i - 1) * 3 " +
+        "  local field = ARGV[8 + m * 3 + i] " +
+        "  ckeys[resolved + i] = KEYS[6 + i] " +
+        "  climits[resolved + i] = tonumber(ARGV[base]) " +
+        "  cttls[resolved + i] = tonumber(ARGV[base + 1]) " +
+        "  csoft[resolved + i] = ARGV[base + 2] == '1' or (ARGV[base + 2] == '" + SOFT_FOLLOWS_CLIENT + "' and soft) " +
+        "  cfields[resolved + i] = field ~= nil and field ~= '' and field " +
+        "end " +
+        "if fairIndex > 0 and (climits[fairIndex] == 0 or climits[fairIndex] > global) then " +
+        "  climits[fairIndex] = global " +
+        "end " +
+        "local n = #ckeys " +
+        QuotaScript.CHARGE +
+        "local reply = {config." + MODE + ", resolved} " +
+        "for i = 1, resolved do " +
+        "  reply[#reply + 1] = climits[i] " +
+        "  reply[#reply + 1] = cttls[i] " +
+        "end " +
+        "for i = 1, #result do reply[#reply + 1] = result[i] end " +
+        "return reply";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RateLimitConfigRepository configRepository;
+    private final SystemLimitConfigRepository systemRepository;
+
+    @Getter
+    @Value("${rate-limiter.configs.resolve-in-redis:false}")
+    private boolean enabled;
+
+    @Value("${rate-limiter.default.time-window.requests:100}")
+    private int defaultTimeWindowRequests;
+
+    @Value("${rate-limiter.default.time-window.window-seconds:60}")
+    private int defaultTimeWindowSeconds;
+
+    @Value("${rate-limiter.default.monthly.requests:10000}")
+    private int defaultMonthlyRequests;
+
+    @Value("${rate-limiter.global.requests-per-second:1000}")
+    private int defaultGlobalRequestsPerSecond;
+
+    @Value("${rate-limiter.usage.batch-size:500}")
+    private int batchSize;
+
+    // a write failed, the next repair run resyncs everything
+    private volatile boolean stale;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        // the script touches keys it is not given (the extra windows) and keys of
+        // different slots, a cluster would reject it on every call
+        Boolean cluster = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection instanceof RedisClusterConnection);
+        if (Boolean.TRUE.equals(cluster)) {
+            throw new IllegalStateException("rate-limiter.configs.resolve-in-redis needs a single redis node, not a cluster");
+        }
+        resync();
+    }
+
+    public void write(RateLimitConfig config) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().putAll(clientKey(config.getClientId()), fields(config));
+        } catch (Exception e) {
+            stale = true;
+            log.error("Error mirroring the rate limit config of client {} to redis: {}", config.getClientId(), e.getMessage(), e);
+        }
+    }
+
+    public void delete(String clientId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.delete(clientKey(clientId));
+        } catch (Exception e) {
+            stale = true;
+            log.error("Error removing the mirrored rate limit config of client {}: {}", clientId, e.getMessage(), e);
+        }
+    }
+
+    public void writeSystem(SystemLimitConfig config) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().put(SYSTEM_KEY, GLOBAL, value(config.getGlobalRequestsPerSecond()));
+        } catch (Exception e) {
+            stale = true;
+            log.error("Error mirroring the system limit config to redis: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes every config from the database and removes the hashes of clients
+     * that no longer have one. The defaults go last, scripts running meanwhile
+     * keep failing with NOCONFIG until the client hashes are there.
+     */
+    public synchronized void resync() {
+        try {
+            List<RateLimitConfig> configs = configRepository.findAllWithWindowsBy();
+            Set<String> current = new HashSet<>();
+            for (RateLimitConfig config : configs) {
+                current.add(clientKey(config.getClientId()));
+            }
+            List<String> removed = new ArrayList<>();
+            ScanOptions options = ScanOptions.scanOptions().match(CLIENT_PREFIX + "*").count(batchSize).build();
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    String key = cursor.next();
+                    if (!current.contains(key)) {
+                        removed.add(key);
+                    }
+                }
+            }
+            Map<String, String> system = systemRepository.findById(1L)
+                .map(config -> Map.of(GLOBAL, value(config.getGlobalRequestsPerSecond())))
+                .orElse(Map.of());
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (RateLimitConfig config : configs) {
+                    connection.hashCommands().hMSet(bytes(clientKey(config.getClientId())), bytes(fields(config)));
+                }
+                for (String key : removed) {
+                    connection.keyCommands().del(bytes(key));
+                }
+                if (system.isEmpty()) {
+                    connection.keyCommands().del(bytes(SYSTEM_KEY));
+                } else {
+                    connection.hashCommands().hMSet(bytes(SYSTEM_KEY), bytes(system));
+                }
+                connection.hashCommands().hMSet(bytes(DEFAULTS_KEY), bytes(defaults()));
+                return null;
+            });
+            stale = false;
+            log.info("Mirrored {} rate limit configs to redis, removed {}", configs.size(), removed.size());
+        } catch (Exception e) {
+            stale = true;
+            log.error("Error mirroring the rate limit configs to redis: {}", e.getMessage(), e);
+        }
+    }
+
+    // catches up after failed writes
+    @Scheduled(fixedDelayString = "${rate-limiter.configs.refresh-ms:30000}", initialDelayString = "${rate-limiter.configs.refresh-ms:30000}")
+    public void repair() {
+        if (enabled && stale) {
+            resync();
+        }
+    }
+
+    static String clientKey(String clientId) {
+        return CLIENT_PREFIX + clientId;
+    }
+
+    /**
+     * The script's KEYS for a check of the client against its own limits plus
+     * the given ones, resolved here. The caller appends the fair share
+     * bookkeeping and idempotency keys.
+     */
+    static List<String> keys(String clientId, ClientKeys.Counters counters, List<RateLimitDimension> dimensions) {
+        List<String> keys = new ArrayList<>(10 + dimensions.size());
+        keys.add(clientKey(clientId));
+        keys.add(DEFAULTS_KEY);
+        keys.add(SYSTEM_KEY);
+        keys.add(RateLimitService.globalKey());
+        keys.add(counters.getTimeWindowKey());
+        keys.add(counters.getMonthlyKey());
+        keys.addAll(QuotaScript.keys(dimensions));
+        return keys;
+    }
+
+    /**
+     * The script's ARGV. Channel and route policies are soft when the client
+     * is in SOFT mode, as when resolved here.
+     */
+    static String[] args(List<RateLimitDimension> dimensions, int requested, boolean allowPartial,
+                         long pendingTtlSeconds, String clientId, long globalOverride, long monthlyTtlSeconds,
+                         String monthlyField) {
+        String[] plain = QuotaScript.args(dimensions, requested, allowPartial, pendingTtlSeconds, clientId);
+        String[] args = new String[plain.length + 3];
+        System.arraycopy(plain, 0, args, 0, 5);
+        args[5] = String.valueOf(globalOverride);
+        args[6] = String.valueOf(monthlyTtlSeconds);
+        args[7] = monthlyField != null ? monthlyField : "";
+        System.arraycopy(plain, 5, args, 8, plain.length - 5);
+        for (int i = 0; i < dimensions.size(); i++) {
+            if (isPolicy(dimensions.get(i))) {
+                args[10 + i * 3] = SOFT_FOLLOWS_CLIENT;
+            }
+        }
+        return args;
+    }
+    
+    /**
+     * Splits a script reply into the client's own dimensions as resolved in
+     * redis, followed by the given ones, and the counters of all of them.
+     *
+     * @throws IllegalStateException when the reply is not one of the script's
+     */
+    static Resolved parse(Object reply, ClientKeys.Counters clientCounters, List<RateLimitDimension> dimensions) {
+        if (!(reply instanceof List<?> result) || result.size() < 2) {
+            throw new IllegalStateException("Unexpected resolving quota script reply: " + reply);
+        }
+        String mode = result.get(0) instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : String.valueOf(result.get(0));
+        boolean soft = RateLimitConfig.ThrottlingMode.SOFT.name().equals(mode);
+        int resolved = (int) toLong(result.get(1));
+        if (resolved < 3 || result.size() < 2 + resolved * 2) {
+            throw new IllegalStateException("Unexpected resolving quota script reply: " + reply);
+        }
+        List<RateLimitDimension> all = new ArrayList<>(resolved + dimensions.size());
+        for (int i = 0; i < resolved; i++) {
+            long limit = toLong(result.get(2 + i * 2));
+            long ttl = toLong(result.get(3 + i * 2));
+            if (i == 0) {
+                all.add(new RateLimitDimension(RateLimitDimension.GLOBAL, RateLimitService.globalKey(), limit, 1, false));
+            } else if (i == resolved - 1) {
+                all.add(new RateLimitDimension(RateLimitDimension.MONTHLY, clientCounters.getMonthlyKey(), limit, ttl, soft,
+                    clientCounters.getMonthlyField()));
+            } else {
+                String key = i == 1 ? clientCounters.getTimeWindowKey() : clientCounters.timeWindowKey((int) ttl);
+                all.add(new RateLimitDimension(RateLimitDimension.TIME_WINDOW, key, limit, ttl, soft));
+            }
+        }
+        for (RateLimitDimension dimension : dimensions) {
+            all.add(isPolicy(dimension) && soft
+                ? new RateLimitDimension(dimension.getName(), dimension.getKey(), dimension.getLimit(), dimension.getTtlSeconds(), true)
+                : dimension);
+        }
+        CounterReply counters = QuotaScript.parse(result.subList(2 + resolved * 2, result.size()), all.size());
+        return new Resolved(all, counters, RateLimitConfig.ThrottlingMode.SHAPE.name().equals(mode));
+    }
+
+    private static boolean isPolicy(RateLimitDimension dimension) {
+        return RateLimitDimension.CHANNEL.equals(dimension.getName()) || RateLimitDimension.ROUTE.equals(dimension.getName());
+    }
+
+    private Map<String, String> fields(RateLimitConfig config) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(TIME_WINDOW_REQUESTS, value(config.getTimeWindowRequests()));
+        fields.put(TIME_WINDOW_SECONDS, value(config.getTimeWindowSeconds()));
+        fields.put(MONTHLY, value(config.getMonthlyRequests()));
+        fields.put(MODE, config.getThrottlingMode() != null ? config.getThrottlingMode().name() : "");
+        fields.put(WINDOWS, config.getWindows().stream()
+            .map(window -> window.getRequests() + ":" + window.getWindowSeconds())
+            .collect(Collectors.joining(",")));
+        return fields;
+    }
+
+    private Map<String, String> defaults() {
+        return Map.of(
+            TIME_WINDOW_REQUESTS, String.valueOf(defaultTimeWindowRequests),
+            TIME_WINDOW_SECONDS, String.valueOf(defaultTimeWindowSeconds),
+            MONTHLY, String.valueOf(defaultMonthlyRequests),
+            MODE, RateLimitConfig.ThrottlingMode.HARD.name(),
+            GLOBAL, String.valueOf(defaultGlobalRequestsPerSecond));
+    }
+
+    private static String value(Integer value) {
+        return value != null ? value.toString() : "";
+    }
+
+    private static long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<byte[], byte[]> bytes(Map<String, String> values) {
+        Map<byte[], byte[]> bytes = new HashMap<>();
+        values.forEach((field, value) -> bytes.put(bytes(field), bytes(value)));
+        return bytes;
+    }
+
+    @lombok.Value
+    static class Resolved {
+        // the client's own dimensions first, then the ones passed in
+        List<RateLimitDimension> dimensions;
+        CounterReply counters;
+        // the client is in SHAPE mode
+        boolean shaped;
+    }
+}
@@ -0,0 +1,209 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counting for requests nothing but the global limit can block, i.e. SOFT
+ * mode clients. Their units are added to a local table and the request goes
+ * on without waiting for redis; the table is flushed every
+ * rate-limiter.soft-counting.flush-ms in one script call, which also brings
+ * back the counts the warning headers are taken from. The global limit is
+ * enforced from the last global count seen on this instance, as for
+ * {@link LoadShedder}, so it may be overshot by up to one flush.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SoftLimitCounter {
+
+    // redis: adds ARGV[3i-2] units to KEYS[i], or to its hash field ARGV[3i] unless that
+    // is '', giving the key an ARGV[3i-1] second expiry if it has none.
+    // returns {count1, ttl1, count2, ttl2, ...}
+    static final String COUNT_SCRIPT =
+        "local result = {} " +
+        "for i = 1, #KEYS do " +
+        "  local count " +
+        "  if ARGV[i * 3] ~= '' then " +
+        "    count = redis.call('HINCRBY', KEYS[i], ARGV[i * 3], ARGV[i * 3 - 2]) " +
+        "  else " +
+        "    count = redis.call('INCRBY', KEYS[i], ARGV[i * 3 - 2]) " +
+        "  end " +
+        "  local ttl = redis.call('TTL', KEYS[i]) " +
+        "  if ttl == -1 then " +
+        "    ttl = tonumber(ARGV[i * 3 - 1]) " +
+        "    redis.call('EXPIRE', KEYS[i], ttl) " +
+        "  end " +
+        "  result[#result + 1] = count " +
+        "  result[#result + 1] = ttl " +
+        "end " +
+        "return result";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> COUNT = new DefaultRedisScript<>(COUNT_SCRIPT, List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final LoadShedder loadShedder;
+
+    @Value("${rate-limiter.soft-counting.enabled:true}")
+    private boolean enabled;
+
+    // counter -> units not flushed yet, see counterOf
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    // counter -> count redis returned on the last flush
+    private final Map<String, Known> known = new ConcurrentHashMap<>();
+
+    /**
+     * Whether a request against these dimensions can be counted here: only the
+     * global one may be hard, and there is nothing else (idempotency key, fair
+     * share) that needs the answer from redis first.
+     */
+    public boolean canCount(List<RateLimitDimension> dimensions) {
+        if (!enabled) {
+            return false;
+        }
+        for (RateLimitDimension dimension : dimensions) {
+            if (!dimension.isSoft() && !RateLimitDimension.GLOBAL.equals(dimension.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Charges the units locally and returns the decision from the last known
+     * counts plus what is still waiting to be flushed.
+     */
+    public RateLimitDecision count(List<RateLimitDimension> dimensions, int requested) {
+        boolean globalFull = loadShedder.getUtilization() >= 1;
+        List<RateLimitResult> results = new ArrayList<>(dimensions.size());
+        long now = System.currentTimeMillis();
+        for (RateLimitDimension dimension : dimensions) {
+            String counter = counterOf(dimension);
+            if (!globalFull) {
+                pending.merge(counter, new Pending(dimension, requested), Pending::plus);
+            }
+            Known last = known.get(counter);
+            boolean live = last != null && last.getExpiresAtMillis() > now;
+            Pending waiting = pending.get(counter);
+            long current = (live ? last.getCount() : 0) + (waiting != null ? waiting.getUnits() : 0);
+            if (globalFull) {
+                // a rejected request reports the count it would have reached
+                current += requested;
+            }
+            results.add(RateLimitResult.builder()
+                .dimension(dimension.getName())
+                .allowed(current <= dimension.getLimit())
+                .currentRequests(current)
+                .limit(dimension.getLimit())
+                .remainingRequests(Math.max(0, dimension.getLimit() - current))
+                .cost(requested)
+                .resetSeconds(live ? Math.max(1, (last.getExpiresAtMillis() - now) / 1000) : dimension.getTtlSeconds())
+                .soft(dimension.isSoft())
+                .build());
+        }
+        return RateLimitDecision.builder()
+            .requested(requested)
+            .granted(globalFull ? 0 : requested)
+            .results(results)
+            .build();
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limiter.soft-counting.flush-ms:50}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            expireKnown();
+            return;
+        }
+        List<String> counters = new ArrayList<>(pending.size());
+        List<Pending> drained = new ArrayList<>(pending.size());
+        long drainedAt = System.currentTimeMillis();
+        for (String counter : pending.keySet()) {
+            // removal is atomic, units merged in after it are flushed next time
+            Pending units = pending.remove(counter);
+            if (units != null && units.getUnits() > 0) {
+                counters.add(counter);
+                drained.add(units);
+                // counted as known until redis answers, so they never drop out of the headers
+                known.merge(counter, new Known(units.getUnits(), drainedAt + units.getDimension().getTtlSeconds() * 1000),
+                    (last, added) -> last.getExpiresAtMillis() <= drainedAt ? added
+                        : new Known(last.getCount() + added.getCount(), last.getExpiresAtMillis()));
+            }
+        }
+        if (counters.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(drained.size());
+        String[] args = new String[drained.size() * 3];
+        for (int i = 0; i < drained.size(); i++) {
+            RateLimitDimension dimension = drained.get(i).getDimension();
+            keys.add(dimension.getKey());
+            args[i * 3] = String.valueOf(drained.get(i).getUnits());
+            args[i * 3 + 1] = String.valueOf(dimension.getTtlSeconds());
+            args[i * 3 + 2] = dimension.getField() != null ? dimension.getField() : "";
+        }
+        try {
+            List<?> result = redisTemplate.execute(COUNT, keys, (Object[]) args);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < keys.size(); i++) {
+                long count = ((Number) result.get(i * 2)).longValue();
+                long ttl = ((Number) result.get(i * 2 + 1)).longValue();
+                known.put(counters.get(i), new Known(count, now + ttl * 1000));
+                RateLimitDimension dimension = drained.get(i).getDimension();
+                // a flush that ran into the next second says nothing about it
+                if (RateLimitDimension.GLOBAL.equals(dimension.getName()) && keys.get(i).equals(RateLimitService.globalKey())) {
+                    loadShedder.observeGlobal(count, dimension.getLimit());
+                }
+            }
+        } catch (Exception e) {
+            // dropped rather than kept, a redis outage must not grow the table without bound
+            log.error("Error flushing {} soft counters: {}", keys.size(), e.getMessage(), e);
+        }
+        expireKnown();
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    // the key, or the key and hash field, of the dimension's counter
+    private static String counterOf(RateLimitDimension dimension) {
+        return dimension.getField() != null ? dimension.getKey() + '\0' + dimension.getField() : dimension.getKey();
+    }
+
+    private void expireKnown() {
+        long now = System.currentTimeMillis();
+        known.values().removeIf(count -> count.getExpiresAtMillis() <= now);
+    }
+
+    @lombok.Value
+    private static class Pending {
+        RateLimitDimension dimension;
+        long units;
+
+        Pending plus(Pending other) {
+            return new Pending(dimension, units + other.units);
+        }
+    }
+
+    @lombok.Value
+    private static class Known {
+        long count;
+        long expiresAtMillis;
+    }
+}
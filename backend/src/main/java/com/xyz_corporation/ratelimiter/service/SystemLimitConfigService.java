@@ -16,6 +16,8 @@ import java.util.Optional;
 public class SystemLimitConfigService {
     
     private final SystemLimitConfigRepository repository;
+    private final AdaptiveGlobalLimit adaptiveGlobalLimit;
+    private final RedisConfigMirror configMirror;
     
     @Value("${rate-limiter.global.requests-per-second:1000}")
     private int defaultGlobalRequestsPerSecond;
@@ -42,6 +44,18 @@ public class SystemLimitConfigService {
         }
     }
     
+    /**
+     * The global limit being enforced: the configured one, or where the
+     * adaptive limit currently stands when that is enabled.
+     */
+    public int getEffectiveGlobalRequestsPerSecond() {
+        return getEffectiveGlobalRequestsPerSecond(getConfigOrDefault());
+    }
+    
+    public int getEffectiveGlobalRequestsPerSecond(SystemLimitConfig config) {
+        return adaptiveGlobalLimit.getEffectiveLimit(config.getGlobalRequestsPerSecond());
+    }
+    
     @Transactional
     public SystemLimitConfig updateConfig(SystemLimitConfig updatedConfig) {
         SystemLimitConfig existing = repository.findById(1L)
@@ -52,7 +66,11 @@ public class SystemLimitConfigService {
             });
         
         existing.setGlobalRequestsPerSecond(updatedConfig.getGlobalRequestsPerSecond());
-        return repository.save(existing);
+        SystemLimitConfig saved = repository.save(existing);
+        configMirror.writeSystem(saved);
+        // the adaptive limit starts over from the new value
+        adaptiveGlobalLimit.reset(saved.getGlobalRequestsPerSecond());
+        return saved;
     }
 }
 
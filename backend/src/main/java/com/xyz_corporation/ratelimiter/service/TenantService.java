@@ -0,0 +1,115 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.model.Client;
+import com.corporation.ratelimiter.model.Tenant;
+import com.corporation.ratelimiter.repository.ClientRepository;
+import com.corporation.ratelimiter.repository.TenantRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tenants and the client -> tenant mapping. The mapping is held in memory,
+ * rebuilt on every change made through this instance and refreshed
+ * periodically for the others, so checking the pooled limits costs no
+ * database lookup on the request path.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TenantService {
+    
+    private final TenantRepository repository;
+    private final ClientRepository clientRepository;
+    
+    // clientId -> tenant, swapped as a whole
+    private volatile Map<String, Tenant> tenantsByClient = Map.of();
+    
+    @PostConstruct
+    void init() {
+        refresh();
+    }
+    
+    @Scheduled(fixedDelayString = "${rate-limiter.tenants.refresh-ms:30000}", initialDelayString = "${rate-limiter.tenants.refresh-ms:30000}")
+    public void refresh() {
+        try {
+            Map<String, Tenant> tenants = new HashMap<>();
+            for (Tenant tenant : repository.findAll()) {
+                tenants.put(tenant.getTenantId(), tenant);
+            }
+            Map<String, Tenant> byClient = new HashMap<>();
+            for (Client client : clientRepository.findByTenantIdIsNotNull()) {
+                Tenant tenant = tenants.get(client.getTenantId());
+                if (tenant != null) {
+                    byClient.put(client.getClientId(), tenant);
+                }
+            }
+            tenantsByClient = byClient;
+        } catch (Exception e) {
+            log.error("Error loading tenants: {}", e.getMessage(), e);
+        }
+    }
+    
+    // the tenant whose pool the client draws from, null if it has none
+    public Tenant getTenantOfClient(String clientId) {
+        return tenantsByClient.get(clientId);
+    }
+    
+    public boolean exists(String tenantId) {
+        return repository.existsByTenantId(tenantId);
+    }
+    
+    public Tenant createTenant(Tenant tenant) {
+        if (repository.existsByTenantId(tenant.getTenantId())) {
+            throw new IllegalArgumentException("Tenant with ID already exists: " + tenant.getTenantId());
+        }
+        Tenant saved = repository.save(tenant);
+        refresh();
+        return saved;
+    }
+    
+    public Optional<Tenant> getTenant(String tenantId) {
+        return repository.findByTenantId(tenantId);
+    }
+    
+    public List<Tenant> getAllTenants() {
+        return repository.findAll();
+    }
+    
+    public List<Client> getClients(String tenantId) {
+        return clientRepository.findByTenantId(tenantId);
+    }
+    
+    @Transactional
+    public Tenant updateTenant(String tenantId, Tenant updatedTenant) {
+        Tenant existing = repository.findByTenantId(tenantId)
+            .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
+        
+        existing.setName(updatedTenant.getName());
+        existing.setTimeWindowRequests(updatedTenant.getTimeWindowRequests());
+        existing.setTimeWindowSeconds(updatedTenant.getTimeWindowSeconds());
+        existing.setMonthlyRequests(updatedTenant.getMonthlyRequests());
+        existing.setThrottlingMode(updatedTenant.getThrottlingMode());
+        
+        Tenant saved = repository.save(existing);
+        refresh();
+        return saved;
+    }
+    
+    public void deleteTenant(String tenantId) {
+        if (!clientRepository.findByTenantId(tenantId).isEmpty()) {
+            throw new IllegalArgumentException("Tenant still has clients: " + tenantId);
+        }
+        repository.findByTenantId(tenantId)
+            .ifPresent(repository::delete);
+        refresh();
+    }
+}
@@ -0,0 +1,171 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.dto.ClientUsageDTO;
+import com.corporation.ratelimiter.dto.UsageCounterDTO;
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads the live limiter counters back out of Redis. Every lookup is a single
+ * pipelined round trip (GET or HGET per counter, TTL per key), the bulk listing
+ * walks the keyspace with SCAN so it never blocks Redis or buffers all clients.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UsageService {
+    
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RateLimitConfigService configService;
+    private final SystemLimitConfigService systemLimitConfigService;
+    private final ClientKeys clientKeys;
+    
+    @Value("${rate-limiter.usage.batch-size:500}")
+    private int batchSize;
+    
+    public ClientUsageDTO getClientUsage(String clientId) {
+        RateLimitConfig config = configService.getConfigOrDefault(clientId);
+        // null for a client the compact layout has never counted
+        ClientKeys.Counters counters = clientKeys.existing(clientId);
+        byte[] globalKey = bytes(RateLimitService.globalKey());
+        
+        // results come back as [global value, global ttl, tw value, monthly value, tw ttl, monthly ttl]
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(globalKey);
+            connection.keyCommands().ttl(globalKey);
+            if (counters != null) {
+                queueCounters(connection, counters);
+            }
+            return null;
+        });
+        
+        ClientUsageDTO usage = new ClientUsageDTO();
+        usage.setClientId(clientId);
+        if (counters != null) {
+            usage.setTimeWindow(UsageCounterDTO.of(count(results.get(2)), config.getTimeWindowRequests(), ttl(results.get(4))));
+            usage.setMonthly(UsageCounterDTO.of(count(results.get(3)), config.getMonthlyRequests(), ttl(results.get(5))));
+        } else {
+            usage.setTimeWindow(UsageCounterDTO.of(0, config.getTimeWindowRequests(), -1));
+            usage.setMonthly(UsageCounterDTO.of(0, config.getMonthlyRequests(), -1));
+        }
+        usage.setGlobal(UsageCounterDTO.of(count(results.get(0)),
+            systemLimitConfigService.getEffectiveGlobalRequestsPerSecond(), ttl(results.get(1))));
+        return usage;
+    }
+    
+    public UsageCounterDTO getGlobalUsage() {
+        byte[] globalKey = bytes(RateLimitService.globalKey());
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(globalKey);
+            connection.keyCommands().ttl(globalKey);
+            return null;
+        });
+        return UsageCounterDTO.of(count(results.get(0)),
+            systemLimitConfigService.getEffectiveGlobalRequestsPerSecond(), ttl(results.get(1)));
+    }
+    
+    /**
+     * Hands the usage of every client with a counter this month to the consumer,
+     * one SCAN page at a time. Memory use is bounded by the batch size no matter
+     * how many clients there are. SCAN may report a key twice while Redis rehashes,
+     * consumers that care have to dedupe themselves. The compact layout walks
+     * the short id buckets and skips the clients not counted this month.
+     */
+    public void forEachClientUsage(Consumer<ClientUsageDTO> consumer) {
+        if (clientKeys.isEnabled()) {
+            clientKeys.forEachClient(batchSize, batch -> readBatch(batch, consumer));
+            return;
+        }
+        ScanOptions options = ScanOptions.scanOptions()
+            .match(RateLimitService.monthlyKeyPattern())
+            .count(batchSize)
+            .build();
+        
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            Map<String, ClientKeys.Counters> batch = new LinkedHashMap<>();
+            while (cursor.hasNext()) {
+                String clientId = RateLimitService.clientIdFromMonthlyKey(cursor.next());
+                batch.put(clientId, clientKeys.of(clientId));
+                if (batch.size() >= batchSize) {
+                    readBatch(batch, consumer);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                readBatch(batch, consumer);
+            }
+        }
+    }
+    
+    private void readBatch(Map<String, ClientKeys.Counters> batch, Consumer<ClientUsageDTO> consumer) {
+        List<String> clientIds = new ArrayList<>(batch.keySet());
+        
+        // results come back as [tw value, monthly value, tw ttl, monthly ttl] per client
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ClientKeys.Counters counters : batch.values()) {
+                queueCounters(connection, counters);
+            }
+            return null;
+        });
+        Map<String, RateLimitConfig> configs = configService.getConfigsOrDefault(clientIds);
+        
+        for (int i = 0; i < clientIds.size(); i++) {
+            Object monthly = results.get(i * 4 + 1);
+            if (monthly == null && batch.get(clientIds.get(i)).getMonthlyField() != null) {
+                // has a short id but no counter this month
+                continue;
+            }
+            String clientId = clientIds.get(i);
+            RateLimitConfig config = configs.get(clientId);
+            
+            ClientUsageDTO usage = new ClientUsageDTO();
+            usage.setClientId(clientId);
+            usage.setTimeWindow(UsageCounterDTO.of(count(results.get(i * 4)),
+                config.getTimeWindowRequests(), ttl(results.get(i * 4 + 2))));
+            usage.setMonthly(UsageCounterDTO.of(count(monthly),
+                config.getMonthlyRequests(), ttl(results.get(i * 4 + 3))));
+            consumer.accept(usage);
+        }
+    }
+    
+    // the time window and monthly counts, then their ttls
+    private static void queueCounters(RedisConnection connection, ClientKeys.Counters counters) {
+        byte[] timeWindowKey = bytes(counters.getTimeWindowKey());
+        byte[] monthlyKey = bytes(counters.getMonthlyKey());
+        connection.stringCommands().get(timeWindowKey);
+        if (counters.getMonthlyField() != null) {
+            connection.hashCommands().hGet(monthlyKey, bytes(counters.getMonthlyField()));
+        } else {
+            connection.stringCommands().get(monthlyKey);
+        }
+        connection.keyCommands().ttl(timeWindowKey);
+        connection.keyCommands().ttl(monthlyKey);
+    }
+    
+    private static long count(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+    
+    private static long ttl(Object value) {
+        return value == null ? -1 : ((Number) value).longValue();
+    }
+    
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,170 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.redis.QuotaScript;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gets a new instance ready for traffic before it says so. Spring Boot only
+ * reports the readiness probe UP once the application runners are done, so
+ * this runs as one: it preloads the client config cache, SCRIPT LOADs the
+ * limit scripts, opens the redis pool's idle connections and runs synthetic
+ * limit checks until the decision path is JIT compiled. Every step fails
+ * open, a node that cannot warm up still starts. The outcome is reported on
+ * /health.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WarmUp implements ApplicationRunner {
+
+    // checked with a cost of 0: the whole path runs but no counter is charged or created.
+    // with fairness on it is counted as one more active client for a few seconds
+    static final String CLIENT_ID = "__warm_up__";
+
+    private static final List<String> SCRIPTS = List.of(QuotaScript.TEXT, QuotaScript.REFUND_TEXT,
+        RedisConfigMirror.SCRIPT, SoftLimitCounter.COUNT_SCRIPT, ConcurrencyLimiter.ACQUIRE_SCRIPT,
+        ConcurrencyLimiter.RENEW_SCRIPT, ClientKeys.ASSIGN_SCRIPT);
+
+    private final RateLimitConfigService configService;
+    private final RateLimitService rateLimitService;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+
+    @Value("${rate-limiter.warm-up.enabled:true}")
+    private boolean enabled;
+
+    // synthetic limit checks, a batch of batch-size counts as one
+    @Value("${rate-limiter.warm-up.checks:2000}")
+    private int checks;
+
+    @Value("${rate-limiter.warm-up.batch-size:10}")
+    private int batchSize;
+
+    // the checks stop early past this, the other steps always run
+    @Value("${rate-limiter.warm-up.max-duration-ms:10000}")
+    private long maxDurationMs;
+
+    @Value("${spring.data.redis.jedis.pool.min-idle:5}")
+    private int poolMinIdle;
+
+    private volatile Report report = Report.builder().state(State.PENDING).build();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            report = Report.builder().state(State.DISABLED).build();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        report = Report.builder().state(State.RUNNING).build();
+        Report.ReportBuilder result = Report.builder().state(State.DONE);
+        List<String> errors = new ArrayList<>();
+
+        result.configsLoaded(configService.preload());
+        int scripts = step("script load", errors, this::loadScripts);
+        result.scriptsLoaded(scripts);
+        result.connectionsOpened(step("connection pool", errors, this::fillPool));
+        if (scripts > 0) {
+            result.checks(step("synthetic checks", errors, () -> runChecks(start + maxDurationMs)));
+        } else {
+            // every check would fail open and log its error
+            errors.add("synthetic checks: skipped, redis is not reachable");
+        }
+
+        long durationMs = System.currentTimeMillis() - start;
+        report = result.durationMs(durationMs).errors(errors).build();
+        log.info("Warm-up done in {} ms: {}", durationMs, report);
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    private int loadScripts() {
+        return redisTemplate.execute((RedisCallback<Integer>) connection -> {
+            for (String script : SCRIPTS) {
+                connection.scriptingCommands().scriptLoad(script.getBytes(StandardCharsets.UTF_8));
+            }
+            return SCRIPTS.size();
+        });
+    }
+
+    // the pool creates connections as requests need them, these are handed back idle
+    private int fillPool() {
+        List<RedisConnection> connections = new ArrayList<>(poolMinIdle);
+        try {
+            for (int i = 0; i < poolMinIdle; i++) {
+                RedisConnection connection = connectionFactory.getConnection();
+                connections.add(connection);
+                connection.ping();
+            }
+        } finally {
+            for (RedisConnection connection : connections) {
+                connection.close();
+            }
+        }
+        return connections.size();
+    }
+
+    // the single and the pipelined batch paths, a check failing open still counts as warm
+    private int runChecks(long deadlineMillis) {
+        List<LimitCheck> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new LimitCheck(CLIENT_ID, 0, null));
+        }
+        int done = 0;
+        while (done < checks && System.currentTimeMillis() < deadlineMillis) {
+            if (done % 2 == 0) {
+                rateLimitService.checkLimits(CLIENT_ID, 0);
+            } else {
+                rateLimitService.checkLimits(batch);
+            }
+            done++;
+        }
+        return done;
+    }
+
+    private static int step(String name, List<String> errors, Step step) {
+        try {
+            return step.run();
+        } catch (Exception e) {
+            log.warn("Warm-up step {} failed: {}", name, e.getMessage());
+            errors.add(name + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private interface Step {
+        int run();
+    }
+
+    public enum State {
+        PENDING, RUNNING, DONE, DISABLED
+    }
+
+    @lombok.Value
+    @lombok.Builder
+    public static class Report {
+        State state;
+        long durationMs;
+        int configsLoaded;
+        int scriptsLoaded;
+        int connectionsOpened;
+        int checks;
+        @lombok.Builder.Default
+        List<String> errors = List.of();
+    }
+}
@@ -0,0 +1,203 @@
+package com.corporation.ratelimiter.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+/**
+ * An IPv4 or IPv6 network in CIDR notation, e.g. 203.0.113.0/24 or
+ * 2001:db8::/32. Parsing only accepts address literals, nothing here ever
+ * does a DNS lookup. IPv4-mapped IPv6 addresses (::ffff:a.b.c.d) count as
+ * IPv4.
+ */
+public final class Cidr {
+
+    private final byte[] network;
+    private final int prefixLength;
+
+    private Cidr(byte[] network, int prefixLength) {
+        this.network = network;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * Parses "address/prefix", or a bare address as a single host. Host bits
+     * set below the prefix are cleared.
+     *
+     * @throws IllegalArgumentException when it is not one
+     */
+    public static Cidr parse(String cidr) {
+        String text = cidr == null ? "" : cidr.trim();
+        int slash = text.indexOf('/');
+        byte[] address = parseAddress(slash < 0 ? text : text.substring(0, slash));
+        if (address == null) {
+            throw new IllegalArgumentException("Not an IP address or CIDR: " + cidr);
+        }
+        int prefixLength = address.length * 8;
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(text.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not an IP address or CIDR: " + cidr);
+            }
+            if (prefixLength < 0 || prefixLength > address.length * 8) {
+                throw new IllegalArgumentException("Prefix length of " + cidr + " must be between 0 and " + address.length * 8);
+            }
+        }
+        return new Cidr(mask(address, prefixLength), prefixLength);
+    }
+
+    /**
+     * The 4 or 16 bytes of an address literal, as it may appear in a socket
+     * address or an X-Forwarded-For entry: brackets and a port are dropped,
+     * as is an IPv6 zone. Null when it is not an address literal.
+     */
+    public static byte[] parseAddress(String text) {
+        if (text == null) {
+            return null;
+        }
+        String address = text.trim();
+        if (address.startsWith("[")) {
+            int end = address.indexOf(']');
+            if (end < 0) {
+                return null;
+            }
+            address = address.substring(1, end);
+        } else if (address.indexOf(':') >= 0 && address.indexOf(':') == address.lastIndexOf(':') && address.indexOf('.') > 0) {
+            // a.b.c.d:port
+            address = address.substring(0, address.indexOf(':'));
+        }
+        int zone = address.indexOf('%');
+        if (zone >= 0) {
+            address = address.substring(0, zone);
+        }
+        if (address.indexOf(':') < 0) {
+            return parseIpv4(address);
+        }
+        if (Character.digit(address.charAt(0), 16) < 0 && address.charAt(0) != ':') {
+            return null;
+        }
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                return null;
+            }
+        }
+        try {
+            // a literal with a ':' is never looked up
+            return InetAddress.getByName(address).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The address with every bit below the prefix length cleared, i.e. the
+     * network it is in.
+     */
+    public static byte[] mask(byte[] address, int prefixLength) {
+        byte[] network = Arrays.copyOf(address, address.length);
+        for (int bit = prefixLength; bit < network.length * 8; bit++) {
+            network[bit / 8] &= (byte) ~(0x80 >>> (bit % 8));
+        }
+        return network;
+    }
+
+    // the usual text form of an address, the shortest one for IPv6
+    public static String format(byte[] address) {
+        try {
+            String text = InetAddress.getByAddress(address).getHostAddress();
+            return address.length == 16 ? compress(text) : text;
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Not an IP address: " + Arrays.toString(address));
+        }
+    }
+
+    public byte[] getNetwork() {
+        return Arrays.copyOf(network, network.length);
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    public boolean isIpv4() {
+        return network.length == 4;
+    }
+
+    // the bit of the network at index, most significant first
+    boolean bit(int index) {
+        return bit(network, index);
+    }
+
+    static boolean bit(byte[] address, int index) {
+        return (address[index / 8] & (0x80 >>> (index % 8))) != 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Cidr cidr && prefixLength == cidr.prefixLength && Arrays.equals(network, cidr.network);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(network) + prefixLength;
+    }
+
+    // normalized, so equal networks print the same
+    @Override
+    public String toString() {
+        return format(network) + "/" + prefixLength;
+    }
+
+    private static byte[] parseIpv4(String address) {
+        String[] parts = address.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3) {
+                return null;
+            }
+            int value = 0;
+            for (int j = 0; j < part.length(); j++) {
+                char c = part.charAt(j);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (value > 255) {
+                return null;
+            }
+            bytes[i] = (byte) value;
+        }
+        return bytes;
+    }
+
+    // java prints every group, e.g. 2001:db8:0:0:0:0:0:0: the longest run of zero groups becomes ::
+    private static String compress(String full) {
+        String[] groups = full.split(":");
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < groups.length; i++) {
+            int j = i;
+            while (j < groups.length && groups[j].equals("0")) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = Math.max(i, j);
+        }
+        if (bestStart < 0) {
+            return full;
+        }
+        String head = String.join(":", Arrays.copyOfRange(groups, 0, bestStart));
+        String tail = String.join(":", Arrays.copyOfRange(groups, bestStart + bestLength, groups.length));
+        return head + "::" + tail;
+    }
+}
@@ -0,0 +1,63 @@
+package com.corporation.ratelimiter.util;
+
+/**
+ * Longest-prefix match over IPv4 and IPv6 networks: a binary trie per
+ * address family, one level per prefix bit, so a lookup walks at most 32 or
+ * 128 nodes whatever the number of networks. Not safe to change while it is
+ * read; build a new one and publish it through a volatile field instead.
+ */
+public class CidrTrie<V> {
+
+    private final Node<V> ipv4 = new Node<>();
+    private final Node<V> ipv6 = new Node<>();
+    private int size;
+
+    // the value of a network that is already in replaces its old one
+    public void put(Cidr cidr, V value) {
+        Node<V> node = cidr.isIpv4() ? ipv4 : ipv6;
+        for (int i = 0; i < cidr.getPrefixLength(); i++) {
+            int branch = cidr.bit(i) ? 1 : 0;
+            if (node.children[branch] == null) {
+                node.children[branch] = new Node<>();
+            }
+            node = node.children[branch];
+        }
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    /**
+     * The value of the most specific network the 4 or 16 byte address is in,
+     * null when it is in none.
+     */
+    public V longestMatch(byte[] address) {
+        Node<V> node = address.length == 4 ? ipv4 : ipv6;
+        V match = node.value;
+        for (int i = 0; i < address.length * 8; i++) {
+            node = node.children[Cidr.bit(address, i) ? 1 : 0];
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                match = node.value;
+            }
+        }
+        return match;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static final class Node<V> {
+        @SuppressWarnings("unchecked")
+        private final Node<V>[] children = new Node[2];
+        private V value;
+    }
+}
@@ -0,0 +1,54 @@
+package com.corporation.ratelimiter.util;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of equally sized direct buffers, so socket reads and writes neither
+ * allocate native memory per message nor leave it for the GC to free.
+ * Asking for more than the pooled size gets a one-off buffer, which release
+ * then drops.
+ */
+public class DirectBufferPool {
+    
+    private final int bufferBytes;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    
+    public DirectBufferPool(int bufferBytes, int maxPooled) {
+        this.bufferBytes = bufferBytes;
+        this.maxPooled = maxPooled;
+    }
+    
+    // a cleared buffer of at least minBytes
+    public ByteBuffer acquire(int minBytes) {
+        if (minBytes > bufferBytes) {
+            return ByteBuffer.allocateDirect(minBytes);
+        }
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferBytes);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+    
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferBytes || !buffer.isDirect()) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(buffer);
+    }
+    
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+}
@@ -0,0 +1,145 @@
+package com.corporation.ratelimiter.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timer for large numbers of short delays, scheduling in O(1) where a
+ * ScheduledExecutorService pays O(log n) per task. Tasks hash into a ring of
+ * buckets by their deadline tick; one worker thread advances one bucket per
+ * tick and hands the due tasks to the executor, so a slow task never delays
+ * the wheel. Deadlines are honoured to within one tick.
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+    private final long tickNanos;
+    private final int mask;
+    // only touched by the worker thread
+    private final ArrayDeque<Timeout>[] wheel;
+    // new tasks wait here until the worker puts them in their bucket
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+
+    /**
+     * @param wheelSize buckets in the ring, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(String name, long tickMillis, int wheelSize, Executor executor) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.wheel = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.executor = executor;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * @throws RejectedExecutionException once the timer is stopped
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        pending.add(timeout);
+        // stopped in between: taken back here unless stop() already handed it out
+        if (!running && pending.remove(timeout)) {
+            throw new RejectedExecutionException("Timer " + worker.getName() + " is stopped");
+        }
+    }
+
+    /**
+     * Stops the wheel and returns the tasks that never ran, so the caller can
+     * give up on them instead of leaving them waiting forever.
+     */
+    public List<Runnable> stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the worker is gone, the buckets are ours now
+        List<Runnable> unprocessed = new ArrayList<>();
+        for (ArrayDeque<Timeout> bucket : wheel) {
+            for (Timeout timeout : bucket) {
+                unprocessed.add(timeout.task);
+            }
+            bucket.clear();
+        }
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            unprocessed.add(timeout.task);
+        }
+        return unprocessed;
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = deadline - System.nanoTime()) > 0 && running) {
+                LockSupport.parkNanos(sleep);
+            }
+            transferPending(tick);
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending(long tick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            long dueTick = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1);
+            timeout.rounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                continue;
+            }
+            iterator.remove();
+            try {
+                executor.execute(timeout.task);
+            } catch (RuntimeException e) {
+                log.error("Could not run timer task: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long rounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
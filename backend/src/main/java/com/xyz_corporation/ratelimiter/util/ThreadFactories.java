@@ -0,0 +1,69 @@
+package com.corporation.ratelimiter.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories for the background workers. On a JDK with virtual threads
+ * (21+) the workers are virtual, otherwise daemon platform threads. The lookup
+ * is reflective because the build still targets Java 17.
+ */
+@Slf4j
+public final class ThreadFactories {
+    
+    private static final Method OF_VIRTUAL = find(Thread.class, "ofVirtual");
+    // looked up on the public Thread.Builder interface: the builder implementations are
+    // classes of java.base that are not exported, their methods cannot be invoked
+    private static final Method NAME = find(builderClass(), "name", String.class, long.class);
+    private static final Method FACTORY = find(builderClass(), "factory");
+    
+    private ThreadFactories() {
+    }
+    
+    public static boolean virtualThreadsAvailable() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null;
+    }
+    
+    /**
+     * Factory naming its threads prefix-0, prefix-1, ... Virtual when the JDK
+     * supports it and preferVirtual is set.
+     */
+    public static ThreadFactory named(String prefix, boolean preferVirtual) {
+        if (preferVirtual && virtualThreadsAvailable()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-", 0L);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn("Could not create virtual thread factory, using platform threads: {}", e.getMessage());
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private static Method find(Class<?> type, String name, Class<?>... parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+    
+    private static Class<?> builderClass() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
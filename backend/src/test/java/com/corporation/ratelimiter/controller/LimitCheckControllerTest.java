@@ -0,0 +1,165 @@
+package com.corporation.ratelimiter.controller;
+
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.service.RateLimitConfigService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Testcontainers
+class LimitCheckControllerTest {
+    
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+    
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private RateLimitConfigService configService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        // the batch has to load the script itself when redis does not know it
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+    }
+    
+    @Test
+    void testCheck_BatchOfTuples() throws Exception {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId("check-client");
+        config.setTimeWindowRequests(2);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        configService.createConfig(config);
+        
+        // [allowed, remaining, resetSeconds] per [clientId, resource, cost], in order
+        mockMvc.perform(post("/api/limits/check")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[[\"check-client\",null,1],[\"check-client\",\"SMS\",null],"
+                    + "[\"check-client\",null,1],[\"check-other\",null,5]]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0][0]").value(true))
+                .andExpect(jsonPath("$[0][1]").value(1))
+                .andExpect(jsonPath("$[0][2]").value(60))
+                .andExpect(jsonPath("$[1][0]").value(true))
+                .andExpect(jsonPath("$[1][1]").value(0))
+                .andExpect(jsonPath("$[2][0]").value(false))
+                .andExpect(jsonPath("$[2][1]").value(0))
+                .andExpect(jsonPath("$[3][0]").value(true))
+                .andExpect(jsonPath("$[3][1]").value(95));
+    }
+    
+    @Test
+    void testCheck_InvalidItemsRejected() throws Exception {
+        mockMvc.perform(post("/api/limits/check")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[[\"check-client\",\"FAX\",1]]"))
+                .andExpect(status().isBadRequest());
+        
+        mockMvc.perform(post("/api/limits/check")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[[\"check-client\",null,0]]"))
+                .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    void testLease_GrantsWhatIsLeftAndTakesReturns() throws Exception {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId("lease-client");
+        config.setTimeWindowRequests(3);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        configService.createConfig(config);
+        
+        // cut down to the time window, valid at most until the global second rolls over
+        MvcResult leased = mockMvc.perform(post("/api/limits/lease")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"lease-client\",\"units\":5}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granted").value(3))
+                .andExpect(jsonPath("$.remaining").value(0))
+                .andExpect(jsonPath("$.ttlMs").value(lessThanOrEqualTo(1000)))
+                .andExpect(jsonPath("$.leaseId").exists())
+                .andReturn();
+        String leaseId = objectMapper.readTree(leased.getResponse().getContentAsString()).get("leaseId").asText();
+        
+        mockMvc.perform(post("/api/limits/lease")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"lease-client\",\"units\":1}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granted").value(0))
+                .andExpect(jsonPath("$.ttlMs").value(0))
+                .andExpect(jsonPath("$.resetSeconds").value(60));
+        
+        // nothing comes back without a lease, or under another client's
+        mockMvc.perform(post("/api/limits/lease/return")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"lease-client\",\"units\":2}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/limits/lease/return")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"other-client\",\"units\":2,\"leaseId\":\"" + leaseId + "\"}"))
+                .andExpect(status().isNoContent());
+        
+        // more than was leased is capped, and a lease is returned once
+        mockMvc.perform(post("/api/limits/lease/return")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"lease-client\",\"units\":900,\"leaseId\":\"" + leaseId + "\"}"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(post("/api/limits/lease/return")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"lease-client\",\"units\":3,\"leaseId\":\"" + leaseId + "\"}"))
+                .andExpect(status().isNoContent());
+        
+        mockMvc.perform(post("/api/limits/lease")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"lease-client\",\"units\":5}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granted").value(3));
+        
+        mockMvc.perform(post("/api/limits/lease")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"lease-client\",\"units\":0}"))
+                .andExpect(status().isBadRequest());
+    }
+}
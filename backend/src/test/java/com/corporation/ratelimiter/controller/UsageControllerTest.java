@@ -0,0 +1,97 @@
+package com.corporation.ratelimiter.controller;
+
+import com.corporation.ratelimiter.dto.NotificationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "rate-limiter.usage.batch-size=2")
+@AutoConfigureMockMvc
+@Testcontainers
+class UsageControllerTest {
+    
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+    
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+    
+    @Test
+    void testClientUsage() throws Exception {
+        sendEmails("usage-client", 3);
+        
+        mockMvc.perform(get("/api/usage/usage-client"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.clientId").value("usage-client"))
+                .andExpect(jsonPath("$.timeWindow.used").value(3))
+                .andExpect(jsonPath("$.timeWindow.remaining").value(97))
+                .andExpect(jsonPath("$.monthly.used").value(3))
+                .andExpect(jsonPath("$.global.limit").exists());
+    }
+    
+    @Test
+    void testAllUsage_StreamsEveryClientAcrossBatches() throws Exception {
+        // batch size is 2, so five clients need several SCAN/pipeline rounds
+        for (int i = 0; i < 5; i++) {
+            sendEmails("usage-bulk-" + i, i + 1);
+        }
+        
+        MvcResult result = mockMvc.perform(get("/api/usage"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.global.used").exists())
+                .andExpect(jsonPath("$.clients", hasSize(5)))
+                .andExpect(jsonPath("$.clients[?(@.clientId == 'usage-bulk-4')].monthly.used").value(5));
+    }
+    
+    private void sendEmails(String clientId, int count) throws Exception {
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("test@example.com");
+        notification.setMessage("Test message");
+        
+        for (int i = 0; i < count; i++) {
+            mockMvc.perform(post("/api/notifications/email")
+                    .header("X-Client-Id", clientId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(notification)));
+        }
+    }
+}
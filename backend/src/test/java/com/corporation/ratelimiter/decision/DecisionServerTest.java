@@ -0,0 +1,188 @@
+package com.corporation.ratelimiter.decision;
+
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.service.RateLimitConfigService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.decision-server.enabled=true",
+    "rate-limiter.decision-server.port=0"
+})
+@Testcontainers
+class DecisionServerTest {
+    
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+    
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+    
+    @Autowired
+    private DecisionServer decisionServer;
+    
+    @Autowired
+    private RateLimitConfigService configService;
+    
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+    
+    @Test
+    void testPipelinedChecksAndRelease() throws Exception {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId("binary-client");
+        config.setTimeWindowRequests(3);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        config.setMaxConcurrentRequests(2);
+        configService.createConfig(config);
+        
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", decisionServer.getPort()))) {
+            // three requests in one write, answered in order
+            List<DecisionReply> replies = exchange(channel,
+                DecisionRequest.check(1, new DecisionRequest.Item("binary-client", null, 1)),
+                DecisionRequest.check(2, new DecisionRequest.Item("binary-client", "SMS", 1)),
+                DecisionRequest.checkBatch(3, List.of(
+                    new DecisionRequest.Item("binary-client", null, 1),
+                    new DecisionRequest.Item("binary-other", null, 1))));
+            
+            DecisionReply.Outcome first = replies.get(0).getOutcomes().get(0);
+            DecisionReply.Outcome second = replies.get(1).getOutcomes().get(0);
+            assertEquals(1, replies.get(0).getId());
+            assertTrue(first.isAllowed());
+            assertEquals(2, first.getRemaining());
+            assertTrue(first.getPermitId() > 0);
+            assertTrue(second.isAllowed());
+            assertEquals(1, second.getRemaining());
+            // both slots of the client are taken, the other client has no concurrency limit
+            List<DecisionReply.Outcome> batch = replies.get(2).getOutcomes();
+            assertEquals(DecisionProtocol.CONCURRENCY_LIMITED, batch.get(0).getDecision());
+            assertTrue(batch.get(1).isAllowed());
+            assertEquals(0, batch.get(1).getPermitId());
+            
+            // a released slot can be taken again
+            replies = exchange(channel,
+                DecisionRequest.release(4, first.getPermitId()),
+                DecisionRequest.check(5, new DecisionRequest.Item("binary-client", null, 1)));
+            assertFalse(replies.get(0).isError());
+            DecisionReply.Outcome third = replies.get(1).getOutcomes().get(0);
+            assertTrue(third.isAllowed());
+            assertEquals(0, third.getRemaining());
+            
+            // the time window is used up now, bad items only fail their own request
+            replies = exchange(channel,
+                DecisionRequest.release(6, second.getPermitId()),
+                DecisionRequest.check(7, new DecisionRequest.Item("binary-client", null, 1)),
+                DecisionRequest.check(8, new DecisionRequest.Item("binary-client", "FAX", 1)));
+            DecisionReply.Outcome denied = replies.get(1).getOutcomes().get(0);
+            assertEquals(DecisionProtocol.DENIED, denied.getDecision());
+            assertEquals(0, denied.getPermitId());
+            assertTrue(denied.getResetSeconds() > 0);
+            assertTrue(replies.get(2).isError());
+            assertEquals(8, replies.get(2).getId());
+        }
+    }
+    
+    @Test
+    void testClientThatDoesNotReadItsRepliesStallsOnItsWrites() throws Exception {
+        int frameBytes = DecisionProtocol.requestSize(DecisionRequest.release(0, 0));
+        ByteBuffer chunk = ByteBuffer.allocate(frameBytes * 4096);
+        for (int i = 0; i < 4096; i++) {
+            DecisionProtocol.writeRequest(chunk, DecisionRequest.release(i, 0));
+        }
+        
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", decisionServer.getPort()))) {
+            channel.configureBlocking(false);
+            long sent = 0;
+            long stalledSince = 0;
+            // the server stops reading once the unread replies pile up, so the writes stop going through
+            while (stalledSince == 0 || System.currentTimeMillis() - stalledSince < 500) {
+                assertTrue(sent < 64L * 1024 * 1024, "Server kept reading " + sent + " bytes of unanswered requests");
+                if (!chunk.hasRemaining()) {
+                    chunk.clear();
+                }
+                int written = channel.write(chunk);
+                sent += written;
+                if (written > 0) {
+                    stalledSince = 0;
+                } else if (stalledSince == 0) {
+                    stalledSince = System.currentTimeMillis();
+                } else {
+                    Thread.sleep(10);
+                }
+            }
+            
+            // reading the replies lets the server read again
+            ByteBuffer in = ByteBuffer.allocate(1 << 16);
+            long deadline = System.currentTimeMillis() + 10_000;
+            long more = 0;
+            while (more == 0 && System.currentTimeMillis() < deadline) {
+                in.clear();
+                assertTrue(channel.read(in) >= 0, "Connection closed");
+                if (!chunk.hasRemaining()) {
+                    chunk.clear();
+                }
+                more = channel.write(chunk);
+            }
+            assertTrue(more > 0, "Server did not resume reading");
+        }
+    }
+    
+    private static List<DecisionReply> exchange(SocketChannel channel, DecisionRequest... requests) throws IOException {
+        int size = 0;
+        for (DecisionRequest request : requests) {
+            size += DecisionProtocol.requestSize(request);
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        for (DecisionRequest request : requests) {
+            DecisionProtocol.writeRequest(out, request);
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        
+        List<DecisionReply> replies = new ArrayList<>();
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        while (replies.size() < requests.length) {
+            if (channel.read(in) < 0) {
+                fail("Connection closed after " + replies.size() + " replies");
+            }
+            in.flip();
+            while (in.remaining() >= 4 && in.remaining() >= 4 + in.getInt(in.position())) {
+                int length = in.getInt();
+                replies.add(DecisionProtocol.readReply(in.slice(in.position(), length)));
+                in.position(in.position() + length);
+            }
+            in.compact();
+        }
+        return replies;
+    }
+}
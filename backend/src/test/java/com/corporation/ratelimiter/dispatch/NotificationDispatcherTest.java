@@ -0,0 +1,111 @@
+package com.corporation.ratelimiter.dispatch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.dispatch.queue-capacity=10",
+    "rate-limiter.dispatch.high-watermark=1.0",
+    "rate-limiter.dispatch.batch-size=5",
+    "rate-limiter.dispatch.workers-per-channel=1",
+    "rate-limiter.dispatch.shutdown-timeout-seconds=1"
+})
+class NotificationDispatcherTest {
+    
+    @Autowired
+    private NotificationDispatcher dispatcher;
+    
+    @Autowired
+    private NotificationTracker tracker;
+    
+    @Autowired
+    private BlockingSmsProvider smsProvider;
+    
+    @Test
+    void testEnqueue_BatchesAndTracksDelivery() throws Exception {
+        // the worker takes the first message and blocks in the provider
+        List<String> first = dispatcher.enqueue("dispatch-client", NotificationChannel.SMS, List.of("+0"), "hi");
+        assertTrue(smsProvider.started.await(5, TimeUnit.SECONDS));
+        
+        // these pile up behind it: 10 fit, the 11th is refused
+        List<String> recipients = List.of("+1", "+2", "+3", "+4", "+5", "+6", "+7", "+8", "+9", "+10", "+11");
+        List<String> trackingIds = dispatcher.enqueue("dispatch-client", NotificationChannel.SMS, recipients, "hi");
+        assertEquals(10, trackingIds.size());
+        assertTrue(dispatcher.isSaturated(NotificationChannel.SMS));
+        assertEquals(0, dispatcher.remainingCapacity(NotificationChannel.SMS));
+        assertEquals(DispatchStatus.QUEUED, tracker.getStatus(trackingIds.get(0)).orElseThrow());
+        
+        smsProvider.release.countDown();
+        waitForStatus(trackingIds.get(9), DispatchStatus.SENT);
+        
+        // one call for the first message, then the backlog in batches of at most 5
+        assertEquals(List.of(1, 5, 5), smsProvider.batchSizes);
+        assertEquals(DispatchStatus.SENT, tracker.getStatus(first.get(0)).orElseThrow());
+        assertFalse(dispatcher.isSaturated(NotificationChannel.SMS));
+    }
+    
+    @Test
+    @DirtiesContext
+    void testStop_FailsWhatWasNotDelivered() throws Exception {
+        // the worker blocks in the provider with the first message, the rest stay queued
+        List<String> inFlight = dispatcher.enqueue("dispatch-client", NotificationChannel.SMS, List.of("+0"), "hi");
+        assertTrue(smsProvider.started.await(5, TimeUnit.SECONDS));
+        List<String> queued = dispatcher.enqueue("dispatch-client", NotificationChannel.SMS, List.of("+1", "+2"), "hi");
+        
+        // the worker does not finish within the shutdown timeout and is interrupted
+        dispatcher.stop();
+        
+        waitForStatus(inFlight.get(0), DispatchStatus.FAILED);
+        assertEquals(DispatchStatus.FAILED, tracker.getStatus(queued.get(0)).orElseThrow());
+        assertEquals(DispatchStatus.FAILED, tracker.getStatus(queued.get(1)).orElseThrow());
+        assertTrue(smsProvider.batchSizes.isEmpty());
+    }
+    
+    private void waitForStatus(String trackingId, DispatchStatus expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tracker.getStatus(trackingId).orElseThrow() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, tracker.getStatus(trackingId).orElseThrow());
+    }
+    
+    @TestConfiguration
+    static class ProviderConfig {
+        @Bean
+        BlockingSmsProvider blockingSmsProvider() {
+            return new BlockingSmsProvider();
+        }
+    }
+    
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    static class BlockingSmsProvider implements NotificationProvider {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        
+        @Override
+        public boolean supports(NotificationChannel channel) {
+            return channel == NotificationChannel.SMS;
+        }
+        
+        @Override
+        public void send(NotificationChannel channel, List<Notification> batch) throws InterruptedException {
+            started.countDown();
+            release.await();
+            batchSizes.add(batch.size());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.corporation.ratelimiter.gateway;
+
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.service.RateLimitConfigService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.gateway.enabled=true",
+    "rate-limiter.gateway.port=0"
+})
+@Testcontainers
+class GatewayHandlerTest {
+    
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+    
+    private static final AtomicInteger upstreamHits = new AtomicInteger();
+    
+    // stub upstream echoing the body it gets, with the path and query it was called with
+    private static final DisposableServer upstream = HttpServer.create()
+        .port(0)
+        .handle((request, response) -> {
+            upstreamHits.incrementAndGet();
+            return response.header("X-Upstream-Uri", request.uri())
+                .send(request.receive().retain());
+        })
+        .bindNow();
+    
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+        // both here, a list is bound from a single property source
+        registry.add("rate-limiter.gateway.routes[0].path", () -> "/stub");
+        registry.add("rate-limiter.gateway.routes[0].uri", () -> "http://localhost:" + upstream.port() + "/api");
+    }
+    
+    @AfterAll
+    static void stopUpstream() {
+        upstream.disposeNow();
+    }
+    
+    @Autowired
+    private GatewayServer gatewayServer;
+    
+    @Autowired
+    private RateLimitConfigService configService;
+    
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    
+    private WebTestClient client;
+    
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        upstreamHits.set(0);
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + gatewayServer.getPort()).build();
+    }
+    
+    @Test
+    void testGateway_ProxiesUntilLimitReached() {
+        String clientId = "gateway-client";
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId(clientId);
+        config.setTimeWindowRequests(2);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        configService.createConfig(config);
+        
+        for (int i = 0; i < 2; i++) {
+            client.post().uri("/stub/orders?page=" + i)
+                .header("X-Client-Id", clientId)
+                .bodyValue("order " + i)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Upstream-Uri", "/api/orders?page=" + i)
+                .expectHeader().valueEquals("X-RateLimit-TimeWindow-Remaining", String.valueOf(1 - i))
+                .expectBody(String.class).isEqualTo("order " + i);
+        }
+        
+        // over the limit: rejected without reaching the upstream
+        client.post().uri("/stub/orders")
+            .header("X-Client-Id", clientId)
+            .bodyValue("order 2")
+            .exchange()
+            .expectStatus().isEqualTo(429)
+            .expectHeader().valueEquals("X-RateLimit-Limit", "2");
+        assertEquals(2, upstreamHits.get());
+        
+        // paths no route matches are not proxied
+        client.get().uri("/other")
+            .header("X-Client-Id", clientId)
+            .exchange()
+            .expectStatus().isNotFound();
+        assertEquals(2, upstreamHits.get());
+    }
+}
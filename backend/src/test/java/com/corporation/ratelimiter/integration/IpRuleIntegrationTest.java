@@ -0,0 +1,176 @@
+package com.corporation.ratelimiter.integration;
+
+import com.corporation.ratelimiter.dto.IpRuleDTO;
+import com.corporation.ratelimiter.dto.NotificationRequest;
+import com.corporation.ratelimiter.dto.RateLimitConfigDTO;
+import com.corporation.ratelimiter.model.IpRule;
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.ip.trusted-proxies=127.0.0.1/32,10.0.0.0/8",
+    "rate-limiter.ip.ipv4-prefix=24",
+    "rate-limiter.warm-up.enabled=false"
+})
+@AutoConfigureMockMvc
+@Testcontainers
+class IpRuleIntegrationTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+
+    @Test
+    void testForwardedForBehindTrustedProxies_LimitsTheSubnet() throws Exception {
+        createConfig("203.0.113.0/24", 2);
+
+        // 127.0.0.1 and 10.1.1.1 are our proxies, the caller is the entry before them
+        mockMvc.perform(email("127.0.0.1").header("X-Forwarded-For", "1.2.3.4, 203.0.113.7, 10.1.1.1"))
+                .andExpect(status().isAccepted());
+        // another address of the same /24, the forged leftmost entry is ignored
+        mockMvc.perform(email("127.0.0.1").header("X-Forwarded-For", "198.18.0.1").header("X-Forwarded-For", "203.0.113.99"))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(email("127.0.0.1").header("X-Forwarded-For", "203.0.113.200"))
+                .andExpect(status().isTooManyRequests());
+
+        // not a trusted proxy: its X-Forwarded-For claims nothing
+        mockMvc.perform(email("192.0.2.1").header("X-Forwarded-For", "203.0.113.7"))
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    void testIpv6SubnetSharesOneBudget() throws Exception {
+        createConfig("2001:db8:1:2::/64", 1);
+
+        mockMvc.perform(email("2001:db8:1:2::5"))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(email("2001:db8:1:2:ffff::1"))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(email("2001:db8:1:3::5"))
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    void testAllowAndDenyRules_MostSpecificWins() throws Exception {
+        createRule("198.51.100.0/24", IpRule.Action.DENY);
+        long allowId = createRule("198.51.100.7", IpRule.Action.ALLOW);
+
+        // denied before anything is charged, a client id does not help
+        mockMvc.perform(email("198.51.100.8").header("X-Client-Id", "ip-rule-client"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.status").value(403))
+                .andExpect(jsonPath("$.message").exists());
+        // the /32 opens a hole in the /24, and the address has no budget
+        mockMvc.perform(email("198.51.100.7"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().doesNotExist("X-RateLimit-TimeWindow-Remaining"));
+        // a client sending its id from there keeps its own limits
+        createConfig("allowlisted-client", 1);
+        mockMvc.perform(email("198.51.100.7").header("X-Client-Id", "allowlisted-client"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("X-RateLimit-TimeWindow-Remaining"));
+        mockMvc.perform(email("198.51.100.7").header("X-Client-Id", "allowlisted-client"))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(email("198.51.101.1"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("X-RateLimit-TimeWindow-Remaining"));
+
+        // stored normalized, the same network with host bits set is a duplicate
+        IpRuleDTO duplicate = new IpRuleDTO();
+        duplicate.setCidr("198.51.100.9/24");
+        duplicate.setAction(IpRule.Action.ALLOW);
+        mockMvc.perform(post("/api/ip-rules")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(duplicate)))
+                .andExpect(status().isConflict());
+        duplicate.setCidr("198.51.100.300/24");
+        mockMvc.perform(post("/api/ip-rules")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(duplicate)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete("/api/ip-rules/" + allowId))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(email("198.51.100.7"))
+                .andExpect(status().isForbidden());
+    }
+
+    private MockHttpServletRequestBuilder email(String remoteAddress) throws Exception {
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("test@example.com");
+        notification.setMessage("Test message");
+        return post("/api/notifications/email")
+                .with(request -> {
+                    request.setRemoteAddr(remoteAddress);
+                    return request;
+                })
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification));
+    }
+
+    private void createConfig(String clientId, int timeWindowRequests) throws Exception {
+        RateLimitConfigDTO configDTO = new RateLimitConfigDTO();
+        configDTO.setClientId(clientId);
+        configDTO.setTimeWindowRequests(timeWindowRequests);
+        configDTO.setTimeWindowSeconds(60);
+        configDTO.setMonthlyRequests(1000);
+        configDTO.setThrottlingMode(RateLimitConfig.ThrottlingMode.HARD);
+
+        mockMvc.perform(post("/api/rate-limits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(configDTO)))
+                .andExpect(status().isCreated());
+    }
+
+    private long createRule(String cidr, IpRule.Action action) throws Exception {
+        IpRuleDTO rule = new IpRuleDTO();
+        rule.setCidr(cidr);
+        rule.setAction(action);
+        MvcResult result = mockMvc.perform(post("/api/ip-rules")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(rule)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+    }
+}
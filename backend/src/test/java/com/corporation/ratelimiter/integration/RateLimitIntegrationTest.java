@@ -1,23 +1,34 @@
 package com.corporation.ratelimiter.integration;
 
+import com.corporation.ratelimiter.dto.BatchNotificationRequest;
 import com.corporation.ratelimiter.dto.NotificationRequest;
 import com.corporation.ratelimiter.dto.RateLimitConfigDTO;
 import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.service.LoadShedder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.DispatcherType;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -41,6 +52,9 @@ class RateLimitIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private LoadShedder loadShedder;
+    
     @Test
     void testRateLimiting_TimeWindow() throws Exception {
         // Create rate limit config: 3 requests per 60 seconds
@@ -66,7 +80,9 @@ class RateLimitIntegrationTest {
                     .header("X-Client-Id", "integration-client")
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(objectMapper.writeValueAsString(notification)))
-                    .andExpect(status().isOk())
+                    .andExpect(status().isAccepted())
+                    .andExpect(jsonPath("$.status").value("queued"))
+                    .andExpect(jsonPath("$.trackingId").exists())
                     .andExpect(header().exists("X-RateLimit-TimeWindow-Remaining"));
         }
         
@@ -78,6 +94,365 @@ class RateLimitIntegrationTest {
                 .andExpect(status().isTooManyRequests());
     }
     
+    @Test
+    void testRateLimiting_CostHeader() throws Exception {
+        RateLimitConfigDTO configDTO = new RateLimitConfigDTO();
+        configDTO.setClientId("weighted-client");
+        configDTO.setTimeWindowRequests(10);
+        configDTO.setTimeWindowSeconds(60);
+        configDTO.setMonthlyRequests(1000);
+        configDTO.setThrottlingMode(RateLimitConfig.ThrottlingMode.HARD);
+        
+        mockMvc.perform(post("/api/rate-limits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(configDTO)))
+                .andExpect(status().isCreated());
+        
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("test@example.com");
+        notification.setMessage("Test message");
+        
+        mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "weighted-client")
+                .header("X-RateLimit-Cost", "8")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("X-RateLimit-Cost", "8"))
+                .andExpect(header().string("X-RateLimit-TimeWindow-Remaining", "2"));
+        
+        // 8 more units would overshoot the window
+        mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "weighted-client")
+                .header("X-RateLimit-Cost", "8")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isTooManyRequests());
+        
+        mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "weighted-client")
+                .header("X-RateLimit-Cost", "0")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    void testIdempotencyKey_RetryReplaysWithoutCharging() throws Exception {
+        RateLimitConfigDTO configDTO = new RateLimitConfigDTO();
+        configDTO.setClientId("idempotent-client");
+        configDTO.setTimeWindowRequests(2);
+        configDTO.setTimeWindowSeconds(60);
+        configDTO.setMonthlyRequests(1000);
+        configDTO.setThrottlingMode(RateLimitConfig.ThrottlingMode.HARD);
+        
+        mockMvc.perform(post("/api/rate-limits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(configDTO)))
+                .andExpect(status().isCreated());
+        
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("test@example.com");
+        notification.setMessage("Test message");
+        
+        String first = mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "idempotent-client")
+                .header("Idempotency-Key", "order-42")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("X-RateLimit-TimeWindow-Remaining", "1"))
+                .andReturn().getResponse().getContentAsString();
+        String trackingId = objectMapper.readTree(first).get("trackingId").asText();
+        
+        // retries get the original response and charge nothing
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/notifications/email")
+                    .header("X-Client-Id", "idempotent-client")
+                    .header("Idempotency-Key", "order-42")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(notification)))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().string("Idempotent-Replayed", "true"))
+                    .andExpect(jsonPath("$.trackingId").value(trackingId));
+        }
+        
+        mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "idempotent-client")
+                .header("Idempotency-Key", "order-43")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("X-RateLimit-TimeWindow-Remaining", "0"));
+        
+        // a rejected request does not keep its key, so it can be retried later
+        mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "idempotent-client")
+                .header("Idempotency-Key", "order-44")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "idempotent-client")
+                .header("Idempotency-Key", "order-44")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+    }
+    
+    @Test
+    void testPolicies_ChannelAndRouteLimitsUnderClientTotal() throws Exception {
+        // total 5/min, SMS 2/min, email batch 3/min
+        RateLimitConfigDTO configDTO = new RateLimitConfigDTO();
+        configDTO.setClientId("policy-client");
+        configDTO.setTimeWindowRequests(5);
+        configDTO.setTimeWindowSeconds(60);
+        configDTO.setMonthlyRequests(1000);
+        configDTO.setThrottlingMode(RateLimitConfig.ThrottlingMode.HARD);
+        
+        mockMvc.perform(post("/api/rate-limits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(configDTO)))
+                .andExpect(status().isCreated());
+        
+        mockMvc.perform(post("/api/rate-limits/policy-client/policies")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"channel\":\"SMS\",\"requests\":2,\"windowSeconds\":60}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/rate-limits/policy-client/policies")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"channel\":\"EMAIL\",\"route\":\"POST /api/notifications/email/batch\",\"requests\":3,\"windowSeconds\":60}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/rate-limits/policy-client/policies")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"channel\":\"SMS\",\"route\":\"POST /api/nowhere\",\"requests\":3,\"windowSeconds\":60}"))
+                .andExpect(status().isBadRequest());
+        
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("+1234567890");
+        notification.setMessage("Test message");
+        
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/notifications/sms")
+                    .header("X-Client-Id", "policy-client")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(notification)))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().string("X-RateLimit-Channel-Remaining", String.valueOf(1 - i)));
+        }
+        mockMvc.perform(post("/api/notifications/sms")
+                .header("X-Client-Id", "policy-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("X-RateLimit-Limit", "2"));
+        
+        // the email batch route is capped at 3 even though the client total has room for 3 more
+        BatchNotificationRequest batch = new BatchNotificationRequest();
+        batch.setRecipients(List.of("a@example.com", "b@example.com", "c@example.com", "d@example.com"));
+        batch.setMessage("Test message");
+        batch.setAllowPartial(true);
+        
+        mockMvc.perform(post("/api/notifications/email/batch")
+                .header("X-Client-Id", "policy-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted").value(3))
+                .andExpect(header().string("X-RateLimit-Route-Remaining", "0"))
+                .andExpect(header().string("X-RateLimit-TimeWindow-Remaining", "0"));
+    }
+    
+    @Test
+    void testTenantPool_SharedByItsClients() throws Exception {
+        mockMvc.perform(post("/api/tenants")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tenantId\":\"acme\",\"name\":\"Acme\",\"timeWindowRequests\":3,\"timeWindowSeconds\":60}"))
+                .andExpect(status().isCreated());
+        for (String clientId : List.of("acme-key-1", "acme-key-2")) {
+            mockMvc.perform(post("/api/clients")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"clientId\":\"" + clientId + "\",\"name\":\"Acme key\",\"tenantId\":\"acme\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(post("/api/clients")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"clientId\":\"orphan-key\",\"name\":\"Orphan\",\"tenantId\":\"no-such-tenant\"}"))
+                .andExpect(status().isBadRequest());
+        
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("test@example.com");
+        notification.setMessage("Test message");
+        
+        // each key has the default 100/min of its own, but only 3 between them
+        for (String clientId : List.of("acme-key-1", "acme-key-1", "acme-key-2")) {
+            mockMvc.perform(post("/api/notifications/email")
+                    .header("X-Client-Id", clientId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(notification)))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().exists("X-RateLimit-Tenant-TimeWindow-Remaining"));
+        }
+        mockMvc.perform(post("/api/notifications/email")
+                .header("X-Client-Id", "acme-key-2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("X-RateLimit-Limit", "3"));
+    }
+    
+    @Test
+    void testLoadShedding_LowPriorityShedFirst() throws Exception {
+        for (String[] client : new String[][] {{"free-client", "LOW"}, {"premium-client", "HIGH"}}) {
+            RateLimitConfigDTO configDTO = new RateLimitConfigDTO();
+            configDTO.setClientId(client[0]);
+            configDTO.setTimeWindowRequests(100);
+            configDTO.setTimeWindowSeconds(60);
+            configDTO.setMonthlyRequests(1000);
+            configDTO.setPriority(RateLimitConfig.Priority.valueOf(client[1]));
+            mockMvc.perform(post("/api/rate-limits")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(configDTO)))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(put("/api/system/limits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"globalRequestsPerSecond\":10}"))
+                .andExpect(status().isOk());
+        
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("test@example.com");
+        notification.setMessage("Test message");
+        
+        // off by default
+        ReflectionTestUtils.setField(loadShedder, "enabled", true);
+        try {
+            // the global counter is per second, start early in one
+            while (System.currentTimeMillis() % 1000 > 200) {
+                Thread.sleep(10);
+            }
+            // 8 of 10 used: past the 80% threshold of LOW
+            for (int i = 0; i < 8; i++) {
+                mockMvc.perform(post("/api/notifications/email")
+                        .header("X-Client-Id", "premium-client")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(notification)))
+                        .andExpect(status().isAccepted());
+            }
+            mockMvc.perform(post("/api/notifications/email")
+                    .header("X-Client-Id", "free-client")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(notification)))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+            mockMvc.perform(post("/api/notifications/email")
+                    .header("X-Client-Id", "premium-client")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(notification)))
+                    .andExpect(status().isAccepted());
+        } finally {
+            ReflectionTestUtils.setField(loadShedder, "enabled", false);
+            mockMvc.perform(put("/api/system/limits")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"globalRequestsPerSecond\":1000}"));
+        }
+    }
+    
+    @Test
+    void testShapeMode_DelaysInsteadOfRejecting() throws Exception {
+        RateLimitConfigDTO configDTO = new RateLimitConfigDTO();
+        configDTO.setClientId("shaped-client");
+        configDTO.setTimeWindowRequests(1);
+        configDTO.setTimeWindowSeconds(1);
+        configDTO.setMonthlyRequests(1000);
+        configDTO.setThrottlingMode(RateLimitConfig.ThrottlingMode.SHAPE);
+        mockMvc.perform(post("/api/rate-limits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(configDTO)))
+                .andExpect(status().isCreated());
+        
+        NotificationRequest notification = new NotificationRequest();
+        notification.setRecipient("+1234567890");
+        notification.setMessage("Test message");
+        
+        mockMvc.perform(post("/api/notifications/sms")
+                .header("X-Client-Id", "shaped-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(status().isAccepted());
+        
+        // over the limit: parked instead of rejected, and let through once the window rolls over
+        MvcResult parked = mockMvc.perform(post("/api/notifications/sms")
+                .header("X-Client-Id", "shaped-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(notification)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockAsyncContext asyncContext = (MockAsyncContext) parked.getRequest().getAsyncContext();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (asyncContext.getDispatchedPath() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(asyncContext.getDispatchedPath());
+        mockMvc.perform(servletContext -> {
+                    MockHttpServletRequest dispatched = parked.getRequest();
+                    dispatched.setDispatcherType(DispatcherType.ASYNC);
+                    dispatched.setAsyncStarted(false);
+                    return dispatched;
+                })
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("X-RateLimit-Delay-Ms"))
+                .andExpect(header().string("X-RateLimit-TimeWindow-Remaining", "0"));
+    }
+    
+    @Test
+    void testBatchNotifications_ChargedOnce() throws Exception {
+        RateLimitConfigDTO configDTO = new RateLimitConfigDTO();
+        configDTO.setClientId("batch-client");
+        configDTO.setTimeWindowRequests(5);
+        configDTO.setTimeWindowSeconds(60);
+        configDTO.setMonthlyRequests(1000);
+        configDTO.setThrottlingMode(RateLimitConfig.ThrottlingMode.HARD);
+        
+        mockMvc.perform(post("/api/rate-limits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(configDTO)))
+                .andExpect(status().isCreated());
+        
+        BatchNotificationRequest batch = new BatchNotificationRequest();
+        batch.setRecipients(List.of("+1", "+2", "+3"));
+        batch.setMessage("Test message");
+        
+        mockMvc.perform(post("/api/notifications/sms/batch")
+                .header("X-Client-Id", "batch-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted").value(3))
+                .andExpect(header().string("X-RateLimit-TimeWindow-Remaining", "2"));
+        
+        // 3 more do not fit into the 2 left, all-or-nothing rejects without charging
+        mockMvc.perform(post("/api/notifications/sms/batch")
+                .header("X-Client-Id", "batch-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.status").value("rejected"));
+        
+        // partial acceptance sends to the first 2
+        batch.setAllowPartial(true);
+        mockMvc.perform(post("/api/notifications/sms/batch")
+                .header("X-Client-Id", "batch-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("partial"))
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejectedRecipients[0]").value("+3"))
+                .andExpect(header().string("X-RateLimit-TimeWindow-Remaining", "0"));
+    }
+    
     @Test
     void testSoftThrottling() throws Exception {
         // Create config with soft throttling
@@ -103,7 +478,7 @@ class RateLimitIntegrationTest {
                     .header("X-Client-Id", "soft-throttle-client")
                     .contentType(MediaType.APPLICATION_JSON)
                     .content(objectMapper.writeValueAsString(notification)))
-                    .andExpect(status().isOk());
+                    .andExpect(status().isAccepted());
         }
         
         // 3rd request should still succeed but with warning header
@@ -111,7 +486,7 @@ class RateLimitIntegrationTest {
                 .header("X-Client-Id", "soft-throttle-client")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(notification)))
-                .andExpect(status().isOk())
+                .andExpect(status().isAccepted())
                 .andExpect(header().exists("X-RateLimit-Warning"));
     }
 }
@@ -0,0 +1,56 @@
+package com.corporation.ratelimiter.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.global.adaptive.enabled=true",
+    "rate-limiter.global.adaptive.floor=100",
+    "rate-limiter.global.adaptive.ceiling=150",
+    "rate-limiter.global.adaptive.increase=10",
+    "rate-limiter.global.adaptive.backoff=0.5",
+    "rate-limiter.global.adaptive.min-samples=5",
+    "rate-limiter.global.adaptive.interval-ms=3600000"
+})
+class AdaptiveGlobalLimitTest {
+    
+    @Autowired
+    private AdaptiveGlobalLimit adaptiveGlobalLimit;
+    
+    @Test
+    void testAdjust_IncreasesWhileHealthyAndBacksOffUnderLoad() {
+        adaptiveGlobalLimit.reset(120);
+        assertEquals(120, adaptiveGlobalLimit.getEffectiveLimit(1000));
+        
+        // steady latency: additive increase, up to the ceiling
+        for (int interval = 0; interval < 5; interval++) {
+            record(10, 5_000_000, false);
+            adaptiveGlobalLimit.adjust();
+        }
+        assertEquals(150, adaptiveGlobalLimit.getEffectiveLimit(1000));
+        
+        // too few requests say nothing about the backend
+        record(2, 50_000_000, true);
+        adaptiveGlobalLimit.adjust();
+        assertEquals(150, adaptiveGlobalLimit.getEffectiveLimit(1000));
+        
+        // latency far above the baseline: multiplicative decrease
+        record(10, 50_000_000, false);
+        adaptiveGlobalLimit.adjust();
+        assertEquals(100, adaptiveGlobalLimit.getEffectiveLimit(1000));
+        
+        // errors back off too, never below the floor
+        record(10, 5_000_000, true);
+        adaptiveGlobalLimit.adjust();
+        assertEquals(100, adaptiveGlobalLimit.getEffectiveLimit(1000));
+    }
+    
+    private void record(int requests, long latencyNanos, boolean error) {
+        for (int i = 0; i < requests; i++) {
+            adaptiveGlobalLimit.record(latencyNanos, error);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.dto.ClientUsageDTO;
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.model.RateLimitWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.compact-keys.enabled=true",
+    "rate-limiter.global.requests-per-second=100000000",
+    "rate-limiter.warm-up.enabled=false"
+})
+@Testcontainers
+@Slf4j
+class ClientKeysTest {
+
+    // clients per layout in the memory benchmark
+    private static final int BENCHMARK_CLIENTS = 20_000;
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+
+    @Autowired
+    private ClientKeys clientKeys;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private RateLimitConfigService configService;
+
+    @Autowired
+    private UsageService usageService;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        // the flush took the short ids with it
+        clientKeys.checkSequence();
+    }
+
+    @Test
+    void testCompactLayout() {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId("compact-client");
+        config.setTimeWindowRequests(10);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(3);
+        config.getWindows().add(new RateLimitWindow(5, 3600));
+        configService.createConfig(config);
+
+        assertNull(clientKeys.existing("compact-client"));
+        assertTrue(rateLimitService.checkLimits("compact-client", 2).isAllowed());
+        ClientKeys.Counters counters = clientKeys.existing("compact-client");
+        assertEquals("1", counters.getMonthlyField());
+        assertEquals("rl:tw:1", counters.getTimeWindowKey());
+        assertEquals("2", redisTemplate.opsForValue().get("rl:tw:1"));
+        assertEquals("2", redisTemplate.opsForValue().get("rl:tw:1:3600s"));
+        assertEquals("2", redisTemplate.opsForHash().get(counters.getMonthlyKey(), "1"));
+        assertTrue(redisTemplate.getExpire(counters.getMonthlyKey()) > 0);
+
+        // the monthly counter in the hash blocks like the plain key would
+        RateLimitDecision blocked = rateLimitService.checkLimits("compact-client", 2);
+        assertFalse(blocked.isAllowed());
+        assertEquals(RateLimitDimension.MONTHLY, blocked.getBlockingResult().getDimension());
+
+        rateLimitService.refund("compact-client", 1);
+        assertEquals("1", redisTemplate.opsForHash().get(counters.getMonthlyKey(), "1"));
+        assertEquals("1", redisTemplate.opsForValue().get("rl:tw:1"));
+
+        // a batch gives the new clients their ids in one go, an existing one keeps its own
+        List<RateLimitDecision> decisions = rateLimitService.checkLimits(List.of(
+            new LimitCheck("compact-other", 1, null),
+            new LimitCheck("compact-client", 1, null)));
+        assertTrue(decisions.get(0).isAllowed());
+        assertEquals(2, decisions.get(1).getResult(RateLimitDimension.MONTHLY).getCurrentRequests());
+        assertEquals("2", clientKeys.existing("compact-other").getMonthlyField());
+
+        ClientUsageDTO usage = usageService.getClientUsage("compact-client");
+        assertEquals(2, usage.getMonthly().getUsed());
+        assertEquals(2, usage.getTimeWindow().getUsed());
+        List<String> listed = new ArrayList<>();
+        usageService.forEachClientUsage(client -> listed.add(client.getClientId()));
+        assertEquals(2, listed.size());
+        assertTrue(listed.containsAll(List.of("compact-client", "compact-other")));
+    }
+
+    @Test
+    void testSequenceLostInRedis_DropsCachedIds() {
+        rateLimitService.checkLimits("compact-before-flush", 1);
+        assertEquals("1", clientKeys.of("compact-before-flush").getMonthlyField());
+
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        clientKeys.checkSequence();
+
+        // id 1 goes to whoever is counted first now, the old client is not handed the same one
+        rateLimitService.checkLimits("compact-after-flush", 1);
+        assertEquals("1", clientKeys.of("compact-after-flush").getMonthlyField());
+        assertEquals("2", clientKeys.of("compact-before-flush").getMonthlyField());
+    }
+
+    @Test
+    void testIdBuckets_DerivedFromExpectedClientsAndPinnedInRedis() {
+        // 1 million expected clients at 100 per bucket
+        clientKeys.init();
+        assertEquals(10_000, clientKeys.getIdBuckets());
+        assertEquals("10000", redisTemplate.opsForValue().get(ClientKeys.ID_BUCKETS_KEY));
+
+        // ids stored by an instance with another count are looked up where they are
+        redisTemplate.opsForValue().set(ClientKeys.ID_BUCKETS_KEY, "64");
+        clientKeys.init();
+        assertEquals(64, clientKeys.getIdBuckets());
+
+        redisTemplate.delete(ClientKeys.ID_BUCKETS_KEY);
+        clientKeys.init();
+        assertEquals(10_000, clientKeys.getIdBuckets());
+    }
+
+    /**
+     * Memory benchmark: the same checks for the same clients in each layout,
+     * reported as redis used_memory growth per client. Only runs with
+     * mvn -Pbenchmark test.
+     */
+    @Test
+    @Tag("benchmark")
+    void testCompactLayoutUsesLessMemoryPerClient() {
+        List<LimitCheck> checks = new ArrayList<>(BENCHMARK_CLIENTS);
+        for (int i = 0; i < BENCHMARK_CLIENTS; i++) {
+            // ids the length of the ones real tenants send
+            String clientId = "customer-" + UUID.nameUUIDFromBytes(("client-" + i).getBytes(StandardCharsets.UTF_8));
+            checks.add(new LimitCheck(clientId, 1, null));
+        }
+
+        ReflectionTestUtils.setField(clientKeys, "enabled", false);
+        double plain;
+        try {
+            plain = bytesPerClient(checks);
+        } finally {
+            ReflectionTestUtils.setField(clientKeys, "enabled", true);
+        }
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+        clientKeys.checkSequence();
+        double compact = bytesPerClient(checks);
+
+        log.info("Redis memory per client, {} clients: plain keys {} bytes, compact {} bytes",
+            BENCHMARK_CLIENTS, String.format("%.1f", plain), String.format("%.1f", compact));
+        assertTrue(compact < plain, "compact " + compact + " bytes per client, plain " + plain);
+    }
+
+    private double bytesPerClient(List<LimitCheck> checks) {
+        long before = usedMemory();
+        for (int from = 0; from < checks.size(); from += 500) {
+            for (RateLimitDecision decision : rateLimitService.checkLimits(checks.subList(from, Math.min(from + 500, checks.size())))) {
+                assertTrue(decision.isAllowed());
+            }
+        }
+        return (double) (usedMemory() - before) / checks.size();
+    }
+
+    private long usedMemory() {
+        try (RedisConnection connection = redisTemplate.getConnectionFactory().getConnection()) {
+            return Long.parseLong(connection.serverCommands().info("memory").getProperty("used_memory"));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.corporation.ratelimiter.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.concurrency.distributed=true",
+    "rate-limiter.concurrency.lease-ms=1000",
+    "rate-limiter.concurrency.renew-ms=600000"
+})
+@Testcontainers
+class ConcurrencyLimiterTest {
+    
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+    
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+    
+    @Autowired
+    private ConcurrencyLimiter concurrencyLimiter;
+    
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+    
+    @Test
+    void testLeases_ReleasedAndExpired() throws Exception {
+        String clientId = "concurrency-client";
+        
+        ConcurrencyPermit first = concurrencyLimiter.tryAcquire(clientId, 2);
+        ConcurrencyPermit second = concurrencyLimiter.tryAcquire(clientId, 2);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotNull(first.getLeaseId());
+        assertNull(concurrencyLimiter.tryAcquire(clientId, 2));
+        
+        // a released slot is free right away
+        concurrencyLimiter.release(first);
+        ConcurrencyPermit third = concurrencyLimiter.tryAcquire(clientId, 2);
+        assertNotNull(third);
+        assertNull(concurrencyLimiter.tryAcquire(clientId, 2));
+        
+        // leases nobody renews (a crashed instance) expire and free their slots
+        Thread.sleep(1200);
+        assertNotNull(concurrencyLimiter.tryAcquire(clientId, 2));
+        assertNotNull(concurrencyLimiter.tryAcquire(clientId, 2));
+        
+        // 0 is unlimited
+        assertNotNull(concurrencyLimiter.tryAcquire(clientId, 0));
+    }
+}
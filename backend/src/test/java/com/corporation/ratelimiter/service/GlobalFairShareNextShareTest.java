@@ -0,0 +1,23 @@
+package com.corporation.ratelimiter.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the share arithmetic on its own, no context or redis needed
+class GlobalFairShareNextShareTest {
+    
+    @Test
+    void testNextShare_MaxMinFair() {
+        // a single client is never capped below the global limit
+        assertEquals(0, GlobalFairShare.nextShare(0, 1000, 1, 1, 1000));
+        // two heavy clients used up the budget: equal split
+        assertEquals(500, GlobalFairShare.nextShare(0, 1000, 2, 2, 1000));
+        assertEquals(500, GlobalFairShare.nextShare(500, 1000, 2, 2, 1000));
+        // one heavy, one light using 10: the heavy one moves towards the 990 left
+        assertEquals(745, GlobalFairShare.nextShare(500, 1000, 2, 1, 510));
+        assertEquals(867, GlobalFairShare.nextShare(745, 1000, 2, 1, 755));
+        // nobody capped and room left: the cap goes away
+        assertEquals(0, GlobalFairShare.nextShare(500, 1000, 2, 0, 300));
+    }
+}
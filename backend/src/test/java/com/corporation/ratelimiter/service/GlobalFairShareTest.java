@@ -0,0 +1,72 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.fairness.enabled=true",
+    "rate-limiter.fairness.interval-ms=3600000"
+})
+@Testcontainers
+class GlobalFairShareTest {
+    
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+    
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+    
+    @Autowired
+    private RateLimitService rateLimitService;
+    
+    @Autowired
+    private GlobalFairShare fairShare;
+    
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+    
+    @Test
+    void testCheckLimits_TracksActiveAndCappedClients() throws Exception {
+        // the bookkeeping is per second, start early in one
+        while (System.currentTimeMillis() % 1000 > 200) {
+            Thread.sleep(10);
+        }
+        List<String> keys = fairShare.bookkeepingKeys();
+        
+        assertTrue(rateLimitService.checkLimits("fair-client-1", 2).isAllowed());
+        assertTrue(rateLimitService.checkLimits("fair-client-2", 1).isAllowed());
+        // more than the whole global budget is more than any share
+        RateLimitDecision rejected = rateLimitService.checkLimits("fair-client-2", 5000);
+        assertFalse(rejected.isAllowed());
+        assertNotNull(rejected.getResult(RateLimitDimension.FAIR_SHARE));
+        
+        assertEquals(2, redisTemplate.opsForHyperLogLog().size(keys.get(0)));
+        assertEquals(1, redisTemplate.opsForHyperLogLog().size(keys.get(1)));
+        assertEquals("3", redisTemplate.opsForValue().get(keys.get(2)));
+    }
+}
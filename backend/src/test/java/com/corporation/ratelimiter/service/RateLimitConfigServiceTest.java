@@ -0,0 +1,78 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.repository.RateLimitConfigRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.configs.cache-ttl-ms=200",
+    "rate-limiter.warm-up.enabled=false"
+})
+@Testcontainers
+class RateLimitConfigServiceTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+
+    @Autowired
+    private RateLimitConfigService configService;
+
+    @Autowired
+    private RateLimitConfigRepository repository;
+
+    @Test
+    void testCache_WritesApplyAtOnceOtherInstancesWithinTtl() throws Exception {
+        // never seen: loaded on the first lookup, the defaults without a config
+        assertEquals(100, configService.getConfigOrDefault("cached-client").getTimeWindowRequests());
+
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId("cached-client");
+        config.setTimeWindowRequests(5);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        config.setMaxConcurrentRequests(3);
+        configService.createConfig(config);
+        assertEquals(5, configService.getConfigOrDefault("cached-client").getTimeWindowRequests());
+        assertEquals(3, configService.getMaxConcurrentRequests("cached-client"));
+
+        // written by another instance, straight to the database
+        RateLimitConfig stored = repository.findByClientId("cached-client").orElseThrow();
+        stored.setTimeWindowRequests(7);
+        repository.save(stored);
+        assertEquals(5, configService.getConfigOrDefault("cached-client").getTimeWindowRequests());
+        Thread.sleep(250);
+        // past the ttl a read still gets the old one and starts a reload in the background
+        long deadline = System.currentTimeMillis() + 5000;
+        while (configService.getConfigOrDefault("cached-client").getTimeWindowRequests() != 7
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Map<String, RateLimitConfig> batch = configService.getConfigsOrDefault(List.of("cached-client", "cached-unknown"));
+        assertEquals(7, batch.get("cached-client").getTimeWindowRequests());
+        assertEquals(100, batch.get("cached-unknown").getTimeWindowRequests());
+
+        configService.deleteConfig("cached-client");
+        assertEquals(100, configService.getConfigOrDefault("cached-client").getTimeWindowRequests());
+        assertEquals(0, configService.getMaxConcurrentRequests("cached-client"));
+    }
+}
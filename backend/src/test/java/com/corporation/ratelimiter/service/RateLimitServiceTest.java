@@ -1,6 +1,10 @@
 package com.corporation.ratelimiter.service;
 
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.core.RateLimitResult;
 import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.model.RateLimitWindow;
 import com.corporation.ratelimiter.model.SystemLimitConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,6 +18,8 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -39,6 +45,12 @@ class RateLimitServiceTest {
     @Autowired
     private SystemLimitConfigService systemLimitConfigService;
     
+    @Autowired
+    private SoftLimitCounter softLimitCounter;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
     
@@ -93,6 +105,36 @@ class RateLimitServiceTest {
         assertEquals(3, result.getLimit());
     }
     
+    @Test
+    void testSoftMode_CountedInBackground() {
+        String clientId = "soft-client";
+        
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId(clientId);
+        config.setTimeWindowRequests(3);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        config.setThrottlingMode(RateLimitConfig.ThrottlingMode.SOFT);
+        configService.createConfig(config);
+        
+        // never blocked, the warning comes from the local count
+        RateLimitDecision decision = null;
+        for (int i = 0; i < 4; i++) {
+            decision = rateLimitService.checkLimits(clientId, 1);
+            assertTrue(decision.isAllowed());
+        }
+        RateLimitResult exceeded = decision.getFirstExceeded();
+        assertNotNull(exceeded);
+        assertEquals(RateLimitDimension.TIME_WINDOW, exceeded.getDimension());
+        assertEquals(4, exceeded.getCurrentRequests());
+        
+        // and reaches redis with the next flush
+        softLimitCounter.flush();
+        assertEquals("4", redisTemplate.opsForValue().get(RateLimitService.timeWindowKey(clientId)));
+        assertTrue(redisTemplate.getExpire(RateLimitService.timeWindowKey(clientId)) > 0);
+        assertEquals(5, rateLimitService.checkLimits(clientId, 1).getResult(RateLimitDimension.TIME_WINDOW).getCurrentRequests());
+    }
+    
     @Test
     void testMonthlyLimit_WithinLimit() {
         String clientId = "test-client-3";
@@ -111,6 +153,62 @@ class RateLimitServiceTest {
         }
     }
     
+    @Test
+    void testTimeWindowLimit_StackedWindows() {
+        String clientId = "test-client-stacked";
+        
+        // 10 per minute, but also at most 3 per hour and 100 per day
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId(clientId);
+        config.setTimeWindowRequests(10);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        config.setWindows(List.of(new RateLimitWindow(3, 3600), new RateLimitWindow(100, 86400)));
+        configService.createConfig(config);
+        
+        for (int i = 0; i < 3; i++) {
+            RateLimitDecision decision = rateLimitService.checkLimits(clientId, 1);
+            assertTrue(decision.isAllowed());
+            RateLimitResult tightest = decision.getTightestResult(RateLimitDimension.TIME_WINDOW);
+            assertEquals(3, tightest.getLimit());
+            assertEquals(2 - i, tightest.getRemainingRequests());
+        }
+        
+        // the hourly window blocks, and nothing is charged to the others
+        RateLimitDecision decision = rateLimitService.checkLimits(clientId, 1);
+        assertFalse(decision.isAllowed());
+        assertEquals(3, decision.getBlockingResult().getLimit());
+        assertEquals("3", redisTemplate.opsForValue().get(RateLimitService.timeWindowKey(clientId)));
+        assertEquals("3", redisTemplate.opsForValue().get(RateLimitService.timeWindowKey(clientId, 86400)));
+    }
+    
+    @Test
+    void testTimeWindowLimit_WeightedCost() {
+        String clientId = "test-client-weighted";
+        
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId(clientId);
+        config.setTimeWindowRequests(10);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        configService.createConfig(config);
+        
+        // 4 + 4 units fit into 10
+        assertTrue(rateLimitService.checkTimeWindowLimit(clientId, 4).isAllowed());
+        RateLimitResult result = rateLimitService.checkTimeWindowLimit(clientId, 4);
+        assertTrue(result.isAllowed());
+        assertEquals(2, result.getRemainingRequests());
+        
+        // 5 more units do not fit and must not be charged
+        result = rateLimitService.checkTimeWindowLimit(clientId, 5);
+        assertFalse(result.isAllowed());
+        assertEquals(13, result.getCurrentRequests());
+        
+        // so the last 2 units are still available
+        assertTrue(rateLimitService.checkTimeWindowLimit(clientId, 2).isAllowed());
+        assertFalse(rateLimitService.checkTimeWindowLimit(clientId).isAllowed());
+    }
+    
     @Test
     void testGlobalLimit() {
         SystemLimitConfig config = new SystemLimitConfig();
@@ -127,5 +225,18 @@ class RateLimitServiceTest {
         RateLimitResult result = rateLimitService.checkGlobalLimit();
         assertFalse(result.isAllowed());
     }
+    
+    @Test
+    void testIdempotencyKey_PendingUntilCompletedThenFullTtl() {
+        String key = IdempotencyService.redisKey("idempotent-client", "order-1");
+        
+        assertTrue(rateLimitService.checkLimits("idempotent-client", 1, null, "order-1").isAllowed());
+        // a crashed request only blocks its retries for the pending ttl
+        long pendingTtl = redisTemplate.getExpire(key);
+        assertTrue(pendingTtl > 0 && pendingTtl <= idempotencyService.getPendingTtlSeconds(), "pending ttl " + pendingTtl);
+        assertTrue(rateLimitService.checkLimits("idempotent-client", 1, null, "order-1").isDuplicate());
+        
+        idempotencyService.complete("idempotent-client", "order-1", 202, "{}");
+        assertTrue(redisTemplate.getExpire(key) > idempotencyService.getPendingTtlSeconds());
+    }
 }
-
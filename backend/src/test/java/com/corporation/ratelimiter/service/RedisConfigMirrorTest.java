@@ -0,0 +1,114 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.model.RateLimitConfig;
+import com.corporation.ratelimiter.model.RateLimitWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.configs.resolve-in-redis=true",
+    "rate-limiter.warm-up.enabled=false"
+})
+@Testcontainers
+class RedisConfigMirrorTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private RateLimitConfigService configService;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // also drops the mirrored configs, the first check has to bring them back
+        redisTemplate.getConnectionFactory().getConnection().flushAll();
+    }
+
+    @Test
+    void testLimitsResolvedInRedis() {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId("mirrored-client");
+        config.setTimeWindowRequests(5);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        config.getWindows().add(new RateLimitWindow(2, 10));
+        configService.createConfig(config);
+        assertEquals("5", redisTemplate.opsForHash().get(RedisConfigMirror.clientKey("mirrored-client"), "tw_requests"));
+
+        assertTrue(rateLimitService.checkLimits("mirrored-client", 1).isAllowed());
+        RateLimitDecision second = rateLimitService.checkLimits("mirrored-client", 1);
+        assertTrue(second.isAllowed());
+        assertEquals(4, second.getResults().size());
+        assertEquals(RateLimitDimension.GLOBAL, second.getResults().get(0).getDimension());
+        assertEquals(1000, second.getResult(RateLimitDimension.MONTHLY).getLimit());
+
+        // the 2 per 10 seconds window is full
+        RateLimitDecision third = rateLimitService.checkLimits("mirrored-client", 1);
+        assertFalse(third.isAllowed());
+        assertEquals(2, third.getBlockingResult().getLimit());
+
+        // a change written to redis by another instance applies on the next check
+        redisTemplate.opsForHash().put(RedisConfigMirror.clientKey("mirrored-client"), "windows", "");
+        redisTemplate.opsForHash().put(RedisConfigMirror.clientKey("mirrored-client"), "mode", "SHAPE");
+        RateLimitDecision fourth = rateLimitService.checkLimits("mirrored-client", 1);
+        assertTrue(fourth.isAllowed());
+        assertTrue(fourth.isShaped());
+        assertEquals(3, fourth.getResults().size());
+    }
+
+    @Test
+    void testDefaultsAndSoftModeInBatch() {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setClientId("mirrored-soft");
+        config.setTimeWindowRequests(1);
+        config.setTimeWindowSeconds(60);
+        config.setMonthlyRequests(1000);
+        config.setThrottlingMode(RateLimitConfig.ThrottlingMode.SOFT);
+        configService.createConfig(config);
+
+        List<RateLimitDecision> decisions = rateLimitService.checkLimits(List.of(
+            new LimitCheck("mirrored-soft", 1, null),
+            new LimitCheck("mirrored-soft", 1, null),
+            new LimitCheck("mirrored-unknown", 1, null)));
+
+        // over its limit but soft: allowed, with the count reported
+        assertTrue(decisions.get(1).isAllowed());
+        assertEquals(2, decisions.get(1).getResult(RateLimitDimension.TIME_WINDOW).getCurrentRequests());
+        assertTrue(decisions.get(1).getResult(RateLimitDimension.TIME_WINDOW).isSoft());
+        // no config of its own: the defaults from application.yml
+        assertTrue(decisions.get(2).isAllowed());
+        assertEquals(100, decisions.get(2).getResult(RateLimitDimension.TIME_WINDOW).getLimit());
+        assertEquals(10000, decisions.get(2).getResult(RateLimitDimension.MONTHLY).getLimit());
+
+        configService.deleteConfig("mirrored-soft");
+        assertFalse(redisTemplate.hasKey(RedisConfigMirror.clientKey("mirrored-soft")));
+    }
+}
@@ -0,0 +1,71 @@
+package com.corporation.ratelimiter.service;
+
+import com.corporation.ratelimiter.redis.QuotaScript;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "rate-limiter.warm-up.checks=50"
+})
+@Testcontainers
+class WarmUpTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", redis::getHost);
+        registry.add("spring.data.redis.port", redis::getFirstMappedPort);
+    }
+
+    @Autowired
+    private WarmUp warmUp;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Test
+    void testWarmUp_LoadsScriptsAndChargesNothing() {
+        // ran once before the context was handed out
+        assertEquals(WarmUp.State.DONE, warmUp.getReport().getState());
+
+        try (RedisConnection connection = redisTemplate.getConnectionFactory().getConnection()) {
+            connection.scriptingCommands().scriptFlush();
+        }
+        warmUp.run(null);
+
+        WarmUp.Report report = warmUp.getReport();
+        assertEquals(WarmUp.State.DONE, report.getState());
+        assertEquals(7, report.getScriptsLoaded());
+        assertTrue(report.getConnectionsOpened() > 0);
+        assertEquals(50, report.getChecks());
+        assertTrue(report.getErrors().isEmpty(), report.getErrors().toString());
+
+        try (RedisConnection connection = redisTemplate.getConnectionFactory().getConnection()) {
+            assertEquals(List.of(true, true),
+                connection.scriptingCommands().scriptExists(QuotaScript.SHA1, QuotaScript.REFUND_SHA1));
+        }
+        // the synthetic client has used nothing
+        assertEquals(0, rateLimitService.checkTimeWindowLimit(WarmUp.CLIENT_ID, 0).getCurrentRequests());
+        assertEquals(0, rateLimitService.checkMonthlyLimit(WarmUp.CLIENT_ID, 0).getCurrentRequests());
+    }
+}
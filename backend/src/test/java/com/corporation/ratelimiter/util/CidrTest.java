@@ -0,0 +1,63 @@
+package com.corporation.ratelimiter.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CidrTest {
+    
+    @Test
+    void testParse_PrefixLengthsAtTheEdges() {
+        Cidr everything = Cidr.parse("0.0.0.0/0");
+        assertTrue(everything.isIpv4());
+        assertEquals(0, everything.getPrefixLength());
+        assertEquals("0.0.0.0/0", everything.toString());
+        
+        assertEquals(Cidr.parse("203.0.113.7/32"), Cidr.parse("203.0.113.7"));
+        assertEquals("203.0.113.7/32", Cidr.parse("203.0.113.7").toString());
+        
+        Cidr host6 = Cidr.parse("2001:db8::1/128");
+        assertFalse(host6.isIpv4());
+        assertEquals(host6, Cidr.parse("2001:db8::1"));
+        assertEquals("2001:db8::1/128", host6.toString());
+        assertEquals("::/0", Cidr.parse("2001:db8::/0").toString());
+    }
+    
+    @Test
+    void testParse_ClearsHostBits() {
+        assertEquals("203.0.113.0/24", Cidr.parse("203.0.113.77/24").toString());
+        assertEquals("10.0.0.0/9", Cidr.parse("10.127.255.255/9").toString());
+        assertEquals("2001:db8::/32", Cidr.parse("2001:db8:ffff::1/32").toString());
+        assertEquals(Cidr.parse("198.51.100.0/22"), Cidr.parse(" 198.51.103.255/22 "));
+        assertArrayEquals(new byte[] {(byte) 192, (byte) 168, 0, 0}, Cidr.mask(new byte[] {(byte) 192, (byte) 168, 1, 1}, 16));
+    }
+    
+    @Test
+    void testParse_Ipv4MappedIpv6CountsAsIpv4() {
+        Cidr mapped = Cidr.parse("::ffff:203.0.113.7");
+        assertTrue(mapped.isIpv4());
+        assertEquals(Cidr.parse("203.0.113.7"), mapped);
+        assertArrayEquals(new byte[] {(byte) 203, 0, 113, 7}, Cidr.parseAddress("[::ffff:203.0.113.7]:443"));
+    }
+    
+    @Test
+    void testParse_RejectsMalformedInput() {
+        for (String bad : new String[] {null, "", "   ", "example.com", "localhost", "256.0.0.1", "1.2.3", "1.2.3.4.5",
+                "1.2.3.-4", "1..3.4", "10.0.0.0/", "10.0.0.0/x", "10.0.0.0/33", "10.0.0.0/-1", "2001:db8::/129",
+                "2001:db8::g", "[2001:db8::1", "/24"}) {
+            assertThrows(IllegalArgumentException.class, () -> Cidr.parse(bad), "accepted " + bad);
+        }
+    }
+    
+    @Test
+    void testParseAddress_AsSentByClientsAndProxies() {
+        assertArrayEquals(new byte[] {(byte) 203, 0, 113, 7}, Cidr.parseAddress("203.0.113.7:51234"));
+        assertArrayEquals(Cidr.parseAddress("2001:db8::1"), Cidr.parseAddress("[2001:db8::1]:8080"));
+        assertArrayEquals(Cidr.parseAddress("fe80::1"), Cidr.parseAddress("fe80::1%eth0"));
+        assertEquals(16, Cidr.parseAddress("::1").length);
+        // anything that is not a literal is never looked up
+        assertNull(Cidr.parseAddress("unknown"));
+        assertNull(Cidr.parseAddress("db8::zz"));
+        assertNull(Cidr.parseAddress(null));
+    }
+}
@@ -0,0 +1,64 @@
+package com.corporation.ratelimiter.util;
+
+import com.corporation.ratelimiter.model.IpRule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CidrTrieTest {
+    
+    @Test
+    void testLongestMatch_MostSpecificRuleWins() {
+        CidrTrie<IpRule.Action> rules = new CidrTrie<>();
+        rules.put(Cidr.parse("10.0.0.0/8"), IpRule.Action.DENY);
+        rules.put(Cidr.parse("10.1.0.0/16"), IpRule.Action.ALLOW);
+        rules.put(Cidr.parse("10.1.2.3/32"), IpRule.Action.DENY);
+        
+        assertEquals(IpRule.Action.DENY, rules.longestMatch(address("10.200.0.1")));
+        assertEquals(IpRule.Action.ALLOW, rules.longestMatch(address("10.1.99.1")));
+        assertEquals(IpRule.Action.DENY, rules.longestMatch(address("10.1.2.3")));
+        assertEquals(IpRule.Action.ALLOW, rules.longestMatch(address("10.1.2.4")));
+        assertNull(rules.longestMatch(address("11.0.0.1")));
+        
+        // the order they were added in does not matter
+        CidrTrie<IpRule.Action> reversed = new CidrTrie<>();
+        reversed.put(Cidr.parse("10.1.2.3/32"), IpRule.Action.DENY);
+        reversed.put(Cidr.parse("10.1.0.0/16"), IpRule.Action.ALLOW);
+        reversed.put(Cidr.parse("10.0.0.0/8"), IpRule.Action.DENY);
+        assertEquals(IpRule.Action.ALLOW, reversed.longestMatch(address("10.1.99.1")));
+        assertEquals(IpRule.Action.DENY, reversed.longestMatch(address("10.1.2.3")));
+    }
+    
+    @Test
+    void testLongestMatch_DefaultRouteAndFamilies() {
+        CidrTrie<IpRule.Action> rules = new CidrTrie<>();
+        rules.put(Cidr.parse("0.0.0.0/0"), IpRule.Action.DENY);
+        rules.put(Cidr.parse("2001:db8::/32"), IpRule.Action.ALLOW);
+        rules.put(Cidr.parse("2001:db8::1/128"), IpRule.Action.DENY);
+        
+        // /0 matches every IPv4 address but no IPv6 one
+        assertEquals(IpRule.Action.DENY, rules.longestMatch(address("255.255.255.255")));
+        assertEquals(IpRule.Action.DENY, rules.longestMatch(address("::ffff:192.0.2.1")));
+        assertNull(rules.longestMatch(address("2001:db9::1")));
+        assertEquals(IpRule.Action.ALLOW, rules.longestMatch(address("2001:db8::2")));
+        assertEquals(IpRule.Action.DENY, rules.longestMatch(address("2001:db8::1")));
+    }
+    
+    @Test
+    void testPut_SameNetworkReplacesItsValue() {
+        CidrTrie<IpRule.Action> rules = new CidrTrie<>();
+        assertTrue(rules.isEmpty());
+        rules.put(Cidr.parse("192.0.2.0/24"), IpRule.Action.ALLOW);
+        // host bits are cleared, so this is the same network
+        rules.put(Cidr.parse("192.0.2.99/24"), IpRule.Action.DENY);
+        rules.put(Cidr.parse("192.0.2.0/25"), IpRule.Action.ALLOW);
+        
+        assertEquals(2, rules.size());
+        assertEquals(IpRule.Action.DENY, rules.longestMatch(address("192.0.2.200")));
+        assertEquals(IpRule.Action.ALLOW, rules.longestMatch(address("192.0.2.1")));
+    }
+    
+    private static byte[] address(String text) {
+        return Cidr.parseAddress(text);
+    }
+}
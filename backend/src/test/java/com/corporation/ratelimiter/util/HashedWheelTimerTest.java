@@ -0,0 +1,33 @@
+package com.corporation.ratelimiter.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+
+    @Test
+    void testStop_ReturnsTasksThatNeverRan() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 1, 8, Runnable::run);
+        CountDownLatch ran = new CountDownLatch(1);
+        timer.schedule(ran::countDown, 0);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        Runnable parked = () -> fail("should not run");
+        Runnable parkedLonger = () -> fail("should not run");
+        timer.schedule(parked, 60_000);
+        timer.schedule(parkedLonger, 120_000);
+
+        List<Runnable> unprocessed = timer.stop();
+        assertEquals(2, unprocessed.size());
+        assertTrue(unprocessed.containsAll(List.of(parked, parkedLonger)));
+
+        // nothing scheduled after stop would ever run
+        assertThrows(RejectedExecutionException.class, () -> timer.schedule(() -> { }, 0));
+    }
+}
@@ -0,0 +1,34 @@
+package com.corporation.ratelimiter.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ThreadFactoriesTest {
+    
+    @Test
+    void testNamed_VirtualOnJdk21() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need JDK 21+");
+        assertTrue(ThreadFactories.virtualThreadsAvailable());
+        
+        Thread thread = ThreadFactories.named("test-virtual", true).newThread(() -> { });
+        // Thread.isVirtual() is not in the Java 17 API the build targets
+        assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+        assertEquals("test-virtual-0", thread.getName());
+    }
+    
+    @Test
+    void testNamed_PlatformDaemonThreads() {
+        Thread first = ThreadFactories.named("test-platform", false).newThread(() -> { });
+        assertTrue(first.isDaemon());
+        assertEquals("test-platform-0", first.getName());
+        
+        if (!ThreadFactories.virtualThreadsAvailable()) {
+            // before 21 asking for virtual threads falls back to the same
+            Thread fallback = ThreadFactories.named("test-fallback", true).newThread(() -> { });
+            assertTrue(fallback.isDaemon());
+            assertEquals("test-fallback-0", fallback.getName());
+        }
+    }
+}
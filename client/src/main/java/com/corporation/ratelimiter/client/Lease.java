@@ -0,0 +1,111 @@
+package com.corporation.ratelimiter.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Units leased for one client and resource, spent with a compare-and-set loop
+ * so deciding a request takes no lock. A lease with no units can also stand
+ * for a denial: nothing is asked for again until its retry time.
+ */
+class Lease {
+    
+    // resets are reported in whole seconds, two readings of the same one can be this far apart
+    private static final long SAME_RESET_TOLERANCE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final AtomicLong remaining;
+    private final long expiresAtNanos;
+    // when the counter the service reported for the grant resets, 0 when unknown
+    private final long resetAtNanos;
+    // units below which a renewal is started
+    private final long lowWater;
+    // whether the units were charged by the service and are owed back when unspent
+    private final boolean charged;
+    // the service's id of the lease, the unspent units are given back under it. may be null
+    private final String leaseId;
+    private final AtomicBoolean renewing = new AtomicBoolean();
+    private volatile long retryAfterNanos;
+    
+    // units that were not charged, e.g. while failing open
+    Lease(long units, long expiresAtNanos, long lowWater) {
+        this(units, expiresAtNanos, 0, lowWater, false, null);
+    }
+    
+    Lease(long units, long expiresAtNanos, long resetAtNanos, long lowWater, boolean charged, String leaseId) {
+        this.remaining = new AtomicLong(units);
+        this.expiresAtNanos = expiresAtNanos;
+        this.resetAtNanos = resetAtNanos;
+        this.lowWater = lowWater;
+        this.charged = charged;
+        this.leaseId = leaseId;
+    }
+    
+    static Lease denied(long retryAfterNanos) {
+        Lease lease = new Lease(0, retryAfterNanos, 0);
+        lease.retryAfterNanos = retryAfterNanos;
+        return lease;
+    }
+    
+    boolean tryTake(long units) {
+        if (System.nanoTime() - expiresAtNanos >= 0) {
+            return false;
+        }
+        while (true) {
+            long current = remaining.get();
+            if (current < units) {
+                return false;
+            }
+            if (remaining.compareAndSet(current, current - units)) {
+                return true;
+            }
+        }
+    }
+    
+    // takes every unit left, so nothing can be spent from this lease any more
+    long drain() {
+        return remaining.getAndSet(0);
+    }
+    
+    long remaining() {
+        return remaining.get();
+    }
+    
+    void add(long units) {
+        remaining.addAndGet(units);
+    }
+    
+    boolean isExpired(long nowNanos) {
+        return nowNanos - expiresAtNanos >= 0;
+    }
+    
+    // whether both were charged in the same window of the reported counter
+    boolean isSameWindow(Lease other) {
+        return resetAtNanos != 0 && other.resetAtNanos != 0
+            && Math.abs(resetAtNanos - other.resetAtNanos) < SAME_RESET_TOLERANCE_NANOS;
+    }
+    
+    boolean isCharged() {
+        return charged;
+    }
+    
+    String getLeaseId() {
+        return leaseId;
+    }
+    
+    boolean isRetryBlocked(long nowNanos) {
+        return retryAfterNanos != 0 && nowNanos - retryAfterNanos < 0;
+    }
+    
+    // a renewal that got nothing: the next one may start after the retry time
+    void blockRetriesUntil(long nanos) {
+        retryAfterNanos = nanos;
+        renewing.set(false);
+    }
+    
+    // whether it is time to fetch the next lease, true only for the first caller that asks
+    boolean startRenewal(long nowNanos, long aheadNanos) {
+        boolean low = remaining.get() <= lowWater || expiresAtNanos - nowNanos <= aheadNanos;
+        return low && !isRetryBlocked(nowNanos) && renewing.compareAndSet(false, true);
+    }
+}
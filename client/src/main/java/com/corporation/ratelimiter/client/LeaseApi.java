@@ -0,0 +1,69 @@
+package com.corporation.ratelimiter.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The two lease calls of the service's limit decision API.
+ */
+class LeaseApi {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final HttpClient httpClient;
+    private final URI leaseUri;
+    private final URI returnUri;
+    private final Duration timeout;
+    
+    LeaseApi(String baseUrl, Duration timeout) {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.leaseUri = URI.create(base + "/api/limits/lease");
+        this.returnUri = URI.create(base + "/api/limits/lease/return");
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+    
+    // units left on the previous lease, if it is still open, move over to the new one
+    LeaseGrant lease(LeaseKey key, long units, String previousLeaseId) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = post(leaseUri, key, units, previousLeaseId);
+        return objectMapper.readValue(response.body(), LeaseGrant.class);
+    }
+    
+    void giveBack(LeaseKey key, String leaseId, long units) throws IOException, InterruptedException {
+        post(returnUri, key, units, leaseId);
+    }
+    
+    private HttpResponse<byte[]> post(URI uri, LeaseKey key, long units, String leaseId)
+            throws IOException, InterruptedException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("clientId", key.getClientId());
+        body.put("resource", key.getResource());
+        body.put("units", units);
+        body.put("leaseId", leaseId);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(timeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+            .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 == 4) {
+            // e.g. an unknown resource, asking again will not help
+            throw new IllegalArgumentException("POST " + uri + " returned " + response.statusCode()
+                + ": " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("POST " + uri + " returned " + response.statusCode());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,22 @@
+package com.corporation.ratelimiter.client;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Answer of /api/limits/lease.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaseGrant {
+    // 0 when nothing could be leased
+    private long granted;
+    private long remaining;
+    private long resetSeconds;
+    // how long the granted units may be spent
+    private long ttlMs;
+    // to give unspent units back with
+    private String leaseId;
+}
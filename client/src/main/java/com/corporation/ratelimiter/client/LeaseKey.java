@@ -0,0 +1,10 @@
+package com.corporation.ratelimiter.client;
+
+import lombok.Value;
+
+@Value
+class LeaseKey {
+    String clientId;
+    // route name or channel, null for none
+    String resource;
+}
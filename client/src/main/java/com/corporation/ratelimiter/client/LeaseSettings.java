@@ -0,0 +1,43 @@
+package com.corporation.ratelimiter.client;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link RateLimitClient}. Only the base url is required.
+ */
+@Value
+@Builder
+public class LeaseSettings {
+    
+    // where the rate limiting service runs, e.g. http://rate-limiter:8080
+    String baseUrl;
+    
+    // units asked for per lease; more are leased when a single request costs more
+    @Builder.Default
+    int leaseUnits = 100;
+    
+    // share of a lease left at which the next one is fetched in the background
+    @Builder.Default
+    double renewBelow = 0.25;
+    
+    // a lease this close to its expiry is renewed too
+    @Builder.Default
+    Duration renewAhead = Duration.ofMillis(200);
+    
+    @Builder.Default
+    Duration timeout = Duration.ofSeconds(2);
+    
+    // allow requests while the service cannot be reached, as the service does when redis is down
+    @Builder.Default
+    boolean failOpen = true;
+    
+    // how long such a decision stands before the service is asked again
+    @Builder.Default
+    Duration retryAfterError = Duration.ofSeconds(1);
+    
+    @Builder.Default
+    int renewThreads = 1;
+}
@@ -0,0 +1,218 @@
+package com.corporation.ratelimiter.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides rate limits in process. Units are leased from the service per
+ * client and resource (POST /api/limits/lease, charged against every limit
+ * like requests of the client would be) and spent locally without a network
+ * hop or a lock. The next lease is fetched in the background once a lease
+ * runs low or is about to expire; only the first request, and requests after
+ * a lease ran out unexpectedly fast, wait for the service.
+ *
+ * Leases end when the first counter they were charged to resets, at most one
+ * second for the global per-second limit. Units left over at a renewal move
+ * to the next lease when it was charged in the same window, the ones left at
+ * {@link #close()} are given back.
+ * Concurrency limits and load shedding are not covered, they are decided per
+ * request by the service.
+ */
+@Slf4j
+public class RateLimitClient implements AutoCloseable {
+    
+    private final LeaseSettings settings;
+    private final LeaseApi api;
+    private final Map<LeaseKey, Lease> leases = new ConcurrentHashMap<>();
+    // one lock per key, held while its lease is fetched
+    private final Map<LeaseKey, Object> locks = new ConcurrentHashMap<>();
+    private final ExecutorService renewals;
+    private final long aheadNanos;
+    
+    public RateLimitClient(LeaseSettings settings) {
+        if (settings.getBaseUrl() == null || settings.getBaseUrl().isBlank()) {
+            throw new IllegalArgumentException("Base url is required");
+        }
+        if (settings.getLeaseUnits() < 1) {
+            throw new IllegalArgumentException("Lease units must be at least 1");
+        }
+        this.settings = settings;
+        this.api = new LeaseApi(settings.getBaseUrl(), settings.getTimeout());
+        this.aheadNanos = settings.getRenewAhead().toNanos();
+        AtomicInteger threads = new AtomicInteger();
+        this.renewals = Executors.newFixedThreadPool(Math.max(1, settings.getRenewThreads()), task -> {
+            Thread thread = new Thread(task, "rate-limit-lease-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public boolean tryAcquire(String clientId) {
+        return tryAcquire(clientId, null, 1);
+    }
+    
+    /**
+     * Whether a request of the client on the resource (a route name or
+     * channel, may be null) costing this many units may go ahead.
+     *
+     * @throws IllegalArgumentException when the service rejects the client, resource or cost
+     */
+    public boolean tryAcquire(String clientId, String resource, int cost) {
+        if (cost < 1) {
+            throw new IllegalArgumentException("Cost must be at least 1, got " + cost);
+        }
+        LeaseKey key = new LeaseKey(clientId, resource);
+        Lease lease = leases.get(key);
+        if (lease != null && lease.tryTake(cost)) {
+            renewIfLow(key, lease);
+            return true;
+        }
+        return acquireSlow(key, cost);
+    }
+    
+    // gives the unspent units back to the service
+    @Override
+    public void close() {
+        renewals.shutdown();
+        try {
+            renewals.awaitTermination(settings.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long now = System.nanoTime();
+        for (Map.Entry<LeaseKey, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.isCharged() && !lease.isExpired(now)) {
+                giveBack(entry.getKey(), lease, lease.drain());
+            }
+        }
+        leases.clear();
+    }
+    
+    private boolean acquireSlow(LeaseKey key, int cost) {
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            Lease lease = leases.get(key);
+            if (lease != null) {
+                // renewed while this thread waited for the lock
+                if (lease.tryTake(cost)) {
+                    renewIfLow(key, lease);
+                    return true;
+                }
+                if (lease.isRetryBlocked(System.nanoTime())) {
+                    return false;
+                }
+            }
+            lease = renew(key, lease, Math.max(settings.getLeaseUnits(), cost));
+            if (lease.tryTake(cost)) {
+                renewIfLow(key, lease);
+                return true;
+            }
+            return false;
+        }
+    }
+    
+    private void renewIfLow(LeaseKey key, Lease lease) {
+        if (!lease.startRenewal(System.nanoTime(), aheadNanos)) {
+            return;
+        }
+        try {
+            renewals.execute(() -> {
+                try {
+                    synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+                        // a request that could not wait may have renewed it already
+                        if (leases.get(key) == lease) {
+                            renew(key, lease, settings.getLeaseUnits());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Could not renew the lease for {}: {}", key, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed, the next request that runs out renews inline
+        }
+    }
+    
+    // fetches the next lease of the key and installs it, called holding the key's lock
+    private Lease renew(LeaseKey key, Lease current, long units) {
+        long now = System.nanoTime();
+        // the service moves what is left on a lease still open over to the new one
+        String previousLeaseId = current != null && current.isCharged() && !current.isExpired(now)
+            ? current.getLeaseId() : null;
+        LeaseGrant grant;
+        try {
+            grant = api.lease(key, units, previousLeaseId);
+        } catch (IOException e) {
+            log.warn("Could not lease {} units for {}: {}", units, key, e.getMessage());
+            return failed(key, current, now, units);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(key, current, now, units);
+        }
+        
+        // the call may have taken long enough for the current lease to run out
+        long after = System.nanoTime();
+        if (grant.getGranted() <= 0) {
+            long retryAt = now + TimeUnit.SECONDS.toNanos(Math.max(1, grant.getResetSeconds()));
+            if (current != null && !current.isExpired(after)) {
+                // the units still left stay usable, nothing is asked for again before the reset
+                current.blockRetriesUntil(retryAt);
+                return current;
+            }
+            return install(key, Lease.denied(retryAt));
+        }
+        long lowWater = (long) (grant.getGranted() * settings.getRenewBelow());
+        long resetAt = grant.getResetSeconds() >= 0 ? now + TimeUnit.SECONDS.toNanos(grant.getResetSeconds()) : 0;
+        Lease next = new Lease(grant.getGranted(), now + TimeUnit.MILLISECONDS.toNanos(grant.getTtlMs()), resetAt,
+            lowWater, true, grant.getLeaseId());
+        // leftovers only move into a lease charged in the same window. if the window reset
+        // while the lease was fetched, they were charged to a window that is gone and are dropped
+        if (current != null && current.isCharged() && !current.isExpired(after) && current.isSameWindow(next)) {
+            next.add(current.drain());
+        }
+        return install(key, next);
+    }
+    
+    private Lease failed(LeaseKey key, Lease current, long now, long units) {
+        long retryAt = now + settings.getRetryAfterError().toNanos();
+        if (current != null && !current.isExpired(System.nanoTime()) && current.remaining() > 0) {
+            // a background renewal failed: the units already charged stay usable, asked again after the retry time
+            current.blockRetriesUntil(retryAt);
+            return current;
+        }
+        if (!settings.isFailOpen()) {
+            return install(key, Lease.denied(retryAt));
+        }
+        // not charged anywhere, so never given back
+        Lease open = new Lease(units, retryAt, 0);
+        open.blockRetriesUntil(retryAt);
+        return install(key, open);
+    }
+    
+    private Lease install(LeaseKey key, Lease lease) {
+        leases.put(key, lease);
+        return lease;
+    }
+    
+    private void giveBack(LeaseKey key, Lease lease, long units) {
+        // without an id the service would not take them
+        if (units <= 0 || lease.getLeaseId() == null) {
+            return;
+        }
+        try {
+            api.giveBack(key, lease.getLeaseId(), units);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not give back {} units for {}: {}", units, key, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.corporation.ratelimiter.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitClientTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private HttpServer server;
+    // stands in for the service's counters: units that can still be leased
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicInteger leaseCalls = new AtomicInteger();
+    private final AtomicLong returned = new AtomicLong();
+    // reset the service reports with each grant, a new value stands for a new window
+    private final AtomicLong resetSeconds = new AtomicLong(60);
+    // lease calls answered with a 500
+    private volatile boolean failing;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/limits/lease", this::lease);
+        server.createContext("/api/limits/lease/return", exchange -> {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            // the service only takes units back under the id of a lease it granted
+            if (request.path("leaseId").asText().startsWith("lease-")) {
+                returned.addAndGet(request.get("units").asLong());
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+    
+    @Test
+    void testDecidesLocallyFromLeases() {
+        budget.set(1000);
+        try (RateLimitClient client = client(50, true)) {
+            for (int i = 0; i < 200; i++) {
+                assertTrue(client.tryAcquire("lib-client"));
+            }
+        }
+        // 200 units in leases of 50, not 200 calls
+        assertTrue(leaseCalls.get() <= 6, "lease calls: " + leaseCalls.get());
+        // whatever was leased but not spent went back
+        assertEquals(1000 - 200, budget.get() + returned.get());
+    }
+    
+    @Test
+    void testNeverSpendsMoreThanLeased() {
+        budget.set(30);
+        int allowed = 0;
+        try (RateLimitClient client = client(20, true)) {
+            for (int i = 0; i < 50; i++) {
+                if (client.tryAcquire("lib-client", "SMS", 1)) {
+                    allowed++;
+                }
+            }
+            int calls = leaseCalls.get();
+            // denied until the reset, without asking again
+            assertFalse(client.tryAcquire("lib-client", "SMS", 1));
+            assertEquals(calls, leaseCalls.get());
+        }
+        assertEquals(30, allowed);
+    }
+    
+    @Test
+    void testLeftoversNotCarriedIntoNextWindow() {
+        budget.set(20);
+        try (RateLimitClient client = new RateLimitClient(LeaseSettings.builder()
+                .baseUrl("http://127.0.0.1:" + server.getAddress().getPort())
+                .leaseUnits(10)
+                .renewBelow(0)
+                .build())) {
+            assertTrue(client.tryAcquire("lib-client"));
+            // the window resets before the next lease: the 9 units left were charged to the old one
+            resetSeconds.set(30);
+            assertTrue(client.tryAcquire("lib-client", null, 10));
+            // with them carried over 9 more requests would get through in the new window
+            assertFalse(client.tryAcquire("lib-client"));
+        }
+    }
+    
+    @Test
+    void testFailedBackgroundRenewalKeepsTheLease() throws Exception {
+        budget.set(100);
+        try (RateLimitClient client = client(10, false)) {
+            assertTrue(client.tryAcquire("lib-client"));
+            failing = true;
+            // down to the low water mark: the renewal in the background fails
+            for (int i = 0; i < 7; i++) {
+                assertTrue(client.tryAcquire("lib-client"));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (leaseCalls.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            // the 2 units already charged are still spent, then nothing until the retry time
+            assertTrue(client.tryAcquire("lib-client"));
+            assertTrue(client.tryAcquire("lib-client"));
+            assertFalse(client.tryAcquire("lib-client"));
+        }
+    }
+    
+    @Test
+    void testUnreachableService() {
+        server.stop(0);
+        try (RateLimitClient open = client(10, true)) {
+            assertTrue(open.tryAcquire("lib-client"));
+        }
+        try (RateLimitClient closed = client(10, false)) {
+            assertFalse(closed.tryAcquire("lib-client"));
+        }
+    }
+    
+    private RateLimitClient client(int leaseUnits, boolean failOpen) {
+        return new RateLimitClient(LeaseSettings.builder()
+            .baseUrl("http://127.0.0.1:" + server.getAddress().getPort())
+            .leaseUnits(leaseUnits)
+            .failOpen(failOpen)
+            .timeout(Duration.ofMillis(500))
+            .build());
+    }
+    
+    private void lease(HttpExchange exchange) throws IOException {
+        leaseCalls.incrementAndGet();
+        if (failing) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        long units = units(exchange);
+        long granted;
+        long left;
+        synchronized (budget) {
+            granted = Math.min(units, budget.get());
+            left = budget.addAndGet(-granted);
+        }
+        byte[] body = objectMapper.writeValueAsBytes(new LeaseGrant(granted, left, resetSeconds.get(),
+            granted > 0 ? 10000 : 0, granted > 0 ? "lease-" + leaseCalls.get() : null));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+    
+    private long units(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        return request.get("units").asLong();
+    }
+}
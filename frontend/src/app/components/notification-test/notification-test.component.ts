@@ -125,7 +125,7 @@ export class NotificationTestComponent implements OnInit, OnDestroy {
         }];
         
         this.cdr.detectChanges(); // Force change detection
-        this.toastService.success('Notification sent successfully');
+        this.toastService.success('Notification queued for delivery');
         this.loading = false;
       },
       error: (err: HttpErrorResponse | any) => {
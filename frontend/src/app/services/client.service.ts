@@ -9,6 +9,7 @@ export interface Client {
   name: string;
   description?: string;
   contactEmail?: string;
+  tenantId?: string;
   createdAt?: string;
   updatedAt?: string;
 }
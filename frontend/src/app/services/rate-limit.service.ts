@@ -9,14 +9,24 @@ export interface RateLimitConfig {
   timeWindowRequests: number;
   timeWindowSeconds: number;
   monthlyRequests: number;
-  throttlingMode: 'SOFT' | 'HARD';
+  throttlingMode: 'SOFT' | 'HARD' | 'SHAPE';
+  windows?: RateLimitWindow[];
+  maxConcurrentRequests?: number;
+  priority?: 'LOW' | 'NORMAL' | 'HIGH';
   createdAt?: string;
   updatedAt?: string;
 }
 
+export interface RateLimitWindow {
+  requests: number;
+  windowSeconds: number;
+}
+
 export interface SystemLimitConfig {
   id?: number;
   globalRequestsPerSecond: number;
+  effectiveGlobalRequestsPerSecond?: number;
+  adaptive?: boolean;
 }
 
 @Injectable({
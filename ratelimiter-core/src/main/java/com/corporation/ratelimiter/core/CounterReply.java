@@ -0,0 +1,16 @@
+package com.corporation.ratelimiter.core;
+
+import lombok.Value;
+
+/**
+ * What a {@link CounterStore} charge did, one entry per dimension in the order
+ * they were given. Counts are after the charge; when nothing was granted they
+ * are the counts the request found.
+ */
+@Value
+public class CounterReply {
+    long granted;
+    long[] counts;
+    // seconds until each counter expires, negative when it does not exist
+    long[] ttls;
+}
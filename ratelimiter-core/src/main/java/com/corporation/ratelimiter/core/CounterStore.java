@@ -0,0 +1,22 @@
+package com.corporation.ratelimiter.core;
+
+import java.util.List;
+
+/**
+ * Where the counters of {@link RateLimiter} live. Implementations must check
+ * and charge all the dimensions of one call atomically, so concurrent callers
+ * (on this instance or others sharing the store) never overshoot a hard limit.
+ */
+public interface CounterStore {
+    
+    /**
+     * Grants the requested units if every hard dimension has room for them,
+     * or with allowPartial as many as all of them have room for, and charges
+     * the grant to every dimension. A counter gets the dimension's ttl when it
+     * is created.
+     */
+    CounterReply charge(List<RateLimitDimension> dimensions, long requested, boolean allowPartial);
+    
+    // gives units back to the counters, never taking one below zero
+    void refund(List<String> keys, long units);
+}
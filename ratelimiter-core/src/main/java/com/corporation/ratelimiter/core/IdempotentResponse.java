@@ -0,0 +1,37 @@
+package com.corporation.ratelimiter.core;
+
+import lombok.Value;
+
+/**
+ * What is stored under an Idempotency-Key: the status and JSON body of the
+ * first response, or a pending marker while that request is still running.
+ * Stored as "status:body", "0:" being the pending marker.
+ */
+@Value
+public class IdempotentResponse {
+
+    public static final String PENDING_VALUE = "0:";
+
+    int status;
+    String body;
+    long expiresAtMillis;
+
+    public boolean isPending() {
+        return status == 0;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiresAtMillis;
+    }
+
+    public String encode() {
+        return status + ":" + body;
+    }
+
+    public static IdempotentResponse decode(String stored, long ttlSeconds) {
+        int separator = stored.indexOf(':');
+        int status = separator > 0 ? Integer.parseInt(stored.substring(0, separator)) : 0;
+        String body = separator >= 0 ? stored.substring(separator + 1) : "";
+        return new IdempotentResponse(status, body, System.currentTimeMillis() + ttlSeconds * 1000);
+    }
+}
@@ -0,0 +1,82 @@
+package com.corporation.ratelimiter.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counters in this JVM only, for a single instance or tests. Charges are
+ * serialized on the store, which is plenty for counters kept in memory.
+ */
+public class InMemoryCounterStore implements CounterStore {
+    
+    private final Map<String, Counter> counters = new HashMap<>();
+    
+    @Override
+    public synchronized CounterReply charge(List<RateLimitDimension> dimensions, long requested, boolean allowPartial) {
+        long now = System.currentTimeMillis();
+        long[] counts = new long[dimensions.size()];
+        long granted = requested;
+        for (int i = 0; i < dimensions.size(); i++) {
+            RateLimitDimension dimension = dimensions.get(i);
+            Counter counter = live(id(dimension), now);
+            counts[i] = counter != null ? counter.count : 0;
+            if (!dimension.isSoft()) {
+                granted = Math.min(granted, Math.max(0, dimension.getLimit() - counts[i]));
+            }
+        }
+        if (granted < requested && !allowPartial) {
+            granted = 0;
+        }
+        
+        long[] ttls = new long[dimensions.size()];
+        for (int i = 0; i < dimensions.size(); i++) {
+            RateLimitDimension dimension = dimensions.get(i);
+            Counter counter = live(id(dimension), now);
+            if (granted > 0) {
+                if (counter == null) {
+                    counter = new Counter(now + dimension.getTtlSeconds() * 1000);
+                    counters.put(id(dimension), counter);
+                }
+                counter.count += granted;
+                counts[i] = counter.count;
+            }
+            ttls[i] = counter != null ? Math.max(1, (counter.expiresAtMillis - now + 999) / 1000) : -2;
+        }
+        return new CounterReply(granted, counts, ttls);
+    }
+    
+    @Override
+    public synchronized void refund(List<String> keys, long units) {
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            Counter counter = live(key, now);
+            if (counter != null) {
+                counter.count = Math.max(0, counter.count - units);
+            }
+        }
+    }
+    
+    // a hash field counts on its own, the expiry of the hash it is in is not shared here
+    private static String id(RateLimitDimension dimension) {
+        return dimension.getField() != null ? dimension.getKey() + '\0' + dimension.getField() : dimension.getKey();
+    }
+    
+    private Counter live(String key, long now) {
+        Counter counter = counters.get(key);
+        if (counter != null && counter.expiresAtMillis <= now) {
+            counters.remove(key);
+            return null;
+        }
+        return counter;
+    }
+    
+    private static final class Counter {
+        private final long expiresAtMillis;
+        private long count;
+        
+        private Counter(long expiresAtMillis) {
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.corporation.ratelimiter.core;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of checking a request (or a batch of units) against all of its
+ * counters at once. Nothing was charged when granted is 0, otherwise every
+ * counter was charged exactly granted units.
+ */
+@Data
+@Builder
+public class RateLimitDecision {
+    private long requested;
+    private long granted;
+    private List<RateLimitResult> results;
+    // set when the request's Idempotency-Key was already used, nothing was charged then
+    private IdempotentResponse previousResponse;
+    // the client is in SHAPE mode: a rejected request may wait for room instead
+    private boolean shaped;
+    
+    public boolean isDuplicate() {
+        return previousResponse != null;
+    }
+    
+    public boolean isAllowed() {
+        return granted > 0 || requested == 0;
+    }
+    
+    public RateLimitResult getResult(String dimension) {
+        for (RateLimitResult result : results) {
+            if (result.getDimension().equals(dimension)) {
+                return result;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * The result of the given dimension with the least room left, when several
+     * counters share it (a client's stacked time windows): exceeded ones first,
+     * then the lowest remaining, then the longest wait until reset.
+     */
+    public RateLimitResult getTightestResult(String dimension) {
+        RateLimitResult tightest = null;
+        for (RateLimitResult result : results) {
+            if (result.getDimension().equals(dimension) && (tightest == null || isTighter(result, tightest))) {
+                tightest = result;
+            }
+        }
+        return tightest;
+    }
+    
+    // the counter a caller of the decision APIs is told about: the one that denied the request, else the tightest
+    public RateLimitResult getReportedResult() {
+        return isAllowed() ? getTightestResult() : getBlockingResult();
+    }
+    
+    // the same over all counters
+    public RateLimitResult getTightestResult() {
+        RateLimitResult tightest = null;
+        for (RateLimitResult result : results) {
+            if (tightest == null || isTighter(result, tightest)) {
+                tightest = result;
+            }
+        }
+        return tightest;
+    }
+    
+    private static boolean isTighter(RateLimitResult result, RateLimitResult other) {
+        if (result.isAllowed() != other.isAllowed()) {
+            return !result.isAllowed();
+        }
+        if (result.getRemainingRequests() != other.getRemainingRequests()) {
+            return result.getRemainingRequests() < other.getRemainingRequests();
+        }
+        return result.getResetSeconds() > other.getResetSeconds();
+    }
+    
+    /**
+     * The counter that stopped (or, for soft ones, would have stopped) the
+     * request, checked in the order the dimensions were evaluated.
+     */
+    public RateLimitResult getFirstExceeded() {
+        for (RateLimitResult result : results) {
+            if (!result.isAllowed()) {
+                return result;
+            }
+        }
+        return null;
+    }
+    
+    // the hard counter that made the decision deny the request
+    public RateLimitResult getBlockingResult() {
+        for (RateLimitResult result : results) {
+            if (!result.isAllowed() && !result.isSoft()) {
+                return result;
+            }
+        }
+        return null;
+    }
+}
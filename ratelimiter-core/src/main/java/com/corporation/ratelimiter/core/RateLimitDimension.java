@@ -0,0 +1,40 @@
+package com.corporation.ratelimiter.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * One counter a request is checked and charged against, e.g. the client's
+ * time window or the global per-second budget. Any number of them are
+ * evaluated together in one atomic {@link CounterStore} call.
+ */
+@Value
+@AllArgsConstructor
+public class RateLimitDimension {
+    
+    public static final String GLOBAL = "global";
+    // the client's slice of the global budget, see GlobalFairShare
+    public static final String FAIR_SHARE = "fair_share";
+    public static final String TIME_WINDOW = "time_window";
+    public static final String MONTHLY = "monthly";
+    // a client's channel policy and route policy, see RateLimitPolicy
+    public static final String CHANNEL = "channel";
+    public static final String ROUTE = "route";
+    // pools shared by all clients of a tenant
+    public static final String TENANT_TIME_WINDOW = "tenant_time_window";
+    public static final String TENANT_MONTHLY = "tenant_monthly";
+    
+    String name;
+    String key;
+    long limit;
+    // expiry set when the counter is created
+    long ttlSeconds;
+    // soft dimensions report that they are exceeded but never block the charge
+    boolean soft;
+    // set when the counter is this field of the hash at key, which then holds the expiry for all its fields
+    String field;
+    
+    public RateLimitDimension(String name, String key, long limit, long ttlSeconds, boolean soft) {
+        this(name, key, limit, ttlSeconds, soft, null);
+    }
+}
@@ -0,0 +1,22 @@
+package com.corporation.ratelimiter.core;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RateLimitResult {
+    // which counter this is, see RateLimitDimension
+    private String dimension;
+    private boolean allowed;
+    private long currentRequests;
+    private long limit;
+    private long remainingRequests;
+    // units this request was charged, 1 unless the endpoint or caller says otherwise
+    private long cost;
+    // seconds until the counter resets
+    private long resetSeconds;
+    // soft counters report that they are exceeded but never deny
+    private boolean soft;
+}
+
@@ -0,0 +1,102 @@
+package com.corporation.ratelimiter.core;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks and charges requests against any number of counters at once. Which
+ * counters a request has is up to the caller; where they live is up to the
+ * {@link CounterStore}. A store that fails allows the request, so an outage
+ * of the store never takes the callers down with it.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimiter {
+    
+    private final CounterStore store;
+    
+    /**
+     * The cost is charged to all of the dimensions or, if a hard one has no
+     * room for it, to none of them.
+     */
+    public RateLimitDecision check(List<RateLimitDimension> dimensions, long cost) {
+        return charge(dimensions, cost, false);
+    }
+    
+    // with allowPartial the grant is cut down to what every hard dimension still has room for
+    public RateLimitDecision charge(List<RateLimitDimension> dimensions, long requested, boolean allowPartial) {
+        try {
+            return decide(dimensions, requested, store.charge(dimensions, requested, allowPartial));
+        } catch (RuntimeException e) {
+            log.error("Error checking rate limits {}: {}", dimensions, e.getMessage(), e);
+            return allowAll(dimensions, requested);
+        }
+    }
+    
+    public void refund(List<String> keys, long units) {
+        if (units <= 0 || keys.isEmpty()) {
+            return;
+        }
+        try {
+            store.refund(keys, units);
+        } catch (RuntimeException e) {
+            log.error("Error refunding {} units to {}: {}", units, keys, e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * The decision a store's reply stands for: every dimension with the count
+     * the request reached, a rejected one reporting the count it would have
+     * reached.
+     */
+    public static RateLimitDecision decide(List<RateLimitDimension> dimensions, long requested, CounterReply reply) {
+        long granted = reply.getGranted();
+        List<RateLimitResult> results = new ArrayList<>(dimensions.size());
+        for (int i = 0; i < dimensions.size(); i++) {
+            RateLimitDimension dimension = dimensions.get(i);
+            long count = reply.getCounts()[i];
+            long ttl = reply.getTtls()[i];
+            long current = granted > 0 ? count : count + requested;
+            results.add(RateLimitResult.builder()
+                .dimension(dimension.getName())
+                .allowed(current <= dimension.getLimit())
+                .currentRequests(current)
+                .limit(dimension.getLimit())
+                .remainingRequests(Math.max(0, dimension.getLimit() - current))
+                .cost(granted > 0 ? granted : requested)
+                .resetSeconds(ttl < 0 ? dimension.getTtlSeconds() : ttl)
+                .soft(dimension.isSoft())
+                .build());
+        }
+        return RateLimitDecision.builder()
+            .requested(requested)
+            .granted(granted)
+            .results(results)
+            .build();
+    }
+    
+    // everything granted and nothing counted, for when the counters cannot be reached
+    public static RateLimitDecision allowAll(List<RateLimitDimension> dimensions, long requested) {
+        List<RateLimitResult> results = new ArrayList<>(dimensions.size());
+        for (RateLimitDimension dimension : dimensions) {
+            results.add(RateLimitResult.builder()
+                .dimension(dimension.getName())
+                .allowed(true)
+                .currentRequests(0)
+                .limit(dimension.getLimit())
+                .remainingRequests(dimension.getLimit())
+                .cost(requested)
+                .resetSeconds(dimension.getTtlSeconds())
+                .soft(dimension.isSoft())
+                .build());
+        }
+        return RateLimitDecision.builder()
+            .requested(requested)
+            .granted(requested)
+            .results(results)
+            .build();
+    }
+}
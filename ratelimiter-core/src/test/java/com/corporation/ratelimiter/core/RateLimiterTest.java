@@ -0,0 +1,67 @@
+package com.corporation.ratelimiter.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    
+    private final RateLimiter rateLimiter = new RateLimiter(new InMemoryCounterStore());
+    
+    private static RateLimitDimension window(String key, long limit, boolean soft) {
+        return new RateLimitDimension(RateLimitDimension.TIME_WINDOW, key, limit, 60, soft);
+    }
+    
+    @Test
+    void testChargesAllOrNothing() {
+        List<RateLimitDimension> dimensions = List.of(window("wide", 10, false), window("narrow", 3, false));
+        
+        assertTrue(rateLimiter.check(dimensions, 2).isAllowed());
+        RateLimitDecision denied = rateLimiter.check(dimensions, 2);
+        
+        assertFalse(denied.isAllowed());
+        assertEquals(3, denied.getBlockingResult().getLimit());
+        // a rejected request reports the count it would have reached and charges nothing
+        assertEquals(4, denied.getBlockingResult().getCurrentRequests());
+        assertEquals(0, rateLimiter.check(dimensions, 1).getResults().get(1).getRemainingRequests());
+    }
+    
+    @Test
+    void testPartialGrantAndSoftDimensions() {
+        List<RateLimitDimension> dimensions = List.of(window("hard", 5, false), window("soft", 1, true));
+        
+        RateLimitDecision decision = rateLimiter.charge(dimensions, 8, true);
+        
+        assertEquals(5, decision.getGranted());
+        // the soft counter is over but only reports it
+        assertFalse(decision.getResults().get(1).isAllowed());
+        assertNull(decision.getBlockingResult());
+        assertEquals(decision.getResults().get(1), decision.getFirstExceeded());
+        
+        rateLimiter.refund(List.of("hard"), 2);
+        assertEquals(2, rateLimiter.charge(dimensions, 8, true).getGranted());
+    }
+    
+    @Test
+    void testFailingStoreAllows() {
+        RateLimiter failing = new RateLimiter(new CounterStore() {
+            @Override
+            public CounterReply charge(List<RateLimitDimension> dimensions, long requested, boolean allowPartial) {
+                throw new IllegalStateException("store down");
+            }
+            
+            @Override
+            public void refund(List<String> keys, long units) {
+                throw new IllegalStateException("store down");
+            }
+        });
+        
+        RateLimitDecision decision = failing.check(List.of(window("any", 1, false)), 5);
+        
+        assertTrue(decision.isAllowed());
+        assertEquals(5, decision.getGranted());
+        failing.refund(List.of("any"), 1);
+    }
+}
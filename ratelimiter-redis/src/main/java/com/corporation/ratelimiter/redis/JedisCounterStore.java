@@ -0,0 +1,50 @@
+package com.corporation.ratelimiter.redis;
+
+import com.corporation.ratelimiter.core.CounterReply;
+import com.corporation.ratelimiter.core.CounterStore;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counters in redis, shared by every instance using the same server. One
+ * decision is one EVALSHA of {@link QuotaScript}, the script text is only
+ * sent again when redis lost it. Closing the store closes the client it was
+ * given.
+ */
+public class JedisCounterStore implements CounterStore, AutoCloseable {
+    
+    private final UnifiedJedis jedis;
+    
+    public JedisCounterStore(UnifiedJedis jedis) {
+        this.jedis = jedis;
+    }
+    
+    @Override
+    public CounterReply charge(List<RateLimitDimension> dimensions, long requested, boolean allowPartial) {
+        List<String> args = Arrays.asList(QuotaScript.args(dimensions, requested, allowPartial, 0, null));
+        return QuotaScript.parse(eval(QuotaScript.SHA1, QuotaScript.TEXT, QuotaScript.keys(dimensions), args), dimensions.size());
+    }
+    
+    @Override
+    public void refund(List<String> keys, long units) {
+        eval(QuotaScript.REFUND_SHA1, QuotaScript.REFUND_TEXT, keys, List.of(String.valueOf(units)));
+    }
+    
+    @Override
+    public void close() {
+        jedis.close();
+    }
+    
+    private Object eval(String sha1, String script, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha1, keys, args);
+        } catch (JedisNoScriptException e) {
+            // EVAL loads it for the next EVALSHA
+            return jedis.eval(script, keys, args);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.corporation.ratelimiter.redis;
+
+import com.corporation.ratelimiter.core.CounterReply;
+import com.corporation.ratelimiter.core.IdempotentResponse;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * The Lua scripts behind the redis counter store, shared by
+ * {@link JedisCounterStore} and the service, which also uses the fair share
+ * and idempotency parts.
+ */
+public final class QuotaScript {
+    
+    // per-second fair share bookkeeping lives long enough to be read the second after
+    public static final long FAIR_SHARE_BOOKKEEPING_TTL_SECONDS = 5;
+    
+    // redis: the checking and charging part of the scripts, run once the counters are known:
+    // n of them, their keys, limits, ttls and soft flags in ckeys/climits/cttls/csoft, and
+    // in cfields the hash field holding the counter (false for a plain key, the ttl is then
+    // the whole hash's).
+    // hard counters cap the grant at their remaining room, soft ones only report.
+    // with fairIndex > 0, counter fairIndex is the fair share one and KEYS[fairKey] to
+    // KEYS[fairKey + 2] the second's active clients and capped clients HyperLogLogs and
+    // its granted units. with pendingTtl > 0 the last key is the idempotency key: if
+    // it exists nothing is charged and {-1, value, ttl} is returned, otherwise it is
+    // reserved along with the charge, with a pending marker that expires after pendingTtl
+    // seconds unless the caller stores the response (with its own, longer ttl) first.
+    // leaves {granted, count1, ttl1, count2, ttl2, ...} in result, counts after the charge
+    public static final String CHARGE = 
+        "if pendingTtl > 0 then " +
+        "  local seen = redis.call('GET', KEYS[#KEYS]) " +
+        "  if seen then return {-1, seen, redis.call('TTL', KEYS[#KEYS])} end " +
+        "end " +
+        "local granted = requested " +
+        "local counts = {} " +
+        "for i = 1, n do " +
+        "  if cfields[i] then " +
+        "    counts[i] = tonumber(redis.call('HGET', ckeys[i], cfields[i]) or '0') " +
+        "  else " +
+        "    counts[i] = tonumber(redis.call('GET', ckeys[i]) or '0') " +
+        "  end " +
+        "  if not csoft[i] then " +
+        "    local room = climits[i] - counts[i] " +
+        "    if room < granted then granted = math.max(room, 0) end " +
+        "  end " +
+        "end " +
+        "if granted < requested and not allowPartial then granted = 0 end " +
+        "if fairIndex > 0 then " +
+        "  redis.call('PFADD', KEYS[fairKey], clientId) " +
+        "  redis.call('EXPIRE', KEYS[fairKey], " + FAIR_SHARE_BOOKKEEPING_TTL_SECONDS + ") " +
+        "  if counts[fairIndex] + requested > climits[fairIndex] then " +
+        "    redis.call('PFADD', KEYS[fairKey + 1], clientId) " +
+        "    redis.call('EXPIRE', KEYS[fairKey + 1], " + FAIR_SHARE_BOOKKEEPING_TTL_SECONDS + ") " +
+        "  end " +
+        "  if granted > 0 then " +
+        "    redis.call('INCRBY', KEYS[fairKey + 2], granted) " +
+        "    redis.call('EXPIRE', KEYS[fairKey + 2], " + FAIR_SHARE_BOOKKEEPING_TTL_SECONDS + ") " +
+        "  end " +
+        "end " +
+        "if pendingTtl > 0 and (granted > 0 or requested == 0) then " +
+        "  redis.call('SET', KEYS[#KEYS], '" + IdempotentResponse.PENDING_VALUE + "', 'EX', pendingTtl) " +
+        "end " +
+        "local result = {granted} " +
+        "for i = 1, n do " +
+        "  local ttl = -2 " +
+        "  if granted > 0 then " +
+        "    if cfields[i] then " +
+        "      counts[i] = redis.call('HINCRBY', ckeys[i], cfields[i], granted) " +
+        "    else " +
+        "      counts[i] = redis.call('INCRBY', ckeys[i], granted) " +
+        "    end " +
+        "    ttl = redis.call('TTL', ckeys[i]) " +
+        "    if ttl == -1 then " +
+        "      ttl = cttls[i] " +
+        "      redis.call('EXPIRE', ckeys[i], ttl) " +
+        "    end " +
+        "  elseif counts[i] > 0 then " +
+        "    ttl = redis.call('TTL', ckeys[i]) " +
+        "  end " +
+        "  result[#result + 1] = counts[i] " +
+        "  result[#result + 1] = ttl " +
+        "end ";
+    
+    // redis: script that checks and charges any number of counters atomically.
+    // KEYS are the counters, ARGV[1] the requested units, ARGV[2] '1' to grant as much as
+    // fits instead of all-or-nothing, ARGV[3] the pending idempotency marker's ttl, ARGV[4] the
+    // index of the fair share counter (0 for none), ARGV[5] the client for the fair
+    // share bookkeeping, then a (limit, ttl, soft) triple per counter, optionally followed by
+    // the hash field of each counter ('' for a counter that is a key of its own).
+    // with a fair share counter the three keys after the counters are its bookkeeping
+    // keys, with an idempotency ttl > 0 the last key is the idempotency key, see CHARGE.
+    // returns {granted, count1, ttl1, count2, ttl2, ...} with counts after the charge
+    public static final String TEXT = 
+        "local requested = tonumber(ARGV[1]) " +
+        "local allowPartial = ARGV[2] == '1' " +
+        "local pendingTtl = tonumber(ARGV[3]) " +
+        "local fairIndex = tonumber(ARGV[4]) " +
+        "local clientId = ARGV[5] " +
+        "local n = #KEYS " +
+        "if pendingTtl > 0 then n = n - 1 end " +
+        "if fairIndex > 0 then n = n - 3 end " +
+        "local fairKey = n + 1 " +
+        "local ckeys, climits, cttls, csoft, cfields = {}, {}, {}, {}, {} " +
+        "for i = 1, n do " +
+        "  local base = 6 + (i - 1) * 3 " +
+        "  ckeys[i] = KEYS[i] " +
+        "  climits[i] = tonumber(ARGV[base]) " +
+        "  cttls[i] = tonumber(ARGV[base + 1]) " +
+        "  csoft[i] = ARGV[base + 2] == '1' " +
+        "  local field = ARGV[5 + n * 3 + i] " +
+        "  cfields[i] = field ~= nil and field ~= '' and field " +
+        "end " +
+        CHARGE +
+        "return result";
+    
+    // redis: gives ARGV[1] units back to every counter in KEYS, never below zero. the
+    // counter of KEYS[i] is its hash field ARGV[1 + i] if that is given and not ''
+    public static final String REFUND_TEXT = 
+        "local units = tonumber(ARGV[1]) " +
+        "for i = 1, #KEYS do " +
+        "  local field = ARGV[1 + i] " +
+        "  if field ~= nil and field ~= '' then " +
+        "    local current = tonumber(redis.call('HGET', KEYS[i], field) or '0') " +
+        "    if current > 0 then " +
+        "      redis.call('HINCRBY', KEYS[i], field, -math.min(current, units)) " +
+        "    end " +
+        "  else " +
+        "    local current = tonumber(redis.call('GET', KEYS[i]) or '0') " +
+        "    if current > 0 then " +
+        "      redis.call('DECRBY', KEYS[i], math.min(current, units)) " +
+        "    end " +
+        "  end " +
+        "end " +
+        "return {}";
+    
+    // for EVALSHA, so the script text is only sent when redis does not know it
+    public static final String SHA1 = sha1(TEXT);
+    public static final String REFUND_SHA1 = sha1(REFUND_TEXT);
+    
+    private QuotaScript() {
+    }
+    
+    public static List<String> keys(List<RateLimitDimension> dimensions) {
+        List<String> keys = new ArrayList<>(dimensions.size() + 4);
+        for (RateLimitDimension dimension : dimensions) {
+            keys.add(dimension.getKey());
+        }
+        return keys;
+    }
+    
+    /**
+     * The script's ARGV. A fair share dimension is picked up by its name; the
+     * caller then appends its bookkeeping keys after the counters. A positive
+     * pending ttl needs the idempotency key last. The hash fields are only
+     * appended when a dimension has one.
+     */
+    public static String[] args(List<RateLimitDimension> dimensions, long requested, boolean allowPartial,
+                                long pendingTtlSeconds, String clientId) {
+        boolean fields = hasFields(dimensions);
+        String[] args = new String[5 + dimensions.size() * (fields ? 4 : 3)];
+        args[0] = String.valueOf(requested);
+        args[1] = allowPartial ? "1" : "0";
+        args[2] = String.valueOf(Math.max(0, pendingTtlSeconds));
+        args[3] = "0";
+        args[4] = clientId != null ? clientId : "";
+        for (int i = 0; i < dimensions.size(); i++) {
+            RateLimitDimension dimension = dimensions.get(i);
+            args[5 + i * 3] = String.valueOf(dimension.getLimit());
+            args[6 + i * 3] = String.valueOf(dimension.getTtlSeconds());
+            args[7 + i * 3] = dimension.isSoft() ? "1" : "0";
+            if (RateLimitDimension.FAIR_SHARE.equals(dimension.getName())) {
+                args[3] = String.valueOf(i + 1);
+            }
+            if (fields) {
+                args[5 + dimensions.size() * 3 + i] = field(dimension);
+            }
+        }
+        return args;
+    }
+    
+    // the refund script's ARGV for the counters of these dimensions
+    public static String[] refundArgs(List<RateLimitDimension> dimensions, long units) {
+        boolean fields = hasFields(dimensions);
+        String[] args = new String[fields ? 1 + dimensions.size() : 1];
+        args[0] = String.valueOf(units);
+        for (int i = 0; fields && i < dimensions.size(); i++) {
+            args[1 + i] = field(dimensions.get(i));
+        }
+        return args;
+    }
+    
+    private static boolean hasFields(List<RateLimitDimension> dimensions) {
+        for (RateLimitDimension dimension : dimensions) {
+            if (dimension.getField() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String field(RateLimitDimension dimension) {
+        return dimension.getField() != null ? dimension.getField() : "";
+    }
+    
+    // whether the args ask for the fair share bookkeeping keys
+    public static boolean hasFairShare(String[] args) {
+        return !"0".equals(args[3]);
+    }
+    
+    // the stored response when the reply says the idempotency key was used before, else null
+    public static IdempotentResponse previousResponse(Object reply) {
+        if (reply instanceof List<?> result && result.size() == 3 && toLong(result.get(0)) == -1) {
+            return IdempotentResponse.decode(String.valueOf(result.get(1)), toLong(result.get(2)));
+        }
+        return null;
+    }
+    
+    /**
+     * @throws IllegalStateException when the reply is not one of the script's
+     */
+    public static CounterReply parse(Object reply, int dimensions) {
+        if (!(reply instanceof List<?> result) || result.size() != 1 + dimensions * 2) {
+            throw new IllegalStateException("Unexpected quota script reply: " + reply);
+        }
+        long[] counts = new long[dimensions];
+        long[] ttls = new long[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            counts[i] = toLong(result.get(1 + i * 2));
+            ttls[i] = toLong(result.get(2 + i * 2));
+        }
+        return new CounterReply(toLong(result.get(0)), counts, ttls);
+    }
+    
+    private static long toLong(Object value) {
+        return ((Number) value).longValue();
+    }
+    
+    private static String sha1(String script) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
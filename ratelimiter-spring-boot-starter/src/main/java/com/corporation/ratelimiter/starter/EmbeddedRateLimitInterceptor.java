@@ -0,0 +1,59 @@
+package com.corporation.ratelimiter.starter;
+
+import com.corporation.ratelimiter.core.RateLimitDecision;
+import com.corporation.ratelimiter.core.RateLimitDimension;
+import com.corporation.ratelimiter.core.RateLimitResult;
+import com.corporation.ratelimiter.core.RateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limits each client, told apart by a header, to a time window and
+ * optionally all of them to a per-second budget. Same headers as the rate
+ * limiting service: X-RateLimit-Limit/Remaining/Reset, and 429 with
+ * Retry-After when over.
+ */
+@RequiredArgsConstructor
+public class EmbeddedRateLimitInterceptor implements HandlerInterceptor {
+    
+    private final RateLimiter rateLimiter;
+    private final EmbeddedRateLimiterProperties properties;
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        EmbeddedRateLimiterProperties.Interceptor settings = properties.getInterceptor();
+        String clientId = request.getHeader(settings.getClientHeader());
+        if (clientId == null || clientId.isBlank()) {
+            return true;
+        }
+        
+        List<RateLimitDimension> dimensions = new ArrayList<>(2);
+        if (settings.getGlobalRequestsPerSecond() > 0) {
+            dimensions.add(new RateLimitDimension(RateLimitDimension.GLOBAL,
+                properties.getKeyPrefix() + "global:" + Instant.now().getEpochSecond(), settings.getGlobalRequestsPerSecond(), 1, false));
+        }
+        dimensions.add(new RateLimitDimension(RateLimitDimension.TIME_WINDOW,
+            properties.getKeyPrefix() + "client:" + clientId, settings.getRequests(), settings.getWindowSeconds(), false));
+        
+        RateLimitDecision decision = rateLimiter.check(dimensions, 1);
+        RateLimitResult reported = decision.getReportedResult();
+        if (reported != null) {
+            response.setHeader("X-RateLimit-Limit", String.valueOf(reported.getLimit()));
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(reported.getRemainingRequests()));
+            response.setHeader("X-RateLimit-Reset", String.valueOf(Instant.now().getEpochSecond() + reported.getResetSeconds()));
+        }
+        if (decision.isAllowed()) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(reported != null ? reported.getResetSeconds() : 1));
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.corporation.ratelimiter.starter;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@Data
+@ConfigurationProperties("rate-limiter.embedded")
+public class EmbeddedRateLimiterProperties {
+    
+    private boolean enabled = false;
+    
+    private String redisUri = "redis://localhost:6379";
+    
+    private int maxConnections = 16;
+    
+    // prefix of the counter keys, so several services can share one redis
+    private String keyPrefix = "rate_limit:embedded:";
+    
+    private Interceptor interceptor = new Interceptor();
+    
+    @Data
+    public static class Interceptor {
+        
+        private boolean enabled = true;
+        
+        private List<String> pathPatterns = List.of("/**");
+        
+        // requests without it are not limited
+        private String clientHeader = "X-Client-Id";
+        
+        private long requests = 100;
+        
+        private long windowSeconds = 60;
+        
+        // budget per second of all clients together, 0 for none
+        private long globalRequestsPerSecond = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.corporation.ratelimiter.starter;
+
+import com.corporation.ratelimiter.core.CounterStore;
+import com.corporation.ratelimiter.core.RateLimiter;
+import com.corporation.ratelimiter.redis.JedisCounterStore;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.JedisPooled;
+
+import java.net.URI;
+
+/**
+ * Embeds the rate limiter when rate-limiter.embedded.enabled is set: a
+ * {@link RateLimiter} over redis counters and, in servlet web applications,
+ * an interceptor limiting every client to a time window. Declaring a
+ * CounterStore or RateLimiter bean replaces the default one.
+ */
+@AutoConfiguration
+@ConditionalOnProperty(prefix = "rate-limiter.embedded", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(EmbeddedRateLimiterProperties.class)
+public class RateLimiterAutoConfiguration {
+    
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(CounterStore.class)
+    public JedisCounterStore counterStore(EmbeddedRateLimiterProperties properties) {
+        GenericObjectPoolConfig<Connection> pool = new GenericObjectPoolConfig<>();
+        pool.setMaxTotal(properties.getMaxConnections());
+        pool.setMaxIdle(properties.getMaxConnections());
+        return new JedisCounterStore(new JedisPooled(pool, URI.create(properties.getRedisUri())));
+    }
+    
+    @Bean
+    @ConditionalOnMissingBean
+    public RateLimiter rateLimiter(CounterStore counterStore) {
+        return new RateLimiter(counterStore);
+    }
+    
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnClass(WebMvcConfigurer.class)
+    @ConditionalOnProperty(prefix = "rate-limiter.embedded.interceptor", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class InterceptorConfiguration {
+        
+        @Bean
+        @ConditionalOnMissingBean
+        public EmbeddedRateLimitInterceptor embeddedRateLimitInterceptor(RateLimiter rateLimiter,
+                                                                         EmbeddedRateLimiterProperties properties) {
+            return new EmbeddedRateLimitInterceptor(rateLimiter, properties);
+        }
+        
+        @Bean
+        public WebMvcConfigurer embeddedRateLimitConfigurer(EmbeddedRateLimitInterceptor interceptor,
+                                                            EmbeddedRateLimiterProperties properties) {
+            return new WebMvcConfigurer() {
+                @Override
+                public void addInterceptors(InterceptorRegistry registry) {
+                    registry.addInterceptor(interceptor).addPathPatterns(properties.getInterceptor().getPathPatterns());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.corporation.ratelimiter.starter;
+
+import com.corporation.ratelimiter.core.CounterStore;
+import com.corporation.ratelimiter.core.InMemoryCounterStore;
+import com.corporation.ratelimiter.core.RateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterAutoConfigurationTest {
+    
+    // counters in memory instead of redis, the store is meant to be replaceable
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(RateLimiterAutoConfiguration.class))
+        .withBean(CounterStore.class, InMemoryCounterStore::new);
+    
+    @Test
+    void testNothingUnlessEnabled() {
+        contextRunner.run(context -> {
+            assertTrue(context.getBeansOfType(RateLimiter.class).isEmpty());
+            assertTrue(context.getBeansOfType(EmbeddedRateLimitInterceptor.class).isEmpty());
+        });
+    }
+    
+    @Test
+    void testInterceptorLimitsEachClient() {
+        contextRunner
+            .withPropertyValues(
+                "rate-limiter.embedded.enabled=true",
+                "rate-limiter.embedded.interceptor.requests=2")
+            .run(context -> {
+                EmbeddedRateLimitInterceptor interceptor = context.getBean(EmbeddedRateLimitInterceptor.class);
+                
+                assertTrue(interceptor.preHandle(request("starter-client"), new MockHttpServletResponse(), null));
+                MockHttpServletResponse last = new MockHttpServletResponse();
+                assertTrue(interceptor.preHandle(request("starter-client"), last, null));
+                assertEquals("0", last.getHeader("X-RateLimit-Remaining"));
+                
+                MockHttpServletResponse rejected = new MockHttpServletResponse();
+                assertFalse(interceptor.preHandle(request("starter-client"), rejected, null));
+                assertEquals(429, rejected.getStatus());
+                assertNotNull(rejected.getHeader("Retry-After"));
+                
+                // other clients and requests without a client id are not affected
+                assertTrue(interceptor.preHandle(request("starter-other"), new MockHttpServletResponse(), null));
+                assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), null));
+            });
+    }
+    
+    private static MockHttpServletRequest request(String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders");
+        request.addHeader("X-Client-Id", clientId);
+        return request;
+    }
+}